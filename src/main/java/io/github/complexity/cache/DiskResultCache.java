@@ -0,0 +1,281 @@
+package io.github.complexity.cache;
+
+import io.github.complexity.calculator.ComplexityCalculator;
+import io.github.complexity.calculator.ComplexityResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Persistent, content-addressed cache of complexity results
+ *
+ * Entries are keyed by a SHA-256 hash of the source content combined with the
+ * calculator's identity and algorithm version, so they stay valid across server
+ * restarts and can be shared by several servers using the same directory. Each
+ * entry is a small binary file; when the directory grows beyond its size limit,
+ * the least recently used entries are deleted.
+ */
+public class DiskResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(DiskResultCache.class);
+
+    private static final int MAGIC = 0x43435231; // "CCR1"
+    private static final String SUFFIX = ".ccr";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int HASH_CHUNK_CHARS = 64 * 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong sizeBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Opens (or creates) a cache in the given directory.
+     *
+     * @param maxBytes the size limit of all entries together
+     */
+    public DiskResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        sizeBytes.set(listEntries().stream().mapToLong(DiskResultCache::sizeOf).sum());
+    }
+
+    /**
+     * Computes the cache key for content analyzed by the given calculator.
+     */
+    public static String key(byte[] content, ComplexityCalculator calculator) {
+        MessageDigest digest = calculatorDigest(calculator);
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the cache key for source text, equal to the key of its UTF-8 encoding.
+     * The text is encoded in chunks, so no full-size copy of it is made.
+     */
+    public static String key(String text, ComplexityCalculator calculator) {
+        MessageDigest digest = calculatorDigest(calculator);
+        for (int start = 0; start < text.length(); ) {
+            int end = Math.min(text.length(), start + HASH_CHUNK_CHARS);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--; // keep surrogate pairs together
+            }
+            digest.update(text.substring(start, end).getBytes(StandardCharsets.UTF_8));
+            start = end;
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the cache key for source text read from a stream, equal to the key of the whole
+     * text. The reader is consumed but not closed.
+     */
+    public static String key(Reader text, ComplexityCalculator calculator) throws IOException {
+        MessageDigest digest = calculatorDigest(calculator);
+        char[] buffer = new char[HASH_CHUNK_CHARS];
+        int length = 0;
+        int read;
+        while ((read = text.read(buffer, length, buffer.length - length)) >= 0) {
+            length += read;
+            int end = length;
+            if (end > 0 && Character.isHighSurrogate(buffer[end - 1])) {
+                end--; // keep surrogate pairs together
+            }
+            digest.update(new String(buffer, 0, end).getBytes(StandardCharsets.UTF_8));
+            System.arraycopy(buffer, end, buffer, 0, length - end);
+            length -= end;
+        }
+        digest.update(new String(buffer, 0, length).getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest calculatorDigest(ComplexityCalculator calculator) {
+        MessageDigest digest = sha256();
+        digest.update((calculator.getClass().getName() + ":" + calculator.getAlgorithmVersion())
+            .getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest;
+    }
+
+    /**
+     * Returns the cached result reported under the given file name, or null on a miss.
+     */
+    public ComplexityResult get(String key, String fileName) {
+        Path file = entryPath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid cache entry " + file);
+            }
+            String language = in.readUTF();
+            int count = in.readInt();
+            Map<String, Integer> complexities = new LinkedHashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String function = in.readUTF();
+                complexities.put(function, in.readInt());
+            }
+            // Touch the entry so eviction removes least recently used entries first
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.increment();
+            return new ComplexityResult(fileName, language, complexities);
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable cache entry {}: {}", file, e.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result. Partial results are not stored; failures are logged and ignored.
+     */
+    public void put(String key, ComplexityResult result) {
+        if (result.isPartial()) {
+            return;
+        }
+        Path file = entryPath(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(result.getLanguage());
+                out.writeInt(result.getFunctionComplexities().size());
+                for (Map.Entry<String, Integer> entry : result.getFunctionComplexities().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+            long size = Files.size(temp);
+            moveAtomically(temp, file);
+            temp = null;
+            writes.increment();
+            if (sizeBytes.addAndGet(size) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot write cache entry {}: {}", file, e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.debug("Cannot delete temporary cache file {}", temp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until the cache is at 90% of its limit.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> entries = listEntries();
+        long total = entries.stream().mapToLong(DiskResultCache::sizeOf).sum();
+        long target = maxBytes * 9 / 10;
+        if (total > target) {
+            entries.sort(Comparator.comparing(DiskResultCache::lastModified));
+            for (Path entry : entries) {
+                if (total <= target) {
+                    break;
+                }
+                long size = sizeOf(entry);
+                if (Files.deleteIfExists(entry)) {
+                    total -= size;
+                    evictions.increment();
+                }
+            }
+        }
+        sizeBytes.set(total);
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            List<Path> entries = new ArrayList<>();
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(entries::add);
+            return entries;
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0; // Deleted concurrently
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns size and hit/miss/write/eviction counters as a summary line.
+     */
+    public String getStatistics() {
+        return String.format("%s, %d/%d KiB, hits %d, misses %d, writes %d, evictions %d",
+            directory, sizeBytes.get() / 1024, maxBytes / 1024,
+            hits.sum(), misses.sum(), writes.sum(), evictions.sum());
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.complexity.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Identifies one version of a file's content for a given language
+ *
+ * Two keys are equal if they refer to the same canonical path with the same
+ * size and last-modified time, analyzed as the same language.
+ */
+public final class FileKey {
+    private final String canonicalPath;
+    private final long size;
+    private final long lastModifiedMillis;
+    private final String language;
+
+    public FileKey(String canonicalPath, long size, long lastModifiedMillis, String language) {
+        this.canonicalPath = canonicalPath;
+        this.size = size;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.language = language != null ? language : "";
+    }
+
+    /**
+     * Creates the key for the current version of a file.
+     *
+     * @param language the requested language, or null if it is auto-detected
+     */
+    public static FileKey of(Path file, String language) throws IOException {
+        Path canonical = file.toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(canonical, BasicFileAttributes.class);
+        return new FileKey(canonical.toString(), attributes.size(),
+            attributes.lastModifiedTime().toMillis(), language);
+    }
+
+    public String getCanonicalPath() {
+        return canonicalPath;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileKey)) {
+            return false;
+        }
+        FileKey other = (FileKey) o;
+        return size == other.size
+            && lastModifiedMillis == other.lastModifiedMillis
+            && canonicalPath.equals(other.canonicalPath)
+            && language.equals(other.language);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(canonicalPath, size, lastModifiedMillis, language);
+    }
+
+    @Override
+    public String toString() {
+        return canonicalPath + " (" + size + " bytes, modified " + lastModifiedMillis + ", " + language + ")";
+    }
+}
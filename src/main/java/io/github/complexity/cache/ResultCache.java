@@ -0,0 +1,131 @@
+package io.github.complexity.cache;
+
+import io.github.complexity.calculator.ComplexityResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of complexity results with LRU eviction
+ *
+ * The cache is limited both by entry count and by an approximate byte weight of
+ * the cached results, whichever is reached first. Hit, miss and eviction
+ * counters are kept for tuning.
+ *
+ * @param <K> the key type
+ */
+public class ResultCache<K> {
+    // Rough per-object overheads used for the weight estimate
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+    private static final int FUNCTION_OVERHEAD_BYTES = 64;
+
+    private final int maxEntries;
+    private final long maxWeightBytes;
+    // Least recently used first; get moves an entry to the end, peek leaves it in place
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>();
+    private long weightBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class Entry {
+        final ComplexityResult result;
+        final long weightBytes;
+
+        Entry(ComplexityResult result, long weightBytes) {
+            this.result = result;
+            this.weightBytes = weightBytes;
+        }
+    }
+
+    public ResultCache(int maxEntries, long maxWeightBytes) {
+        this.maxEntries = maxEntries;
+        this.maxWeightBytes = maxWeightBytes;
+    }
+
+    /**
+     * Returns the cached result for the key, or null on a miss.
+     */
+    public synchronized ComplexityResult get(K key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        entries.put(key, entry);
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Returns the cached result for the key, or null on a miss, without making the entry
+     * the most recently used one. Lookups are counted like those of {@link #get}.
+     */
+    public synchronized ComplexityResult peek(K key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Caches a result, evicting least recently used entries as needed. Partial
+     * results and results heavier than the whole cache are not cached.
+     */
+    public synchronized void put(K key, ComplexityResult result) {
+        if (result.isPartial() || maxEntries <= 0) {
+            return;
+        }
+        long weight = estimateWeight(result);
+        if (weight > maxWeightBytes) {
+            return;
+        }
+
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            weightBytes -= previous.weightBytes;
+        }
+        entries.put(key, new Entry(result, weight));
+        weightBytes += weight;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || weightBytes > maxWeightBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            weightBytes -= eldest.weightBytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cached entries, least recently used first.
+     */
+    public synchronized Map<K, ComplexityResult> entries() {
+        Map<K, ComplexityResult> copy = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> copy.put(key, entry.result));
+        return copy;
+    }
+
+    private static long estimateWeight(ComplexityResult result) {
+        long weight = ENTRY_OVERHEAD_BYTES + 2L * result.getFileName().length();
+        for (String function : result.getFunctionComplexities().keySet()) {
+            weight += FUNCTION_OVERHEAD_BYTES + 2L * function.length();
+        }
+        return weight;
+    }
+
+    /**
+     * Returns size, weight and hit/miss/eviction counters as a summary line.
+     */
+    public synchronized String getStatistics() {
+        long lookups = hits + misses;
+        double hitRate = lookups > 0 ? 100.0 * hits / lookups : 0;
+        return String.format("%d/%d entries, %d/%d KiB, hits %d, misses %d (%.1f%% hit rate), evictions %d",
+            entries.size(), maxEntries, weightBytes / 1024, maxWeightBytes / 1024,
+            hits, misses, hitRate, evictions);
+    }
+}
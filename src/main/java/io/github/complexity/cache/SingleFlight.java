@@ -0,0 +1,100 @@
+package io.github.complexity.cache;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent computations for the same key
+ *
+ * The first caller for a key runs the computation; callers arriving while it is
+ * still running wait for it and receive the same result (or exception) instead
+ * of repeating the work. Nothing is retained once the computation completes.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+    // How often waiting callers run their wait check (e.g. for their own cancellation)
+    private static final long WAIT_CHECK_INTERVAL_MILLIS = 10;
+
+    /**
+     * Computation that may fail with an IOException.
+     */
+    public interface Computation<V> {
+        V compute() throws IOException;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Runs the computation, or joins the one already running for the same key.
+     *
+     * @param waitCheck invoked periodically while waiting for another caller's
+     *                  computation; may throw a RuntimeException to stop waiting
+     */
+    public V execute(K key, Computation<V> computation, Runnable waitCheck) throws IOException {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            shared.increment();
+            return await(existing, waitCheck);
+        }
+
+        executed.increment();
+        try {
+            V value = computation.compute();
+            created.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private V await(CompletableFuture<V> future, Runnable waitCheck) throws IOException {
+        while (true) {
+            try {
+                return future.get(WAIT_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                waitCheck.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for shared computation");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of computations actually executed.
+     */
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * Returns the number of callers that joined an already running computation.
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+}
@@ -0,0 +1,343 @@
+package io.github.complexity.cache;
+
+import io.github.complexity.calculator.ComplexityResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memory-mapped binary snapshot of per-file results for instant warm starts
+ *
+ * The snapshot file consists of a header, an open-addressing hash table keyed by
+ * canonical path and language, the file entries and a table of interned strings
+ * (paths and function names). Opening a snapshot only maps the file; a lookup
+ * probes the table directly in the mapped buffer and only builds Java objects for
+ * the entry that was asked for, so the first query after a restart is as fast as
+ * any later one.
+ *
+ * <pre>
+ * header:  int magic, int version, int rulesVersion, int entryCount, int slotCount,
+ *          int stringCount, int entriesOffset, int stringTableOffset
+ * slots:   int[slotCount] absolute entry offset, 0 if the slot is empty
+ * entries: int path, int keyLanguage, int resultLanguage, long size, long lastModified,
+ *          int functionCount, functionCount * (int name, int complexity)
+ * strings: int[stringCount] absolute offset of (int length, UTF-8 bytes)
+ * </pre>
+ */
+public final class WorkspaceSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceSnapshot.class);
+
+    private static final int MAGIC = 0x43435753; // "CCWS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+    private static final int ENTRY_HEADER_BYTES = 3 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int FUNCTION_BYTES = 2 * Integer.BYTES;
+
+    private final Path file;
+    private final int rulesVersion;
+    // Read only with absolute accessors, so the buffer can be shared between threads
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int slotCount;
+    private final int entriesOffset;
+    private final int stringTableOffset;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private WorkspaceSnapshot(Path file, int rulesVersion, ByteBuffer buffer) {
+        this.file = file;
+        this.rulesVersion = rulesVersion;
+        this.buffer = buffer;
+        this.entryCount = buffer != null ? buffer.getInt(3 * Integer.BYTES) : 0;
+        this.slotCount = buffer != null ? buffer.getInt(4 * Integer.BYTES) : 0;
+        this.entriesOffset = buffer != null ? buffer.getInt(6 * Integer.BYTES) : 0;
+        this.stringTableOffset = buffer != null ? buffer.getInt(7 * Integer.BYTES) : 0;
+    }
+
+    public static WorkspaceSnapshot open(Path file) throws IOException {
+        return open(file, 0);
+    }
+
+    /**
+     * Maps an existing snapshot file. A missing, outdated or malformed file, or one written
+     * with other counting rules, yields an empty snapshot that will be replaced by {@link #save}.
+     *
+     * @param rulesVersion identifies the counting rules of all calculators the results come from
+     */
+    public static WorkspaceSnapshot open(Path file, int rulesVersion) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return new WorkspaceSnapshot(file, rulesVersion, null);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                logger.warn("Ignoring snapshot {} with unexpected size {}", file, size);
+                return new WorkspaceSnapshot(file, rulesVersion, null);
+            }
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+                logger.warn("Ignoring snapshot {} with unknown format", file);
+                return new WorkspaceSnapshot(file, rulesVersion, null);
+            }
+            if (buffer.getInt(2 * Integer.BYTES) != rulesVersion) {
+                logger.info("Ignoring snapshot {} computed with other counting rules", file);
+                return new WorkspaceSnapshot(file, rulesVersion, null);
+            }
+            return new WorkspaceSnapshot(file, rulesVersion, buffer);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of files in the snapshot.
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the stored result for exactly this file version, or null if the file is
+     * not in the snapshot or has changed since.
+     */
+    public ComplexityResult get(FileKey key) {
+        if (entryCount == 0) {
+            misses.increment();
+            return null;
+        }
+        try {
+            int entry = findEntry(key.getCanonicalPath().getBytes(StandardCharsets.UTF_8), key.getCanonicalPath(),
+                key.getLanguage().getBytes(StandardCharsets.UTF_8), key.getLanguage());
+            if (entry == 0
+                || buffer.getLong(entry + 3 * Integer.BYTES) != key.getSize()
+                || buffer.getLong(entry + 3 * Integer.BYTES + Long.BYTES) != key.getLastModifiedMillis()) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return decode(entry).result;
+        } catch (IndexOutOfBoundsException e) {
+            logger.warn("Snapshot {} is corrupt: {}", file, e.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Probes the hash table, comparing the stored strings in place.
+     *
+     * @return the entry offset, or 0 if the path and language are not present
+     */
+    private int findEntry(byte[] path, String pathString, byte[] language, String languageString) {
+        int mask = slotCount - 1;
+        for (int slot = hash(pathString, languageString) & mask; ; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(HEADER_BYTES + slot * Integer.BYTES);
+            if (entry == 0) {
+                return 0;
+            }
+            if (stringEquals(buffer.getInt(entry), path) && stringEquals(buffer.getInt(entry + Integer.BYTES), language)) {
+                return entry;
+            }
+        }
+    }
+
+    private boolean stringEquals(int index, byte[] expected) {
+        int offset = buffer.getInt(stringTableOffset + index * Integer.BYTES);
+        if (buffer.getInt(offset) != expected.length) {
+            return false;
+        }
+        offset += Integer.BYTES;
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(offset + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int index) {
+        int offset = buffer.getInt(stringTableOffset + index * Integer.BYTES);
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + Integer.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Record decode(int entry) {
+        String path = string(buffer.getInt(entry));
+        String keyLanguage = string(buffer.getInt(entry + Integer.BYTES));
+        String resultLanguage = string(buffer.getInt(entry + 2 * Integer.BYTES));
+        long size = buffer.getLong(entry + 3 * Integer.BYTES);
+        long lastModified = buffer.getLong(entry + 3 * Integer.BYTES + Long.BYTES);
+        int functionCount = buffer.getInt(entry + ENTRY_HEADER_BYTES - Integer.BYTES);
+        Map<String, Integer> complexities = new LinkedHashMap<>(functionCount * 4 / 3 + 1);
+        int function = entry + ENTRY_HEADER_BYTES;
+        for (int i = 0; i < functionCount; i++, function += FUNCTION_BYTES) {
+            complexities.put(string(buffer.getInt(function)), buffer.getInt(function + Integer.BYTES));
+        }
+        return new Record(new FileKey(path, size, lastModified, keyLanguage),
+            new ComplexityResult(path, resultLanguage, complexities));
+    }
+
+    private static int hash(String path, String language) {
+        int h = path.hashCode() * 31 + language.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Writes a new snapshot containing the entries of this snapshot updated with the
+     * given results (the most recently modified version per path and language wins). The file is
+     * replaced atomically, so concurrent readers see either the old or the new one.
+     */
+    public void save(Map<FileKey, ComplexityResult> updates) throws IOException {
+        Map<String, Record> records = new LinkedHashMap<>();
+        int entry = entriesOffset;
+        for (int i = 0; i < entryCount; i++) {
+            Record record = decode(entry);
+            records.put(record.id(), record);
+            entry += ENTRY_HEADER_BYTES + record.result.getFunctionComplexities().size() * FUNCTION_BYTES;
+        }
+        Map<String, Record> updated = new HashMap<>();
+        for (Map.Entry<FileKey, ComplexityResult> update : updates.entrySet()) {
+            if (!update.getValue().isPartial()) {
+                Record record = new Record(update.getKey(), update.getValue());
+                // A file may have been analyzed in several versions, keep the newest one
+                updated.merge(record.id(), record, (a, b) ->
+                    a.key.getLastModifiedMillis() >= b.key.getLastModifiedMillis() ? a : b);
+            }
+        }
+        records.putAll(updated);
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            write(temp, rulesVersion, new ArrayList<>(records.values()));
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.info("Saved snapshot of {} files to {}", records.size(), file);
+    }
+
+    private static void write(Path target, int rulesVersion, List<Record> records) throws IOException {
+        // Intern all strings and lay out the entries
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int slotCount = Integer.highestOneBit(Math.max(1, records.size() * 2 - 1)) << 1;
+        int entriesOffset = HEADER_BYTES + slotCount * Integer.BYTES;
+        int[] slots = new int[slotCount];
+        int offset = entriesOffset;
+        for (Record record : records) {
+            intern(record.key.getCanonicalPath(), stringIndexes, strings);
+            intern(record.key.getLanguage(), stringIndexes, strings);
+            intern(record.result.getLanguage(), stringIndexes, strings);
+            record.result.getFunctionComplexities().keySet().forEach(name -> intern(name, stringIndexes, strings));
+
+            int slot = hash(record.key.getCanonicalPath(), record.key.getLanguage()) & (slotCount - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = offset;
+            offset += ENTRY_HEADER_BYTES + record.result.getFunctionComplexities().size() * FUNCTION_BYTES;
+        }
+        int stringTableOffset = offset;
+        long stringDataOffset = (long) stringTableOffset + (long) strings.size() * Integer.BYTES;
+        long totalBytes = stringDataOffset;
+        for (byte[] string : strings) {
+            totalBytes += Integer.BYTES + string.length;
+        }
+        if (totalBytes > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot would exceed 2 GiB");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rulesVersion);
+            out.writeInt(records.size());
+            out.writeInt(slotCount);
+            out.writeInt(strings.size());
+            out.writeInt(entriesOffset);
+            out.writeInt(stringTableOffset);
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+            for (Record record : records) {
+                out.writeInt(stringIndexes.get(record.key.getCanonicalPath()));
+                out.writeInt(stringIndexes.get(record.key.getLanguage()));
+                out.writeInt(stringIndexes.get(record.result.getLanguage()));
+                out.writeLong(record.key.getSize());
+                out.writeLong(record.key.getLastModifiedMillis());
+                out.writeInt(record.result.getFunctionComplexities().size());
+                for (Map.Entry<String, Integer> function : record.result.getFunctionComplexities().entrySet()) {
+                    out.writeInt(stringIndexes.get(function.getKey()));
+                    out.writeInt(function.getValue());
+                }
+            }
+            int stringOffset = (int) stringDataOffset;
+            for (byte[] string : strings) {
+                out.writeInt(stringOffset);
+                stringOffset += Integer.BYTES + string.length;
+            }
+            for (byte[] string : strings) {
+                out.writeInt(string.length);
+                out.write(string);
+            }
+        }
+    }
+
+    private static void intern(String string, Map<String, Integer> indexes, List<byte[]> strings) {
+        if (!indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns the entry count and hit/miss counters as a summary line.
+     */
+    public String getStatistics() {
+        return String.format("%s, %d files, hits %d, misses %d", file, entryCount, hits.sum(), misses.sum());
+    }
+
+    /**
+     * One decoded file entry.
+     */
+    private static final class Record {
+        final FileKey key;
+        final ComplexityResult result;
+
+        Record(FileKey key, ComplexityResult result) {
+            this.key = key;
+            this.result = result;
+        }
+
+        String id() {
+            return key.getCanonicalPath() + '\0' + key.getLanguage();
+        }
+    }
+}
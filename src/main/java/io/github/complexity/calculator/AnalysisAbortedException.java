@@ -0,0 +1,32 @@
+package io.github.complexity.calculator;
+
+/**
+ * Thrown when an analysis is stopped before completion because it was cancelled
+ * or exceeded its deadline
+ */
+public class AnalysisAbortedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ComplexityResult partialResult;
+    private final boolean cancelled;
+
+    public AnalysisAbortedException(ComplexityResult partialResult, boolean cancelled) {
+        super(cancelled ? "Analysis cancelled" : "Analysis timed out");
+        this.partialResult = partialResult;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Returns the result containing only the functions completed before the analysis stopped.
+     */
+    public ComplexityResult getPartialResult() {
+        return partialResult;
+    }
+
+    /**
+     * Returns true if the analysis was cancelled, false if it timed out.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.complexity.calculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cooperative cancellation and deadline for a single analysis
+ *
+ * Calculators call {@link #checkpoint} at regular intervals (per method in the
+ * Java visitor, every few hundred lines in the assembler line loops). Once the
+ * analysis has been cancelled or its deadline has passed, the checkpoint aborts
+ * the analysis with an {@link AnalysisAbortedException} carrying the functions
+ * completed so far. Otherwise it passes them on to the {@link ProgressListener}, if any.
+ */
+public class AnalysisContext {
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    private volatile ProgressListener progressListener;
+
+    /**
+     * Creates a context without deadline.
+     */
+    public AnalysisContext() {
+        this(0);
+    }
+
+    /**
+     * Creates a context with the given timeout.
+     *
+     * @param timeoutMillis timeout in milliseconds, or 0 for no deadline
+     */
+    public AnalysisContext(long timeoutMillis) {
+        this.deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1_000_000 : 0;
+    }
+
+    /**
+     * Requests cancellation. Running analyses stop at their next checkpoint.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isTimedOut() {
+        return deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Sets the listener receiving the checkpoints and completed files, or null for none.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns true if the analysis should stop (cancelled or deadline exceeded).
+     */
+    public boolean shouldStop() {
+        return cancelled || isTimedOut();
+    }
+
+    /**
+     * Aborts the analysis if it should stop.
+     *
+     * @param fileName the file being analyzed
+     * @param language the language of the calculator
+     * @param completed the functions completed so far
+     * @throws AnalysisAbortedException if the analysis was cancelled or timed out
+     */
+    public void checkpoint(String fileName, String language, Map<String, Integer> completed) {
+        if (shouldStop()) {
+            ComplexityResult partial = new ComplexityResult(fileName, language,
+                new LinkedHashMap<>(completed), true);
+            throw new AnalysisAbortedException(partial, isCancelled());
+        }
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.checkpoint(fileName, language, completed);
+        }
+    }
+
+    /**
+     * Aborts the analysis if it should stop, without reporting progress. For work whose
+     * functions are not final yet, such as a chunk of a file scanned in parallel.
+     *
+     * @throws AnalysisAbortedException without completed functions, if the analysis was cancelled or timed out
+     */
+    public void checkpoint(String fileName, String language) {
+        if (shouldStop()) {
+            throw new AnalysisAbortedException(new ComplexityResult(fileName, language, Map.of(), true),
+                isCancelled());
+        }
+    }
+
+    /**
+     * Reports the result of one of several files analyzed under this context.
+     */
+    public void fileCompleted(ComplexityResult result) {
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.fileCompleted(result);
+        }
+    }
+}
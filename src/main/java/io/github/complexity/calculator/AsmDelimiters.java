@@ -0,0 +1,90 @@
+package io.github.complexity.calculator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Finds the line breaks and comment starts of assembler source for {@link AsmLineScanner}
+ *
+ * The vector implementation is used when complexity.asm.vector is true and the JVM was started
+ * with {@code --add-modules jdk.incubator.vector}; otherwise the characters are compared one at a
+ * time. Both return the same positions. Vectors only pay off for long lines (e.g. listings with
+ * addresses and comments), so the scalar scanner is the default.
+ *
+ * The vector implementation lives in the separate vector source set, the only code compiled
+ * against the incubator module, and is looked up by name.
+ */
+interface AsmDelimiters {
+
+    /**
+     * Sources shorter than this are always scanned one character at a time
+     */
+    int VECTOR_MIN_LENGTH = 4096;
+
+    boolean VECTOR_ENABLED = Boolean.parseBoolean(System.getProperty("complexity.asm.vector", "false"))
+        && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+        && Vector.CONSTRUCTOR != null;
+
+    /**
+     * Returns the index of the first '\n' or '\r' (and ';' if comments is set) at or after from,
+     * or the length of the source if there is none.
+     */
+    int next(int from, boolean comments);
+
+    static AsmDelimiters of(String source) {
+        if (VECTOR_ENABLED && source.length() >= VECTOR_MIN_LENGTH) {
+            return Vector.create(source);
+        }
+        return new Scalar(source);
+    }
+
+    /**
+     * Constructor of VectorAsmDelimiters, or null if the class is not on the class path
+     */
+    final class Vector {
+        static final MethodHandle CONSTRUCTOR = findConstructor();
+
+        private Vector() {
+        }
+
+        static AsmDelimiters create(String source) {
+            try {
+                return (AsmDelimiters) CONSTRUCTOR.invoke(source);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static MethodHandle findConstructor() {
+            try {
+                Class<?> type = Class.forName(AsmDelimiters.class.getPackageName() + ".VectorAsmDelimiters");
+                return MethodHandles.lookup().findConstructor(type, MethodType.methodType(void.class, String.class));
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+
+    final class Scalar implements AsmDelimiters {
+        private final String source;
+
+        Scalar(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public int next(int from, boolean comments) {
+            int length = source.length();
+            for (int i = from; i < length; i++) {
+                char c = source.charAt(i);
+                if (c == '\n' || c == '\r' || (comments && c == ';')) {
+                    return i;
+                }
+            }
+            return length;
+        }
+    }
+}
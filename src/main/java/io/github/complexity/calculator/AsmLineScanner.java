@@ -0,0 +1,280 @@
+package io.github.complexity.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Walks assembler source line by line without copying it
+ *
+ * Each line is reduced to its content: surrounding whitespace (as removed by
+ * {@link String#trim()}) and a trailing {@code ;} comment are excluded. Lines are split like
+ * {@link java.io.BufferedReader#readLine()} does, so line numbers agree with it. The matching
+ * methods reproduce the regular expressions the calculators used before, applied to the content.
+ * Line breaks and comments are located by {@link AsmDelimiters}.
+ */
+final class AsmLineScanner {
+
+    private final String source;
+    private final AsmDelimiters delimiters;
+    private final int from;
+    private final int limit; // exclusive end of the scanned range
+    private int position;
+    private int lineNumber;
+    private int start; // of the content of the current line
+    private int end; // exclusive
+
+    AsmLineScanner(String source) {
+        this(source, 0, source.length());
+    }
+
+    /**
+     * Scans a range of the source. The range starts at the beginning of a line and ends
+     * after a line break or at the end of the source.
+     */
+    AsmLineScanner(String source, int from, int to) {
+        this.source = source;
+        this.delimiters = AsmDelimiters.of(source);
+        this.from = from;
+        this.limit = to;
+        this.position = from;
+    }
+
+    /**
+     * Returns a scanner over the lines of this range before the given position, which is
+     * a {@link #position()} of this scanner.
+     */
+    AsmLineScanner upTo(int to) {
+        return new AsmLineScanner(source, from, to);
+    }
+
+    /**
+     * Returns the text of the scanned range.
+     */
+    String rangeText() {
+        return source.substring(from, limit);
+    }
+
+    /**
+     * Advances to the next line. Returns false at the end of the input.
+     */
+    boolean nextLine() {
+        int length = limit;
+        if (position >= length) {
+            return false;
+        }
+        int lineStart = position;
+        int contentEnd = delimiters.next(lineStart, true);
+        int lineEnd = contentEnd < length && source.charAt(contentEnd) == ';' ?
+            delimiters.next(contentEnd + 1, false) : contentEnd;
+        position = lineEnd;
+        if (position < length && source.charAt(position++) == '\r' && position < length
+                && source.charAt(position) == '\n') {
+            position++;
+        }
+        lineNumber++;
+
+        while (lineStart < contentEnd && source.charAt(lineStart) <= ' ') {
+            lineStart++;
+        }
+        start = lineStart;
+        end = contentEnd;
+        while (end > start && source.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position in the source after the current line and its line break.
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Returns the 1-based number of the current line.
+     */
+    int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns whether the current line has no content besides whitespace and comments.
+     */
+    boolean isBlank() {
+        return start == end;
+    }
+
+    /**
+     * Returns the length of the identifier ([a-zA-Z_][a-zA-Z0-9_]*) the content starts with, 0 if none.
+     */
+    int identifierLength() {
+        return identifierLength(start);
+    }
+
+    /**
+     * Returns part of the content, e.g. an identifier found by {@link #identifierLength()}.
+     */
+    String text(int offset, int length) {
+        return source.substring(start + offset, start + offset + length);
+    }
+
+    /**
+     * Returns whether the content starts with the given text.
+     */
+    boolean startsWith(String prefix) {
+        return end - start >= prefix.length() && source.startsWith(prefix, start);
+    }
+
+    /**
+     * Returns whether the content starts with an identifier directly followed by ':'.
+     */
+    boolean isLabel() {
+        int length = identifierLength();
+        return length > 0 && start + length < end && source.charAt(start + length) == ':';
+    }
+
+    /**
+     * Returns whether one of the given spellings of a word follows at the offset, ending at a word boundary.
+     */
+    boolean isWordAt(int offset, String upper, String lower) {
+        int from = start + offset;
+        int length = upper.length();
+        if (end - from < length
+                || !source.startsWith(upper, from) && !source.startsWith(lower, from)) {
+            return false;
+        }
+        return from + length == end || !isWordChar(source.charAt(from + length));
+    }
+
+    /**
+     * Returns the offset after one or more whitespace characters at the offset, or -1 if there are none.
+     */
+    int skipWhitespace(int offset) {
+        int index = start + offset;
+        while (index < end && isWhitespace(source.charAt(index))) {
+            index++;
+        }
+        return index == start + offset ? -1 : index - start;
+    }
+
+    /**
+     * Returns the length of the identifier at the offset of the content, 0 if none.
+     */
+    int identifierLengthAt(int offset) {
+        return identifierLength(start + offset);
+    }
+
+    /**
+     * Looks up the first word of the content (up to the first whitespace), ignoring case.
+     */
+    boolean opcodeIn(OpcodeTable table) {
+        int wordEnd = start;
+        while (wordEnd < end && !isWhitespace(source.charAt(wordEnd))) {
+            wordEnd++;
+        }
+        return table.contains(source, start, wordEnd);
+    }
+
+    private int identifierLength(int from) {
+        if (from >= end || !isIdentifierStart(source.charAt(from))) {
+            return 0;
+        }
+        int index = from + 1;
+        while (index < end && (isIdentifierStart(source.charAt(index)) || isDigit(source.charAt(index)))) {
+            index++;
+        }
+        return index - from;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // Word characters of regex \b
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Case-insensitive set of opcodes with a collision-free hash, found when the table is built
+     */
+    static final class OpcodeTable {
+        private final char[][] slots;
+        private final int[] indexes; // of each slot's opcode in the order given to the constructor
+        private final int multiplier;
+        private final int mask;
+
+        OpcodeTable(String[]... groups) {
+            String[] opcodes = Arrays.stream(groups).flatMap(Arrays::stream).toArray(String[]::new);
+            for (int size = Integer.highestOneBit(opcodes.length * 2) * 2; ; size *= 2) {
+                for (int multiplier = 31; multiplier < 4096; multiplier += 2) {
+                    char[][] slots = fill(opcodes, multiplier, size - 1);
+                    if (slots != null) {
+                        this.slots = slots;
+                        this.indexes = new int[size];
+                        for (int i = 0; i < opcodes.length; i++) {
+                            indexes[hash(opcodes[i], 0, opcodes[i].length(), multiplier) & (size - 1)] = i;
+                        }
+                        this.multiplier = multiplier;
+                        this.mask = size - 1;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private static char[][] fill(String[] opcodes, int multiplier, int mask) {
+            char[][] slots = new char[mask + 1][];
+            for (String opcode : opcodes) {
+                int slot = hash(opcode, 0, opcode.length(), multiplier) & mask;
+                if (slots[slot] != null) {
+                    return null;
+                }
+                slots[slot] = opcode.toCharArray();
+            }
+            return slots;
+        }
+
+        private static int hash(CharSequence text, int from, int to, int multiplier) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = hash * multiplier + upperCase(text.charAt(i));
+            }
+            return hash ^ (hash >>> 11);
+        }
+
+        private static char upperCase(char c) {
+            return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c < 0x80 ? c : Character.toUpperCase(c);
+        }
+
+        boolean contains(CharSequence text, int from, int to) {
+            return indexOf(text, from, to) >= 0;
+        }
+
+        /**
+         * Returns the position of the opcode in the order given to the constructor, or -1.
+         */
+        int indexOf(CharSequence text, int from, int to) {
+            int slot = hash(text, from, to, multiplier) & mask;
+            char[] opcode = slots[slot];
+            if (opcode == null || opcode.length != to - from) {
+                return -1;
+            }
+            for (int i = 0; i < opcode.length; i++) {
+                if (upperCase(text.charAt(from + i)) != opcode[i]) {
+                    return -1;
+                }
+            }
+            return indexes[slot];
+        }
+    }
+}
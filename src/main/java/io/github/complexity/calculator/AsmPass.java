@@ -0,0 +1,193 @@
+package io.github.complexity.calculator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Line loop of the assembler calculators, scanning large sources in parallel
+ *
+ * A pass holds the complexities and parser state of a scan over consecutive lines. When a source
+ * has more than one chunk, the chunks after the first are scanned on the common fork-join pool,
+ * each by a pass of its own starting in the initial state. Such a pass notes where its first line
+ * that resets the state (e.g. PROC or ENDP) ends and drops everything it found before. Chunks are
+ * joined in order: their lines up to that point are scanned again, continuing from the state the
+ * previous chunk ended in, and the rest of the chunk's result is taken over as is. The result is
+ * therefore the same as that of a sequential scan, including the order in which functions are found.
+ */
+abstract class AsmPass {
+
+    // Cancellation and deadlines are checked every 256 lines
+    private static final int CHECKPOINT_INTERVAL_MASK = 0xFF;
+
+    // Default characters per chunk when a source is scanned in parallel, 0 to scan sequentially
+    static final int PARALLEL_CHUNK_CHARS = Integer.getInteger("complexity.asm.parallelChunkChars",
+        Runtime.getRuntime().availableProcessors() > 1 ? LineChunkReader.DEFAULT_CHUNK_CHARS : 0);
+    // Chunks scanned ahead of the join, which bounds the memory held by a streamed source
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2 * Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+
+    final Map<String, Integer> complexities;
+    int lineCount;
+
+    private final String fileName;
+    private final String language;
+    private final AnalysisContext context;
+    private int decisionPoints; // of all lines, reported for files without functions
+    private boolean chunk; // whether this pass scans a chunk other than the first
+    private int resumePosition = -1; // after the first line resetting the state of a chunk
+    private int resumeLineCount;
+
+    /**
+     * @param complexities receives the functions; chunk passes need an insertion-ordered map
+     */
+    AsmPass(String fileName, String language, AnalysisContext context, Map<String, Integer> complexities) {
+        this.fileName = fileName;
+        this.language = language;
+        this.context = context;
+        this.complexities = complexities;
+    }
+
+    /**
+     * Returns whether the state after the line is the same whatever the state before it was.
+     */
+    abstract boolean resetsState(AsmLineScanner line);
+
+    abstract int countDecisionPoints(AsmLineScanner line);
+
+    abstract void processLine(AsmLineScanner line, int decisionPoints);
+
+    /**
+     * Continues from the state a later chunk ended in.
+     */
+    abstract void adoptState(AsmPass chunk);
+
+    /**
+     * Returns the complexity of the whole source as a single function.
+     */
+    int getGlobalComplexity() {
+        return 1 + decisionPoints;
+    }
+
+    /**
+     * Scans all chunks into this pass.
+     *
+     * @param chunkPasses creates the passes for chunks scanned in parallel, or null to scan sequentially
+     */
+    void scanAll(LineChunkReader chunks, Supplier<? extends AsmPass> chunkPasses) throws IOException {
+        AsmLineScanner first = chunks.next();
+        if (chunkPasses == null) {
+            for (AsmLineScanner line = first; line != null; line = chunks.next()) {
+                scan(line);
+            }
+            return;
+        }
+        if (first == null) {
+            return;
+        }
+
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        try {
+            AsmLineScanner next = chunks.next();
+            while (next != null && inFlight.size() < MAX_CHUNKS_IN_FLIGHT) {
+                inFlight.add(new Chunk(next, chunkPasses.get()));
+                next = chunks.next();
+            }
+            scan(first);
+            while (!inFlight.isEmpty()) {
+                join(inFlight.remove());
+                if (next != null) {
+                    inFlight.add(new Chunk(next, chunkPasses.get()));
+                    next = chunks.next();
+                }
+            }
+        } finally {
+            for (Chunk chunk : inFlight) {
+                chunk.task.cancel(true);
+            }
+        }
+    }
+
+    private void scan(AsmLineScanner line) {
+        while (line.nextLine()) {
+            if ((++lineCount & CHECKPOINT_INTERVAL_MASK) == 0) {
+                if (chunk) {
+                    // Functions of a chunk are only final once it is joined
+                    context.checkpoint(fileName, language);
+                } else {
+                    context.checkpoint(fileName, language, complexities);
+                }
+            }
+
+            if (line.isBlank()) {
+                continue;
+            }
+
+            int points = countDecisionPoints(line);
+            boolean resumeAfter = chunk && resumePosition < 0 && resetsState(line);
+            decisionPoints += points;
+            processLine(line, points);
+            if (resumeAfter) {
+                // Everything before depends on the preceding chunks and is scanned again when joining
+                resumePosition = line.position();
+                resumeLineCount = lineCount;
+                complexities.clear();
+                decisionPoints = 0;
+            }
+        }
+    }
+
+    private void join(Chunk chunk) throws IOException {
+        AsmPass pass = await(chunk.task);
+        scan(chunk.lines.upTo(pass.resumePosition >= 0 ? pass.resumePosition : chunk.lines.position()));
+        if (pass.resumePosition >= 0) {
+            complexities.putAll(pass.complexities);
+            decisionPoints += pass.decisionPoints;
+            lineCount += pass.lineCount - pass.resumeLineCount;
+            adoptState(pass);
+        }
+    }
+
+    private AsmPass await(ForkJoinTask<AsmPass> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a chunk");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AnalysisAbortedException) {
+                // Report the functions joined so far rather than those of the chunk
+                context.checkpoint(fileName, language, complexities);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A chunk being scanned on the common pool
+     */
+    private static final class Chunk {
+        final AsmLineScanner lines;
+        final ForkJoinTask<AsmPass> task;
+
+        Chunk(AsmLineScanner lines, AsmPass pass) {
+            this.lines = lines;
+            pass.chunk = true;
+            this.task = ForkJoinPool.commonPool().submit(() -> {
+                pass.scan(lines);
+                return pass;
+            });
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package io.github.complexity.calculator;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Reader;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Calculates cyclomatic complexity for x86/x64 assembler code
@@ -16,15 +13,7 @@ import java.util.regex.Pattern;
  * - Conditional returns
  * - Each function/procedure starts at complexity 1
  */
-public class AssemblerComplexityCalculator implements ComplexityCalculator {
-
-    // Patterns for different assembler constructs
-    private static final Pattern PROC_PATTERN = Pattern.compile(
-        "^\\s*([a-zA-Z_][a-zA-Z0-9_]*)\\s+(PROC|proc)\\b");
-    private static final Pattern ENDP_PATTERN = Pattern.compile(
-        "^\\s*([a-zA-Z_][a-zA-Z0-9_]*)\\s+(ENDP|endp)\\b");
-    private static final Pattern LABEL_PATTERN = Pattern.compile(
-        "^\\s*([a-zA-Z_][a-zA-Z0-9_]*):");
+public class AssemblerComplexityCalculator implements IncrementalComplexityCalculator {
 
     /**
      * Helper class to manage function parsing state.
@@ -32,6 +21,9 @@ public class AssemblerComplexityCalculator implements ComplexityCalculator {
     private static class FunctionState {
         String currentFunction;
         int currentComplexity;
+        // Segment tracking for incremental analysis, null if not needed
+        SegmentRecorder recorder;
+        int lineNumber;
 
         void startFunction(String name) {
             this.currentFunction = name;
@@ -50,61 +42,179 @@ public class AssemblerComplexityCalculator implements ComplexityCalculator {
         boolean hasFunction() {
             return currentFunction != null;
         }
+
+        void beginSegment() {
+            if (recorder != null) {
+                // PROC and top-level labels start a function whatever was open before
+                recorder.begin(lineNumber, SegmentedResult.Boundary.BEFORE_RESET);
+            }
+        }
     }
 
     // Conditional jump instructions
-    private static final Set<String> CONDITIONAL_JUMPS = new HashSet<>(Arrays.asList(
+    private static final String[] CONDITIONAL_JUMPS = {
         "JE", "JZ", "JNE", "JNZ", "JG", "JNLE", "JGE", "JNL",
         "JL", "JNGE", "JLE", "JNG", "JA", "JNBE", "JAE", "JNB",
         "JB", "JNAE", "JBE", "JNA", "JP", "JPE", "JNP", "JPO",
         "JC", "JNC", "JO", "JNO", "JS", "JNS",
         "JECXZ", "JCXZ", "JRCXZ" // Conditional jumps based on CX/ECX/RCX
-    ));
+    };
 
     // Loop instructions
-    private static final Set<String> LOOP_INSTRUCTIONS = new HashSet<>(Arrays.asList(
+    private static final String[] LOOP_INSTRUCTIONS = {
         "LOOP", "LOOPE", "LOOPZ", "LOOPNE", "LOOPNZ"
-    ));
+    };
 
     // Conditional move instructions (also add complexity)
-    private static final Set<String> CONDITIONAL_MOVES = new HashSet<>(Arrays.asList(
+    private static final String[] CONDITIONAL_MOVES = {
         "CMOVE", "CMOVZ", "CMOVNE", "CMOVNZ", "CMOVG", "CMOVGE",
         "CMOVL", "CMOVLE", "CMOVA", "CMOVAE", "CMOVB", "CMOVBE",
         "CMOVP", "CMOVNP", "CMOVO", "CMOVNO", "CMOVS", "CMOVNS"
-    ));
+    };
+
+    // Each of these opcodes is one decision point
+    private static final AsmLineScanner.OpcodeTable DECISION_OPCODES =
+        new AsmLineScanner.OpcodeTable(CONDITIONAL_JUMPS, LOOP_INSTRUCTIONS, CONDITIONAL_MOVES);
+
+    private final int parallelChunkChars;
+
+    public AssemblerComplexityCalculator() {
+        this(AsmPass.PARALLEL_CHUNK_CHARS);
+    }
+
+    /**
+     * @param parallelChunkChars characters per chunk when a large source is scanned in parallel,
+     *                           or 0 to scan sequentially
+     */
+    AssemblerComplexityCalculator(int parallelChunkChars) {
+        this.parallelChunkChars = parallelChunkChars;
+    }
 
     @Override
     public ComplexityResult calculate(String sourceCode, String fileName) throws IOException {
-        Map<String, Integer> complexities = new HashMap<>();
-        FunctionState state = new FunctionState();
-
-        BufferedReader reader = new BufferedReader(new StringReader(sourceCode));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String trimmed = preprocessLine(line);
-            if (trimmed == null) {
-                continue;
-            }
+        return calculate(sourceCode, fileName, new AnalysisContext());
+    }
 
-            if (processProcStart(trimmed, state, complexities)) continue;
-            if (processProcEnd(trimmed, state, complexities)) continue;
-            if (processLabel(trimmed, state)) continue;
+    @Override
+    public ComplexityResult calculate(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        return analyze(new LineChunkReader(sourceCode, parallelChunkChars), fileName, context, null, true).getResult();
+    }
 
-            // Count decision points if we're in a function
-            if (state.hasFunction()) {
-                state.addComplexity(countDecisionPoints(trimmed));
-            }
+    /**
+     * Reads the source in chunks of whole lines, so memory use does not depend on its size.
+     */
+    @Override
+    public ComplexityResult calculate(Reader source, String fileName, AnalysisContext context)
+            throws IOException {
+        int chunkChars = parallelChunkChars > 0 ? parallelChunkChars : LineChunkReader.DEFAULT_CHUNK_CHARS;
+        return analyze(new LineChunkReader(source, chunkChars), fileName, context, null, true).getResult();
+    }
+
+    @Override
+    public SegmentedResult calculateSegments(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        return analyze(new LineChunkReader(sourceCode, 0), fileName, context, new SegmentRecorder(), true);
+    }
+
+    @Override
+    public SegmentedResult calculateRegion(String regionText, String fileName) throws IOException {
+        return analyze(new LineChunkReader(regionText, 0), fileName, new AnalysisContext(), new SegmentRecorder(),
+            false);
+    }
+
+    @Override
+    public boolean isNeutralGapEdit(String oldText, String newText) {
+        try {
+            SegmentedResult region = calculateRegion(newText, "gap");
+            return region.getSegments().isEmpty() && region.getEndState() == SegmentedResult.EndState.EMPTY;
+        } catch (IOException e) {
+            return false;
         }
+    }
+
+    @Override
+    public boolean hasContextFreeGaps() {
+        return true;
+    }
+
+    /**
+     * @param recorder records segments for incremental analysis, or null
+     * @param wholeFile whether a file without functions is reported as one global function
+     */
+    private SegmentedResult analyze(LineChunkReader chunks, String fileName, AnalysisContext context,
+                                    SegmentRecorder recorder, boolean wholeFile) throws IOException {
+        Pass pass = new Pass(fileName, context, new HashMap<>());
+        pass.state.recorder = recorder;
+        // Segments are only recorded by a sequential scan
+        boolean parallel = recorder == null && parallelChunkChars > 0;
+        pass.scanAll(chunks, parallel ? () -> new Pass(fileName, context, new LinkedHashMap<>()) : null);
+
+        FunctionState state = pass.state;
+        Map<String, Integer> complexities = pass.complexities;
+        SegmentedResult.EndState endState = state.hasFunction() ?
+            SegmentedResult.EndState.OPEN : SegmentedResult.EndState.EMPTY;
 
         // Save last function if exists
         saveFunction(state, complexities);
 
         // If no functions found, treat whole file as one function
-        if (complexities.isEmpty()) {
-            complexities.put("_global_", calculateGlobalComplexity(sourceCode));
+        if (complexities.isEmpty() && wholeFile) {
+            complexities.put("_global_", pass.getGlobalComplexity());
         }
 
-        return new ComplexityResult(fileName, "Assembler", complexities);
+        return new SegmentedResult(new ComplexityResult(fileName, "Assembler", complexities),
+            recorder != null ? recorder.finish(pass.lineCount) : List.of(), endState);
+    }
+
+    /**
+     * Scan of consecutive lines with its own function state
+     */
+    private final class Pass extends AsmPass {
+        final FunctionState state = new FunctionState();
+
+        Pass(String fileName, AnalysisContext context, Map<String, Integer> complexities) {
+            super(fileName, "Assembler", context, complexities);
+        }
+
+        // PROC starts a function and ENDP ends it, whatever was open before
+        @Override
+        boolean resetsState(AsmLineScanner line) {
+            return nameBeforeKeyword(line, "PROC", "proc") > 0 || nameBeforeKeyword(line, "ENDP", "endp") > 0;
+        }
+
+        @Override
+        int countDecisionPoints(AsmLineScanner line) {
+            return AssemblerComplexityCalculator.this.countDecisionPoints(line);
+        }
+
+        @Override
+        void processLine(AsmLineScanner line, int decisionPoints) {
+            state.lineNumber = lineCount;
+            AssemblerComplexityCalculator.this.processLine(line, decisionPoints, state, complexities);
+            if (state.recorder != null) {
+                state.recorder.afterLine(lineCount, !state.hasFunction());
+            }
+        }
+
+        @Override
+        void adoptState(AsmPass chunk) {
+            FunctionState other = ((Pass) chunk).state;
+            state.currentFunction = other.currentFunction;
+            state.currentComplexity = other.currentComplexity;
+        }
+    }
+
+    private void processLine(AsmLineScanner line, int decisionPoints, FunctionState state,
+                             Map<String, Integer> complexities) {
+        if (processProcStart(line, state, complexities)) return;
+        if (processProcEnd(line, state, complexities)) return;
+        if (processLabel(line, state)) return;
+
+        // Count decision points if we're in a function
+        if (state.hasFunction()) {
+            state.addComplexity(decisionPoints);
+        }
     }
 
     /**
@@ -113,17 +223,21 @@ public class AssemblerComplexityCalculator implements ComplexityCalculator {
     private void saveFunction(FunctionState state, Map<String, Integer> complexities) {
         if (state.hasFunction()) {
             complexities.put(state.currentFunction, state.currentComplexity);
+            if (state.recorder != null) {
+                state.recorder.function(state.currentFunction, state.currentComplexity);
+            }
         }
     }
 
     /**
      * Processes PROC declaration. Returns true if line was processed.
      */
-    private boolean processProcStart(String line, FunctionState state, Map<String, Integer> complexities) {
-        Matcher matcher = PROC_PATTERN.matcher(line);
-        if (matcher.find()) {
+    private boolean processProcStart(AsmLineScanner line, FunctionState state, Map<String, Integer> complexities) {
+        int nameLength = nameBeforeKeyword(line, "PROC", "proc");
+        if (nameLength > 0) {
             saveFunction(state, complexities);
-            state.startFunction(matcher.group(1));
+            state.startFunction(line.text(0, nameLength));
+            state.beginSegment();
             return true;
         }
         return false;
@@ -132,9 +246,8 @@ public class AssemblerComplexityCalculator implements ComplexityCalculator {
     /**
      * Processes ENDP declaration. Returns true if line was processed.
      */
-    private boolean processProcEnd(String line, FunctionState state, Map<String, Integer> complexities) {
-        Matcher matcher = ENDP_PATTERN.matcher(line);
-        if (matcher.find()) {
+    private boolean processProcEnd(AsmLineScanner line, FunctionState state, Map<String, Integer> complexities) {
+        if (nameBeforeKeyword(line, "ENDP", "endp") > 0) {
             saveFunction(state, complexities);
             state.endFunction();
             return true;
@@ -145,83 +258,32 @@ public class AssemblerComplexityCalculator implements ComplexityCalculator {
     /**
      * Processes label declaration. Returns true if line was processed.
      */
-    private boolean processLabel(String line, FunctionState state) {
+    private boolean processLabel(AsmLineScanner line, FunctionState state) {
         if (state.hasFunction()) {
             return false;
         }
 
-        Matcher matcher = LABEL_PATTERN.matcher(line);
-        if (matcher.find()) {
-            state.startFunction(matcher.group(1));
+        if (line.isLabel()) {
+            state.startFunction(line.text(0, line.identifierLength()));
+            state.beginSegment();
             return true;
         }
         return false;
     }
 
     /**
-     * Calculates complexity for files without explicit function declarations.
+     * Matches "name KEYWORD" with either spelling of the keyword.
+     * @return the length of the name, or 0 if the line does not match
      */
-    private int calculateGlobalComplexity(String sourceCode) throws IOException {
-        int totalComplexity = 1;
-        BufferedReader reader = new BufferedReader(new StringReader(sourceCode));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String trimmed = preprocessLine(line);
-            if (trimmed != null) {
-                totalComplexity += countDecisionPoints(trimmed);
-            }
-        }
-        return totalComplexity;
+    private static int nameBeforeKeyword(AsmLineScanner line, String upper, String lower) {
+        int nameLength = line.identifierLength();
+        int keyword = nameLength > 0 ? line.skipWhitespace(nameLength) : -1;
+        return keyword > 0 && line.isWordAt(keyword, upper, lower) ? nameLength : 0;
     }
 
-    /**
-     * Preprocesses a line by trimming and removing comments.
-     * @return the preprocessed line, or null if the line should be skipped
-     */
-    private String preprocessLine(String line) {
-        String trimmed = line.trim();
-
-        // Skip empty lines and comments
-        if (trimmed.isEmpty() || trimmed.startsWith(";")) {
-            return null;
-        }
-
-        // Remove inline comments
-        int commentPos = trimmed.indexOf(';');
-        if (commentPos >= 0) {
-            trimmed = trimmed.substring(0, commentPos).trim();
-        }
-
-        return trimmed;
-    }
-
-    private int countDecisionPoints(String instruction) {
-        int count = 0;
-
-        // Extract the opcode (first word)
-        String[] parts = instruction.split("\\s+");
-        if (parts.length == 0) {
-            return 0;
-        }
-
-        String opcode = parts[0].toUpperCase();
-
-        // Check for conditional jumps
-        if (CONDITIONAL_JUMPS.contains(opcode)) {
-            count++;
-        }
-
-        // Check for loop instructions
-        if (LOOP_INSTRUCTIONS.contains(opcode)) {
-            count++;
-        }
-
-        // Check for conditional moves
-        if (CONDITIONAL_MOVES.contains(opcode)) {
-            count++;
-        }
-
-        return count;
+    private int countDecisionPoints(AsmLineScanner line) {
+        // Conditional jumps, loop instructions and conditional moves
+        return line.opcodeIn(DECISION_OPCODES) ? 1 : 0;
     }
 
     @Override
@@ -0,0 +1,166 @@
+package io.github.complexity.calculator;
+
+/**
+ * Tells 6502 assembler from x86/x64 assembler by the instructions, directives and registers it uses
+ *
+ * Each distinct indicator counts once, directives and registers with {@link #DIRECTIVE_WEIGHT}.
+ * The source is tokenized in a single pass and every token is looked up, ignoring case, in one
+ * table of all indicators. The scan stops early once one dialect leads by {@link #DECISIVE_MARGIN}
+ * or the other can no longer catch up, and never looks beyond the prefix it was configured with.
+ */
+public final class AssemblerDialectDetector {
+
+    public static final int DIRECTIVE_WEIGHT = 2;
+    public static final int DECISIVE_MARGIN = 8;
+
+    // 6502-specific instructions (that don't exist in x86)
+    private static final String[] INSTRUCTIONS_6502 = {
+        "LDA", "LDX", "LDY", "STA", "STX", "STY", "INX", "INY", "DEX", "DEY", "BEQ", "BNE", "BCC",
+        "BCS", "BPL", "BMI", "BVC", "BVS", "PHA", "PLA", "PHP", "PLP", "SEC", "CLC", "SED", "CLD",
+        "SEI", "CLI", "CLV", "ADC", "SBC", "CMP", "CPX", "CPY", "RTS", "RTI", "JSR"
+    };
+
+    // 6502-specific directives; PROCESSOR only counts when followed by 6502
+    private static final String[] DIRECTIVES_6502 = {
+        "PROCESSOR", ".PROC", ".ENDPROC", "SUBROUTINE", "!ZONE", "!ADDR"
+    };
+
+    // x86-specific instructions (that don't exist in 6502)
+    private static final String[] INSTRUCTIONS_X86 = {
+        "MOV", "PUSH", "POP", "CALL", "RET", "ADD", "SUB", "XOR", "AND", "OR", "LEA", "JMP", "JE",
+        "JNE", "JZ", "JG", "JL", "INC", "DEC", "NOP", "INT", "CMOV", "SETCC", "LOOP"
+    };
+
+    // x86-specific directives and registers
+    private static final String[] DIRECTIVES_X86 = {
+        "SECTION", "SEGMENT", "GLOBAL", "EXTERN", "RBP", "RSP", "ESP", "EBP", "RAX", "RBX", "RCX",
+        "RDX", "EAX", "EBX", "ECX", "EDX"
+    };
+
+    private static final AsmLineScanner.OpcodeTable INDICATORS = new AsmLineScanner.OpcodeTable(
+        INSTRUCTIONS_6502, DIRECTIVES_6502, INSTRUCTIONS_X86, DIRECTIVES_X86);
+
+    private static final int PROCESSOR = INSTRUCTIONS_6502.length;
+    private static final int FIRST_X86 = INSTRUCTIONS_6502.length + DIRECTIVES_6502.length;
+    private static final int INDICATOR_COUNT = FIRST_X86 + INSTRUCTIONS_X86.length + DIRECTIVES_X86.length;
+    private static final int[] WEIGHTS = new int[INDICATOR_COUNT];
+
+    static {
+        for (int i = 0; i < INDICATOR_COUNT; i++) {
+            boolean directive = (i >= INSTRUCTIONS_6502.length && i < FIRST_X86)
+                || i >= FIRST_X86 + INSTRUCTIONS_X86.length;
+            WEIGHTS[i] = directive ? DIRECTIVE_WEIGHT : 1;
+        }
+    }
+
+    private final int prefixLength;
+
+    /**
+     * @param prefixLength maximum number of characters examined from the start of the source
+     */
+    public AssemblerDialectDetector(int prefixLength) {
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * Scores of the two dialects; the higher one wins
+     */
+    public static final class Scores {
+        private final int score6502;
+        private final int scoreX86;
+
+        Scores(int score6502, int scoreX86) {
+            this.score6502 = score6502;
+            this.scoreX86 = scoreX86;
+        }
+
+        public int getScore6502() {
+            return score6502;
+        }
+
+        public int getScoreX86() {
+            return scoreX86;
+        }
+    }
+
+    public Scores detect(CharSequence source) {
+        boolean[] seen = new boolean[INDICATOR_COUNT];
+        int score6502 = 0;
+        int scoreX86 = 0;
+        int open6502 = 0; // points not yet seen
+        int openX86 = 0;
+        for (int i = 0; i < INDICATOR_COUNT; i++) {
+            if (i < FIRST_X86) {
+                open6502 += WEIGHTS[i];
+            } else {
+                openX86 += WEIGHTS[i];
+            }
+        }
+
+        int end = Math.min(source.length(), prefixLength);
+        int index = 0;
+        while (index < end) {
+            if (!isWordChar(source.charAt(index))) {
+                index++;
+                continue;
+            }
+            int tokenStart = index;
+            while (index < end && isWordChar(source.charAt(index))) {
+                index++;
+            }
+
+            int indicator = -1;
+            if (tokenStart > 0 && (source.charAt(tokenStart - 1) == '.' || source.charAt(tokenStart - 1) == '!')) {
+                indicator = INDICATORS.indexOf(source, tokenStart - 1, index);
+            }
+            if (indicator < 0) {
+                indicator = INDICATORS.indexOf(source, tokenStart, index);
+            }
+            if (indicator < 0 || seen[indicator]
+                    || (indicator == PROCESSOR && !isFollowedBy6502(source, index, end))) {
+                continue;
+            }
+
+            seen[indicator] = true;
+            if (indicator < FIRST_X86) {
+                score6502 += WEIGHTS[indicator];
+                open6502 -= WEIGHTS[indicator];
+            } else {
+                scoreX86 += WEIGHTS[indicator];
+                openX86 -= WEIGHTS[indicator];
+            }
+            if (Math.abs(score6502 - scoreX86) >= DECISIVE_MARGIN
+                    || score6502 > scoreX86 + openX86 || scoreX86 > score6502 + open6502) {
+                break;
+            }
+        }
+        return new Scores(score6502, scoreX86);
+    }
+
+    // Whitespace, then 6502 as a whole word
+    private static boolean isFollowedBy6502(CharSequence source, int index, int end) {
+        int start = index;
+        while (index < end && isWhitespace(source.charAt(index))) {
+            index++;
+        }
+        if (index == start || end - index < 4) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (source.charAt(index + i) != "6502".charAt(i)) {
+                return false;
+            }
+        }
+        return index + 4 == end || !isWordChar(source.charAt(index + 4));
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'
+            || (c >= 0x80 && Character.isLetterOrDigit(c));
+    }
+
+    // Regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
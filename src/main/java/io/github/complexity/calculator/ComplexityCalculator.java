@@ -1,6 +1,8 @@
 package io.github.complexity.calculator;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
 
 /**
  * Interface for cyclomatic complexity calculators
@@ -16,8 +18,50 @@ public interface ComplexityCalculator {
      */
     ComplexityResult calculate(String sourceCode, String fileName) throws IOException;
 
+    /**
+     * Calculate cyclomatic complexity, checking the context for cancellation and deadlines
+     *
+     * @param sourceCode The source code to analyze
+     * @param fileName The file name (for reporting)
+     * @param context Cancellation and deadline of this analysis
+     * @return ComplexityResult containing the analysis
+     * @throws IOException if there's an error reading or parsing the code
+     * @throws AnalysisAbortedException if the analysis was cancelled or timed out
+     */
+    default ComplexityResult calculate(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        return calculate(sourceCode, fileName);
+    }
+
+    /**
+     * Calculate cyclomatic complexity for source code read from a stream. The default
+     * implementation reads the whole stream into a String; calculators that can do better
+     * override it. The caller remains responsible for closing the reader.
+     *
+     * @param source The source code to analyze
+     * @param fileName The file name (for reporting)
+     * @param context Cancellation and deadline of this analysis
+     * @return ComplexityResult containing the analysis
+     * @throws IOException if there's an error reading or parsing the code
+     * @throws AnalysisAbortedException if the analysis was cancelled or timed out
+     */
+    default ComplexityResult calculate(Reader source, String fileName, AnalysisContext context)
+            throws IOException {
+        StringWriter text = new StringWriter();
+        source.transferTo(text);
+        return calculate(text.toString(), fileName, context);
+    }
+
     /**
      * Get the language this calculator supports
      */
     String getLanguage();
+
+    /**
+     * Get the version of the counting rules. Must be increased whenever the calculator
+     * produces different results for the same input, so that persisted results are invalidated.
+     */
+    default int getAlgorithmVersion() {
+        return 1;
+    }
 }
@@ -12,9 +12,18 @@ public class ComplexityResult {
     private final int totalComplexity;
     private final int maxComplexity;
     private final String mostComplexFunction;
+    private final boolean partial;
 
     public ComplexityResult(String fileName, String language,
                           Map<String, Integer> functionComplexities) {
+        this(fileName, language, functionComplexities, false);
+    }
+
+    /**
+     * @param partial true if the analysis stopped early and only completed functions are listed
+     */
+    public ComplexityResult(String fileName, String language,
+                          Map<String, Integer> functionComplexities, boolean partial) {
         this.fileName = fileName;
         this.language = language;
         this.functionComplexities = functionComplexities;
@@ -26,6 +35,7 @@ public class ComplexityResult {
 
         this.maxComplexity = maxEntry.map(Map.Entry::getValue).orElse(0);
         this.mostComplexFunction = maxEntry.map(Map.Entry::getKey).orElse("N/A");
+        this.partial = partial;
     }
 
     public String getFileName() {
@@ -52,9 +62,26 @@ public class ComplexityResult {
         return mostComplexFunction;
     }
 
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Returns this result reported under a different file name.
+     */
+    public ComplexityResult withFileName(String fileName) {
+        if (fileName.equals(this.fileName)) {
+            return this;
+        }
+        return new ComplexityResult(fileName, language, functionComplexities, partial);
+    }
+
     public String getSummary() {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("File: %s (%s)%n", fileName, language));
+        if (partial) {
+            sb.append(String.format("Partial Result: analysis stopped early, only completed functions are listed%n"));
+        }
         sb.append(String.format("Total Functions: %d%n", functionComplexities.size()));
         sb.append(String.format("Total Complexity: %d%n", totalComplexity));
         sb.append(String.format("Max Complexity: %d in %s%n", maxComplexity, mostComplexFunction));
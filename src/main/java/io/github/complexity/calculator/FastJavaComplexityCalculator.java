@@ -0,0 +1,672 @@
+package io.github.complexity.calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximates Java cyclomatic complexity from tokens alone, without building an AST
+ *
+ * Method boundaries are found by tracking braces: a brace directly following
+ * {@code name(parameters) [throws ...]} in a type body opens a method, and
+ * {@code class}, {@code interface}, {@code enum}, {@code record} and {@code new Type(...)}
+ * open type bodies. Decision tokens (if, for, while, case, catch, ?:, &&, ||) count
+ * toward the innermost open method, so on well-formed code the results match
+ * {@link JavaComplexityCalculator}. Malformed code is not rejected.
+ */
+public class FastJavaComplexityCalculator implements ComplexityCalculator {
+
+    @Override
+    public ComplexityResult calculate(String sourceCode, String fileName) {
+        return calculate(sourceCode, fileName, new AnalysisContext());
+    }
+
+    @Override
+    public ComplexityResult calculate(String sourceCode, String fileName, AnalysisContext context) {
+        Map<String, Integer> complexities = new HashMap<>();
+        context.checkpoint(fileName, "Java", complexities);
+        new Scanner(sourceCode, fileName, context, complexities).run();
+        return new ComplexityResult(fileName, "Java", complexities);
+    }
+
+    @Override
+    public String getLanguage() {
+        return "Java";
+    }
+
+    // Token kinds; single-character operators are returned as the character itself
+    private static final int EOF = -1;
+    private static final int IDENTIFIER = 1000;
+    private static final int LITERAL = 1001;
+    private static final int AND_AND = 1002;
+    private static final int OR_OR = 1003;
+    private static final int ELLIPSIS = 1004;
+    private static final int OTHER_OPERATOR = 1005; // ->, ::, ==, +=, ...
+
+    // Keywords that matter for the structure or the count; all others are identifiers
+    private static final int KW_IF = 1100;
+    private static final int KW_FOR = 1101;
+    private static final int KW_WHILE = 1102;
+    private static final int KW_CASE = 1103;
+    private static final int KW_CATCH = 1104;
+    private static final int KW_NEW = 1105;
+    private static final int KW_CLASS = 1106;
+    private static final int KW_INTERFACE = 1107;
+    private static final int KW_ENUM = 1108;
+    private static final int KW_RECORD = 1109; // contextual, only when followed by a name
+    private static final int KW_THIS = 1110;
+    private static final int KW_FINAL = 1111;
+
+    /**
+     * Splits Java source into tokens, skipping whitespace, comments and the contents of literals.
+     */
+    private static final class Lexer {
+        private final String source;
+        private final int end;
+        private int position;
+        int start; // of the current token
+        int tokenEnd;
+
+        Lexer(String source, int start, int end) {
+            this.source = source;
+            this.position = start;
+            this.end = end;
+        }
+
+        int next() {
+            skipWhitespaceAndComments();
+            start = position;
+            if (position >= end) {
+                tokenEnd = position;
+                return EOF;
+            }
+            char c = source.charAt(position);
+            int kind;
+            if (Character.isJavaIdentifierStart(c)) {
+                position++;
+                while (position < end && Character.isJavaIdentifierPart(source.charAt(position))) {
+                    position++;
+                }
+                kind = keyword(source, start, position - start);
+                if (kind == KW_RECORD && !nextIsIdentifier()) {
+                    kind = IDENTIFIER;
+                }
+            } else if (Character.isDigit(c) || (c == '.' && position + 1 < end
+                    && Character.isDigit(source.charAt(position + 1)))) {
+                skipNumber();
+                kind = LITERAL;
+            } else if (c == '"') {
+                if (source.startsWith("\"\"\"", position)) {
+                    skipTextBlock();
+                } else {
+                    skipQuoted('"');
+                }
+                kind = LITERAL;
+            } else if (c == '\'') {
+                skipQuoted('\'');
+                kind = LITERAL;
+            } else {
+                kind = operator(c);
+            }
+            tokenEnd = position;
+            return kind;
+        }
+
+        String text() {
+            return source.substring(start, tokenEnd);
+        }
+
+        /**
+         * Makes the current token the next one again.
+         */
+        void pushBack() {
+            position = start;
+        }
+
+        private void skipWhitespaceAndComments() {
+            while (position < end) {
+                char c = source.charAt(position);
+                if (c == '/' && position + 1 < end && source.charAt(position + 1) == '/') {
+                    while (position < end && source.charAt(position) != '\n') {
+                        position++;
+                    }
+                } else if (c == '/' && position + 1 < end && source.charAt(position + 1) == '*') {
+                    int close = source.indexOf("*/", position + 2);
+                    position = close < 0 || close + 2 > end ? end : close + 2;
+                } else if (Character.isWhitespace(c)) {
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private boolean nextIsIdentifier() {
+            int saved = position;
+            skipWhitespaceAndComments();
+            boolean identifier = position < end && Character.isJavaIdentifierStart(source.charAt(position));
+            position = saved;
+            return identifier;
+        }
+
+        private void skipNumber() {
+            while (position < end) {
+                char c = source.charAt(position);
+                if (Character.isJavaIdentifierPart(c)
+                        || (c == '.' && position + 1 < end && Character.isDigit(source.charAt(position + 1)))) {
+                    position++;
+                } else if ((c == '+' || c == '-') && isExponent(source.charAt(position - 1))) {
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private boolean isExponent(char c) {
+            boolean hex = start + 1 < end && source.charAt(start) == '0'
+                && (source.charAt(start + 1) == 'x' || source.charAt(start + 1) == 'X');
+            return hex ? c == 'p' || c == 'P' : c == 'e' || c == 'E';
+        }
+
+        private void skipQuoted(char quote) {
+            position++;
+            while (position < end) {
+                char c = source.charAt(position++);
+                if (c == '\\') {
+                    position++;
+                } else if (c == quote || c == '\n') {
+                    return;
+                }
+            }
+        }
+
+        private void skipTextBlock() {
+            position += 3;
+            while (position < end) {
+                char c = source.charAt(position);
+                if (c == '\\') {
+                    position += 2;
+                } else if (source.startsWith("\"\"\"", position)) {
+                    position += 3;
+                    return;
+                } else {
+                    position++;
+                }
+            }
+            position = end;
+        }
+
+        private int operator(char c) {
+            char next = position + 1 < end ? source.charAt(position + 1) : 0;
+            if (c == '&' && next == '&') {
+                position += 2;
+                return AND_AND;
+            }
+            if (c == '|' && next == '|') {
+                position += 2;
+                return OR_OR;
+            }
+            if (c == '.' && next == '.' && source.startsWith("...", position)) {
+                position += 3;
+                return ELLIPSIS;
+            }
+            if ((c == '-' && next == '>') || (c == ':' && next == ':')
+                    || (next == '=' && "=!<>+-*/%&|^".indexOf(c) >= 0)) {
+                position += 2;
+                return OTHER_OPERATOR;
+            }
+            // Shift operators stay single characters so that nested generics close one by one
+            position++;
+            return c;
+        }
+    }
+
+    private static int keyword(String source, int start, int length) {
+        switch (length) {
+            case 2:
+                return source.startsWith("if", start) ? KW_IF : IDENTIFIER;
+            case 3:
+                if (source.startsWith("for", start)) {
+                    return KW_FOR;
+                }
+                return source.startsWith("new", start) ? KW_NEW : IDENTIFIER;
+            case 4:
+                if (source.startsWith("case", start)) {
+                    return KW_CASE;
+                }
+                if (source.startsWith("enum", start)) {
+                    return KW_ENUM;
+                }
+                return source.startsWith("this", start) ? KW_THIS : IDENTIFIER;
+            case 5:
+                if (source.startsWith("while", start)) {
+                    return KW_WHILE;
+                }
+                if (source.startsWith("catch", start)) {
+                    return KW_CATCH;
+                }
+                if (source.startsWith("class", start)) {
+                    return KW_CLASS;
+                }
+                return source.startsWith("final", start) ? KW_FINAL : IDENTIFIER;
+            case 6:
+                return source.startsWith("record", start) ? KW_RECORD : IDENTIFIER;
+            case 9:
+                return source.startsWith("interface", start) ? KW_INTERFACE : IDENTIFIER;
+            default:
+                return IDENTIFIER;
+        }
+    }
+
+    // Kinds of brace-delimited frames
+    private static final int TYPE_BODY = 0;
+    private static final int METHOD_BODY = 1;
+    private static final int BLOCK = 2;
+
+    /**
+     * State of one open brace. Frames are reused by nesting depth, so scanning allocates
+     * nothing per brace once the deepest nesting has been reached.
+     */
+    private static final class Frame {
+        int kind;
+        int method; // index of the innermost method frame, -1 if none
+        int complexity;
+
+        // Type bodies: name (-1 if anonymous) and what the members may be
+        int typeNameStart;
+        int typeNameEnd;
+        boolean annotationType;
+        boolean enumConstants; // still in the constant list of an enum
+
+        // Member or statement being read in this frame
+        int parens;
+        boolean assignment; // '=' seen, so braces belong to an initializer
+        int declarationKind; // type keyword seen, 0 if none
+        int declarationNameStart;
+        int declarationNameEnd;
+        int nameStart; // method name candidate, -1 if none
+        int nameEnd;
+        int parametersStart;
+        int parametersEnd; // -1 while the parameter list is open
+
+        // Method bodies: the header the method key is built from
+        int methodNameStart;
+        int methodNameEnd;
+        int methodParametersStart;
+        int methodParametersEnd;
+
+        void resetMember() {
+            parens = 0;
+            assignment = false;
+            declarationKind = 0;
+            nameStart = -1;
+            parametersEnd = -1;
+        }
+    }
+
+    /**
+     * One pass over a file, collecting the complexity of every method.
+     */
+    private static final class Scanner {
+        private final String source;
+        private final String fileName;
+        private final AnalysisContext context;
+        private final Map<String, Integer> complexities;
+        private final Lexer lexer;
+
+        private Frame[] frames = new Frame[16];
+        private int depth = -1; // index of the innermost frame
+
+        private boolean[] newParens = new boolean[16]; // whether each open parenthesis follows 'new Type'
+        private int parenDepth;
+        private boolean newPending; // inside 'new Type' before its arguments
+        private boolean closedNewParen; // the last token closed the arguments of 'new Type'
+        private int annotationState; // 1 after '@', 2 after its name, 3 after a '.' in the name
+        private boolean afterDot;
+        private int previous = EOF;
+        private int previousStart;
+        private int previousEnd;
+
+        Scanner(String source, String fileName, AnalysisContext context, Map<String, Integer> complexities) {
+            this.source = source;
+            this.fileName = fileName;
+            this.context = context;
+            this.complexities = complexities;
+            this.lexer = new Lexer(source, 0, source.length());
+        }
+
+        void run() {
+            push(BLOCK); // the compilation unit
+            int token;
+            while ((token = lexer.next()) != EOF) {
+                accept(token);
+                boolean typeToken = token == IDENTIFIER || token == '.' || token == '<' || token == '>'
+                    || token == ',' || token == '?' || token == '@' || token == '[' || token == ']'
+                    || token == '&';
+                if (token != KW_NEW && !typeToken) {
+                    newPending = false;
+                }
+                afterDot = token == '.';
+                previous = token;
+                previousStart = lexer.start;
+                previousEnd = lexer.tokenEnd;
+            }
+            // Close methods left open by unbalanced braces, so their counts are not lost
+            while (depth > 0) {
+                pop();
+            }
+        }
+
+        private void accept(int token) {
+            Frame frame = frames[depth];
+            boolean closedNew = closedNewParen;
+            closedNewParen = false;
+            int annotation = annotationState;
+            annotationState = 0;
+
+            switch (token) {
+                case KW_IF:
+                case KW_FOR:
+                case KW_WHILE:
+                case KW_CASE:
+                case KW_CATCH:
+                case AND_AND:
+                case OR_OR:
+                    decision(frame);
+                    break;
+                case '?':
+                    if (previous != '<' && previous != ',') { // otherwise a wildcard
+                        decision(frame);
+                    }
+                    break;
+                case KW_NEW:
+                    newPending = true;
+                    break;
+                case KW_CLASS:
+                case KW_INTERFACE:
+                case KW_ENUM:
+                case KW_RECORD:
+                    if (!afterDot) { // not a class literal
+                        frame.declarationKind = annotation == 1 ? '@' : token;
+                        frame.declarationNameStart = -1;
+                    }
+                    break;
+                case IDENTIFIER:
+                    if (frame.declarationKind != 0 && frame.declarationNameStart < 0) {
+                        frame.declarationNameStart = lexer.start;
+                        frame.declarationNameEnd = lexer.tokenEnd;
+                    }
+                    if (annotation == 1 || annotation == 3) {
+                        annotationState = 2;
+                    }
+                    break;
+                case '@':
+                    annotationState = 1;
+                    break;
+                case '.':
+                    if (annotation == 2) {
+                        annotationState = 3;
+                    }
+                    break;
+                case '=':
+                    if (frame.parens == 0) {
+                        frame.assignment = true;
+                    }
+                    break;
+                case '(':
+                    openParen(frame, annotation == 2);
+                    break;
+                case ')':
+                    closeParen(frame);
+                    break;
+                case ';':
+                    endStatement(frame);
+                    break;
+                case '{':
+                    openBrace(frame, closedNew);
+                    break;
+                case '}':
+                    if (depth > 0) {
+                        pop();
+                        Frame parent = frames[depth];
+                        if (parent.kind == TYPE_BODY && parent.parens == 0 && !parent.assignment) {
+                            parent.resetMember(); // the closed body ended a member
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void decision(Frame frame) {
+            if (frame.method >= 0) {
+                frames[frame.method].complexity++;
+            }
+        }
+
+        private void openParen(Frame frame, boolean annotationArguments) {
+            if (parenDepth == newParens.length) {
+                newParens = Arrays.copyOf(newParens, parenDepth * 2);
+            }
+            newParens[parenDepth++] = newPending;
+            newPending = false;
+            if (frame.kind == TYPE_BODY && frame.parens == 0 && !frame.assignment && !annotationArguments
+                    && frame.nameStart < 0 && frame.declarationKind == 0 && previous == IDENTIFIER) {
+                frame.nameStart = previousStart;
+                frame.nameEnd = previousEnd;
+                frame.parametersStart = lexer.tokenEnd;
+                frame.parametersEnd = -1;
+            }
+            frame.parens++;
+        }
+
+        private void closeParen(Frame frame) {
+            if (parenDepth > 0) {
+                closedNewParen = newParens[--parenDepth];
+            }
+            if (frame.parens > 0 && --frame.parens == 0 && frame.nameStart >= 0 && frame.parametersEnd < 0) {
+                frame.parametersEnd = lexer.start;
+            }
+        }
+
+        private void endStatement(Frame frame) {
+            if (frame.kind == TYPE_BODY && frame.parens == 0) {
+                if (frame.enumConstants) {
+                    frame.enumConstants = false;
+                } else if (isMethodHeader(frame) && !frame.annotationType) {
+                    // Abstract or interface method without a body
+                    String name = methodKey(frame.nameStart, frame.nameEnd, frame.parametersStart,
+                        frame.parametersEnd);
+                    context.checkpoint(fileName, "Java", complexities);
+                    complexities.put(name, 1);
+                }
+                frame.resetMember();
+            } else if (frame.parens == 0) {
+                frame.declarationKind = 0;
+                frame.assignment = false;
+            }
+        }
+
+        private boolean isMethodHeader(Frame frame) {
+            return frame.nameStart >= 0 && frame.parametersEnd >= 0 && !frame.assignment;
+        }
+
+        private void openBrace(Frame frame, boolean closedNew) {
+            if (frame.declarationKind != 0) {
+                int kind = frame.declarationKind;
+                int nameStart = frame.declarationNameStart;
+                int nameEnd = frame.declarationNameEnd;
+                frame.declarationKind = 0;
+                if (frame.kind == TYPE_BODY && frame.parens == 0) {
+                    frame.resetMember();
+                }
+                Frame type = push(TYPE_BODY);
+                type.typeNameStart = nameStart;
+                type.typeNameEnd = nameEnd;
+                type.annotationType = kind == '@';
+                type.enumConstants = kind == KW_ENUM;
+            } else if (previous == ')' && closedNew || frame.kind == TYPE_BODY && frame.enumConstants
+                    && frame.parens == 0) {
+                push(TYPE_BODY); // anonymous class or enum constant body
+            } else if (frame.kind == TYPE_BODY && frame.parens == 0 && !frame.assignment) {
+                // Annotation elements have no body, only array defaults such as "default {}"
+                boolean method = isMethodHeader(frame) && !isConstructor(frame) && !frame.annotationType;
+                int nameStart = frame.nameStart;
+                int nameEnd = frame.nameEnd;
+                int parametersStart = frame.parametersStart;
+                int parametersEnd = frame.parametersEnd;
+                frame.resetMember();
+                if (method) {
+                    Frame body = push(METHOD_BODY);
+                    body.methodNameStart = nameStart;
+                    body.methodNameEnd = nameEnd;
+                    body.methodParametersStart = parametersStart;
+                    body.methodParametersEnd = parametersEnd;
+                } else {
+                    push(BLOCK); // constructor, initializer or element default
+                }
+            } else {
+                push(BLOCK);
+            }
+        }
+
+        private boolean isConstructor(Frame type) {
+            int length = type.nameEnd - type.nameStart;
+            return type.typeNameStart >= 0 && length == type.typeNameEnd - type.typeNameStart
+                && source.regionMatches(type.nameStart, source, type.typeNameStart, length);
+        }
+
+        private Frame push(int kind) {
+            if (++depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+            Frame frame = frames[depth];
+            if (frame == null) {
+                frame = new Frame();
+                frames[depth] = frame;
+            }
+            frame.kind = kind;
+            frame.method = kind == METHOD_BODY ? depth : depth > 0 ? frames[depth - 1].method : -1;
+            frame.complexity = 1; // Base complexity
+            frame.typeNameStart = -1;
+            frame.annotationType = false;
+            frame.enumConstants = false;
+            frame.resetMember();
+            return frame;
+        }
+
+        private void pop() {
+            Frame frame = frames[depth--];
+            if (frame.kind == METHOD_BODY) {
+                context.checkpoint(fileName, "Java", complexities);
+                complexities.put(methodKey(frame.methodNameStart, frame.methodNameEnd,
+                    frame.methodParametersStart, frame.methodParametersEnd), frame.complexity);
+            }
+        }
+
+        /**
+         * Builds the name JavaComplexityCalculator reports: name followed by the signature,
+         * e.g. "putput(K, V)".
+         */
+        private String methodKey(int nameStart, int nameEnd, int parametersStart, int parametersEnd) {
+            String name = source.substring(nameStart, nameEnd);
+            StringBuilder key = new StringBuilder().append(name).append(name).append('(');
+            Lexer parameters = new Lexer(source, parametersStart, parametersEnd);
+            List<String> tokens = new ArrayList<>();
+            int angles = 0;
+            boolean first = true;
+            int token;
+            do {
+                token = parameters.next();
+                if (token == '@') {
+                    skipAnnotation(parameters);
+                } else if (token == EOF || (token == ',' && angles == 0)) {
+                    if (!tokens.isEmpty()) {
+                        String type = parameterType(tokens);
+                        if (type != null) {
+                            key.append(first ? "" : ", ").append(type);
+                            first = false;
+                        }
+                        tokens.clear();
+                    }
+                } else if (token != KW_FINAL) {
+                    angles += token == '<' ? 1 : token == '>' ? -1 : 0;
+                    tokens.add(token == ELLIPSIS ? "..." : parameters.text());
+                }
+            } while (token != EOF);
+            return key.append(')').toString();
+        }
+
+        private static void skipAnnotation(Lexer parameters) {
+            parameters.next(); // name
+            int token;
+            while ((token = parameters.next()) == '.') {
+                parameters.next();
+            }
+            if (token != '(') {
+                parameters.pushBack();
+                return;
+            }
+            for (int parens = 1; parens > 0 && token != EOF; ) {
+                token = parameters.next();
+                parens += token == '(' ? 1 : token == ')' ? -1 : 0;
+            }
+        }
+
+        /**
+         * Renders the type of one parameter the way JavaParser prints it in a signature:
+         * varargs as arrays, without annotations and without the type arguments of a
+         * non-array type. Returns null for a receiver parameter.
+         */
+        private static String parameterType(List<String> tokens) {
+            // The name is the last token before any C-style dimensions
+            int nameIndex = tokens.size() - 1;
+            int dimensions = 0;
+            while (nameIndex > 0 && tokens.get(nameIndex).equals("]")) {
+                nameIndex -= 2;
+                dimensions++;
+            }
+            if (nameIndex <= 0 || tokens.get(nameIndex).equals("this")) {
+                return null;
+            }
+            List<String> type = tokens.subList(0, nameIndex);
+            boolean array = dimensions > 0 || type.get(type.size() - 1).equals("]")
+                || type.get(type.size() - 1).equals("...");
+            int end = type.size();
+            if (!array && type.get(end - 1).equals(">")) {
+                // Drop the trailing type arguments
+                int angles = 0;
+                do {
+                    String token = type.get(--end);
+                    angles += token.equals(">") ? 1 : token.equals("<") ? -1 : 0;
+                } while (angles > 0 && end > 0);
+            }
+            StringBuilder rendered = new StringBuilder();
+            String last = "";
+            for (int i = 0; i < end; i++) {
+                String token = type.get(i);
+                if (token.equals(",")) {
+                    rendered.append(",");
+                } else if (token.equals("...")) {
+                    rendered.append("[]");
+                } else {
+                    boolean word = Character.isJavaIdentifierPart(token.charAt(0));
+                    if (word && (last.equals("?") || !last.isEmpty()
+                            && Character.isJavaIdentifierPart(last.charAt(last.length() - 1)))) {
+                        rendered.append(' '); // "? extends T"
+                    }
+                    rendered.append(token);
+                }
+                last = token;
+            }
+            for (int i = 0; i < dimensions; i++) {
+                rendered.append("[]");
+            }
+            return rendered.toString();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package io.github.complexity.calculator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Analysis of one file version that can be updated from edit ranges
+ *
+ * The file is kept as lines together with the segments the calculator found. An
+ * edit marks the segments it touches as dirty; only these regions are analyzed
+ * again, on their own, and the results of all other segments are reused. When a
+ * region cannot be proven to be independent of its surroundings (the edit moved a
+ * boundary, touched lines between segments that may matter, or the region does not
+ * parse on its own), the whole file is analyzed instead.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class IncrementalAnalysis {
+
+    private static final Pattern HUNK_HEADER = Pattern.compile(
+        "^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@");
+
+    /**
+     * Replacement of oldCount lines at oldStart by newCount lines at newStart (0-based).
+     */
+    public static final class LineChange {
+        private final int oldStart;
+        private final int oldCount;
+        private final int newStart;
+        private final int newCount;
+
+        public LineChange(int oldStart, int oldCount, int newStart, int newCount) {
+            if (oldStart < 0 || oldCount < 0 || newStart < 0 || newCount < 0) {
+                throw new IllegalArgumentException("Invalid line change: -" + oldStart + "," + oldCount +
+                    " +" + newStart + "," + newCount);
+            }
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+        }
+
+        public int getOldStart() {
+            return oldStart;
+        }
+
+        public int getOldCount() {
+            return oldCount;
+        }
+
+        public int getNewStart() {
+            return newStart;
+        }
+
+        public int getNewCount() {
+            return newCount;
+        }
+
+        int oldEnd() {
+            return oldStart + oldCount;
+        }
+
+        int delta() {
+            return newCount - oldCount;
+        }
+    }
+
+    /**
+     * A run of old lines that is analyzed again, and the new lines replacing it.
+     */
+    private static final class Region {
+        int oldStart;
+        int oldEnd;
+        int newStart;
+        int newEnd;
+        SegmentedResult.EndState endState = SegmentedResult.EndState.EMPTY;
+    }
+
+    private final IncrementalComplexityCalculator calculator;
+    private final String fileName;
+    private final String[] lines;
+    private final SegmentedResult analysis;
+    private final int reanalyzedLines;
+
+    private IncrementalAnalysis(IncrementalComplexityCalculator calculator, String fileName, String[] lines,
+                                SegmentedResult analysis, int reanalyzedLines) {
+        this.calculator = calculator;
+        this.fileName = fileName;
+        this.lines = lines;
+        this.analysis = analysis;
+        this.reanalyzedLines = reanalyzedLines;
+    }
+
+    /**
+     * Analyzes a complete file.
+     */
+    public static IncrementalAnalysis analyze(IncrementalComplexityCalculator calculator, String sourceCode,
+                                              String fileName, AnalysisContext context) throws IOException {
+        String[] lines = splitLines(sourceCode);
+        return new IncrementalAnalysis(calculator, fileName, lines,
+            calculator.calculateSegments(sourceCode, fileName, context), lines.length);
+    }
+
+    public ComplexityResult getResult() {
+        return analysis.getResult();
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the number of lines that were analyzed to produce this version.
+     */
+    public int getReanalyzedLines() {
+        return reanalyzedLines;
+    }
+
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    /**
+     * Returns whether this version was produced by re-analyzing only part of the file.
+     */
+    public boolean isIncremental() {
+        return reanalyzedLines < lines.length;
+    }
+
+    /**
+     * Applies an edit. The changes must describe how this version's lines turn into the
+     * lines of newSourceCode; if they do not add up, the file is analyzed completely.
+     */
+    public IncrementalAnalysis update(String newSourceCode, List<LineChange> changes, AnalysisContext context)
+            throws IOException {
+        String[] newLines = splitLines(newSourceCode);
+        context.checkpoint(fileName, getResult().getLanguage(), Map.of());
+        IncrementalAnalysis updated = tryUpdate(newLines, changes);
+        if (updated != null) {
+            return updated;
+        }
+        return new IncrementalAnalysis(calculator, fileName, newLines,
+            calculator.calculateSegments(newSourceCode, fileName, context), newLines.length);
+    }
+
+    /**
+     * @return the updated analysis, or null if the edit requires a full analysis
+     */
+    private IncrementalAnalysis tryUpdate(String[] newLines, List<LineChange> changes) {
+        List<SegmentedResult.Segment> segments = analysis.getSegments();
+        if (segments.isEmpty() || !isOrdered(segments)) {
+            return null; // e.g. assembler without functions, reported as one global function
+        }
+        List<LineChange> sorted = new ArrayList<>(changes);
+        sorted.sort(Comparator.comparingInt(change -> change.oldStart));
+        int delta = 0;
+        int previousEnd = 0;
+        for (LineChange change : sorted) {
+            if (change.oldStart < previousEnd || change.oldEnd() > lines.length
+                || change.newStart != change.oldStart + delta) {
+                return null; // Overlapping or inconsistent changes
+            }
+            delta += change.delta();
+            previousEnd = change.oldEnd();
+        }
+        if (lines.length + delta != newLines.length) {
+            return null;
+        }
+
+        List<Region> regions = toRegions(sorted, segments);
+        SegmentedResult.EndState endState = analysis.getEndState();
+        List<SegmentedResult.Segment> newSegments = new ArrayList<>();
+        int segmentIndex = 0;
+        int shift = 0;
+        int reanalyzed = 0;
+        for (Region region : regions) {
+            // Segments before the region are unchanged apart from their position
+            while (segmentIndex < segments.size() && segments.get(segmentIndex).getEndLine() <= region.oldStart) {
+                newSegments.add(segments.get(segmentIndex++).shift(shift));
+            }
+            int firstInRegion = segmentIndex;
+            while (segmentIndex < segments.size() && segments.get(segmentIndex).getStartLine() < region.oldEnd) {
+                segmentIndex++;
+            }
+            List<SegmentedResult.Segment> replaced = segments.subList(firstInRegion, segmentIndex);
+            String oldText = join(lines, region.oldStart, region.oldEnd);
+            String newText = join(newLines, region.newStart, region.newEnd);
+            reanalyzed += region.newEnd - region.newStart;
+
+            // Edits between segments that cannot add or change a function need no analysis
+            if (!replaced.isEmpty() || !calculator.isNeutralGapEdit(oldText, newText)) {
+                if (!calculator.hasContextFreeGaps() && (replaced.isEmpty() || hasGaps(region, replaced))) {
+                    return null;
+                }
+                List<SegmentedResult.Segment> reanalyzedSegments =
+                    reanalyzeRegion(region, newLines, oldText, newText, segments, firstInRegion, replaced);
+                if (reanalyzedSegments == null) {
+                    return null;
+                }
+                for (SegmentedResult.Segment segment : reanalyzedSegments) {
+                    newSegments.add(segment.shift(region.newStart));
+                }
+            }
+            if (region.oldEnd == lines.length) {
+                endState = region.endState;
+            }
+            shift = region.newEnd - region.oldEnd;
+        }
+        while (segmentIndex < segments.size()) {
+            newSegments.add(segments.get(segmentIndex++).shift(shift));
+        }
+
+        Map<String, Integer> complexities = new LinkedHashMap<>();
+        for (SegmentedResult.Segment segment : newSegments) {
+            complexities.putAll(segment.getFunctions());
+        }
+        if (complexities.isEmpty()) {
+            return null; // A file without functions is reported differently
+        }
+        ComplexityResult result = new ComplexityResult(fileName, getResult().getLanguage(), complexities);
+        return new IncrementalAnalysis(calculator, fileName, newLines,
+            new SegmentedResult(result, newSegments, endState), reanalyzed);
+    }
+
+    /**
+     * Analyzes the new text of a region on its own and checks that doing so is equivalent
+     * to analyzing it in the context of the whole file.
+     *
+     * @return the region's segments relative to its first line, or null if it depends on its context
+     */
+    private List<SegmentedResult.Segment> reanalyzeRegion(Region region, String[] newLines, String oldText,
+                                                          String newText, List<SegmentedResult.Segment> segments,
+                                                          int firstInRegion, List<SegmentedResult.Segment> replaced) {
+        SegmentedResult result;
+        try {
+            result = calculator.calculateRegion(newText, fileName);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+
+        // The lines before the region must leave the parser in its initial state, unless the
+        // region still starts with the unchanged line that started a function in that state
+        SegmentedResult.Segment previous = firstInRegion > 0 ? segments.get(firstInRegion - 1) : null;
+        boolean previousOpen = previous != null && previous.getEndLine() == region.oldStart
+            && previous.getBoundary() != SegmentedResult.Boundary.CLOSED;
+        if (previousOpen && (region.newEnd == region.newStart
+                             || !lines[region.oldStart].equals(newLines[region.newStart]))) {
+            return null;
+        }
+
+        // The old lines must give the same functions on their own as in the file; otherwise
+        // they were not self-contained (e.g. a method line also opened a nested class)
+        try {
+            Map<String, Integer> oldFunctions = new LinkedHashMap<>();
+            calculator.calculateRegion(oldText, fileName).getSegments()
+                .forEach(segment -> oldFunctions.putAll(segment.getFunctions()));
+            Map<String, Integer> replacedFunctions = new LinkedHashMap<>();
+            replaced.forEach(segment -> replacedFunctions.putAll(segment.getFunctions()));
+            if (!oldFunctions.equals(replacedFunctions)) {
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+
+        // The region must end in a state the following lines were analyzed with
+        SegmentedResult.Segment last = replaced.isEmpty() ? null : replaced.get(replaced.size() - 1);
+        SegmentedResult.Boundary boundary = last != null && last.getEndLine() == region.oldEnd ?
+            last.getBoundary() : SegmentedResult.Boundary.CLOSED;
+        if (!boundary.accepts(result.getEndState())) {
+            return null;
+        }
+        region.endState = result.getEndState();
+
+        // A trailing open segment extends to the end of the region (including a last empty
+        // line the calculator does not see) and keeps the boundary of the one it replaces
+        List<SegmentedResult.Segment> regionSegments = new ArrayList<>(result.getSegments());
+        if (!regionSegments.isEmpty()) {
+            int lastIndex = regionSegments.size() - 1;
+            SegmentedResult.Segment trailing = regionSegments.get(lastIndex);
+            if (trailing.getBoundary() == SegmentedResult.Boundary.END_OF_FILE) {
+                regionSegments.set(lastIndex, new SegmentedResult.Segment(trailing.getStartLine(),
+                    region.newEnd - region.newStart, trailing.getFunctions(), boundary));
+            }
+        }
+        return regionSegments;
+    }
+
+    /**
+     * Widens every change to the segments it touches and merges overlapping regions.
+     */
+    private List<Region> toRegions(List<LineChange> changes, List<SegmentedResult.Segment> segments) {
+        List<Region> regions = new ArrayList<>();
+        int delta = 0;
+        for (LineChange change : changes) {
+            int start = change.oldStart;
+            int end = change.oldEnd();
+            for (SegmentedResult.Segment segment : segments) {
+                if (touches(segment, change)) {
+                    start = Math.min(start, segment.getStartLine());
+                    end = Math.max(end, segment.getEndLine());
+                }
+            }
+            Region last = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+            if (last != null && start <= last.oldEnd) {
+                last.oldEnd = Math.max(last.oldEnd, end);
+                last.newEnd = last.oldEnd + delta + change.delta();
+            } else {
+                Region region = new Region();
+                region.oldStart = start;
+                region.oldEnd = end;
+                region.newStart = start + delta;
+                region.newEnd = end + delta + change.delta();
+                regions.add(region);
+            }
+            delta += change.delta();
+        }
+        return regions;
+    }
+
+    /**
+     * Returns whether a change replaces lines of the segment or inserts lines into it.
+     * Insertions directly after a segment belong to it if its function is still open there.
+     */
+    private static boolean touches(SegmentedResult.Segment segment, LineChange change) {
+        if (change.oldCount > 0) {
+            return change.oldStart < segment.getEndLine() && segment.getStartLine() < change.oldEnd();
+        }
+        return segment.getStartLine() < change.oldStart && (change.oldStart < segment.getEndLine()
+            || change.oldStart == segment.getEndLine() && segment.getBoundary() != SegmentedResult.Boundary.CLOSED);
+    }
+
+    private static boolean hasGaps(Region region, List<SegmentedResult.Segment> replaced) {
+        int previousEnd = region.oldStart;
+        for (SegmentedResult.Segment segment : replaced) {
+            if (segment.getStartLine() > previousEnd) {
+                return true;
+            }
+            previousEnd = segment.getEndLine();
+        }
+        return previousEnd < region.oldEnd;
+    }
+
+    private static boolean isOrdered(List<SegmentedResult.Segment> segments) {
+        int previousEnd = 0;
+        for (SegmentedResult.Segment segment : segments) {
+            if (segment.getStartLine() < previousEnd || segment.getEndLine() < segment.getStartLine()) {
+                return false;
+            }
+            previousEnd = segment.getEndLine();
+        }
+        return true;
+    }
+
+    /**
+     * Parses the hunk headers of a unified diff into line changes.
+     */
+    public static List<LineChange> parseUnifiedDiff(String diff) {
+        List<LineChange> changes = new ArrayList<>();
+        for (String line : splitLines(diff)) {
+            Matcher matcher = HUNK_HEADER.matcher(line);
+            if (matcher.find()) {
+                int oldCount = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1;
+                int newCount = matcher.group(4) != null ? Integer.parseInt(matcher.group(4)) : 1;
+                // An empty side refers to the line before the change
+                int oldStart = Integer.parseInt(matcher.group(1)) - (oldCount > 0 ? 1 : 0);
+                int newStart = Integer.parseInt(matcher.group(3)) - (newCount > 0 ? 1 : 0);
+                changes.add(new LineChange(oldStart, oldCount, newStart, newCount));
+            }
+        }
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("The diff contains no hunks");
+        }
+        return changes;
+    }
+
+    /**
+     * Splits text into lines the way BufferedReader.readLine does.
+     */
+    private static String[] splitLines(String text) {
+        String[] lines = text.split("\r\n|\r|\n", -1);
+        if (lines.length > 0 && lines[lines.length - 1].isEmpty()) {
+            return Arrays.copyOf(lines, lines.length - 1);
+        }
+        return lines;
+    }
+
+    private static String join(String[] lines, int start, int end) {
+        return String.join("\n", Arrays.asList(lines).subList(start, end));
+    }
+}
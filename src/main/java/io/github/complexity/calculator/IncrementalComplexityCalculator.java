@@ -0,0 +1,37 @@
+package io.github.complexity.calculator;
+
+import java.io.IOException;
+
+/**
+ * Calculator that can re-analyze parts of a file after an edit
+ *
+ * See {@link IncrementalAnalysis} for how the segments are used.
+ */
+public interface IncrementalComplexityCalculator extends ComplexityCalculator {
+
+    /**
+     * Analyzes a complete file and records the line span of every segment.
+     */
+    SegmentedResult calculateSegments(String sourceCode, String fileName, AnalysisContext context)
+        throws IOException;
+
+    /**
+     * Analyzes a run of lines cut out of a file on its own, as if the lines before it
+     * left the parser in its initial state. Line numbers are relative to the region.
+     *
+     * @throws IOException if the lines cannot be analyzed on their own
+     */
+    SegmentedResult calculateRegion(String regionText, String fileName) throws IOException;
+
+    /**
+     * Returns whether replacing lines outside of all segments cannot change any function.
+     */
+    boolean isNeutralGapEdit(String oldText, String newText);
+
+    /**
+     * Returns whether lines outside of all segments are always analyzed in the initial
+     * state, so that a re-analyzed region may include them. Otherwise only whole segments
+     * are analyzed again and every other edit must be neutral.
+     */
+    boolean hasContextFreeGaps();
+}
@@ -1,6 +1,8 @@
 package io.github.complexity.calculator;
 
 import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.*;
@@ -8,44 +10,207 @@ import com.github.javaparser.ast.stmt.*;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Calculates cyclomatic complexity for Java code using JavaParser
  */
-public class JavaComplexityCalculator implements ComplexityCalculator {
+public class JavaComplexityCalculator implements IncrementalComplexityCalculator {
+
+    // Regions are parsed as the body of this class; its header takes up the first line
+    private static final String REGION_PREFIX = "class __Region__ {\n";
+    private static final String REGION_SUFFIX = "\n}";
+
+    // Text that ends a block comment or text block, turning the rest of a comment line into code
+    private static final String[] GAP_SENSITIVE_TOKENS = {"*/", "\"\"\""};
+
+    private final ParserConfiguration.LanguageLevel languageLevel;
+
+    // JavaParser instances are not thread-safe but can be reused, so each thread keeps its own
+    private final ThreadLocal<JavaParser> parsers;
+
+    public JavaComplexityCalculator() {
+        this(ParserConfiguration.LanguageLevel.POPULAR);
+    }
+
+    /**
+     * @param languageLevel Java version whose syntax is accepted
+     */
+    public JavaComplexityCalculator(ParserConfiguration.LanguageLevel languageLevel) {
+        this.languageLevel = languageLevel;
+        this.parsers = ThreadLocal.withInitial(() -> new JavaParser(createConfiguration(languageLevel)));
+    }
+
+    /**
+     * Comments are not attached to nodes. Tokens have to be stored even though only the AST is
+     * needed: node positions are derived from them, and JavaParser 3.25 cannot build arrow-form
+     * switch entries ({@code case 1 -> ...}) without them.
+     */
+    private static ParserConfiguration createConfiguration(ParserConfiguration.LanguageLevel languageLevel) {
+        return new ParserConfiguration()
+            .setLanguageLevel(languageLevel)
+            .setStoreTokens(true)
+            .setAttributeComments(false);
+    }
+
+    public ParserConfiguration.LanguageLevel getLanguageLevel() {
+        return languageLevel;
+    }
 
     @Override
     public ComplexityResult calculate(String sourceCode, String fileName) throws IOException {
-        JavaParser parser = new JavaParser();
-        var parseResult = parser.parse(sourceCode);
+        return calculate(sourceCode, fileName, new AnalysisContext());
+    }
 
+    @Override
+    public ComplexityResult calculate(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        context.checkpoint(fileName, "Java", Map.of());
+        return analyze(parse(sourceCode), fileName, context, null, 0);
+    }
+
+    /**
+     * Feeds the parser from the reader through a JavaParser provider instead of a String,
+     * so only the syntax tree is held in memory.
+     */
+    @Override
+    public ComplexityResult calculate(Reader source, String fileName, AnalysisContext context)
+            throws IOException {
+        context.checkpoint(fileName, "Java", Map.of());
+        return analyze(result(parsers.get().parse(source)), fileName, context, null, 0);
+    }
+
+    @Override
+    public SegmentedResult calculateSegments(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        context.checkpoint(fileName, "Java", Map.of());
+        List<SegmentedResult.Segment> segments = new ArrayList<>();
+        ComplexityResult result = analyze(parse(sourceCode), fileName, context, segments, 0);
+        return new SegmentedResult(result, mergeOverlapping(segments), SegmentedResult.EndState.EMPTY);
+    }
+
+    /**
+     * Parses the region as the body of a class, with the same validation as a whole file.
+     * Members that are only legal in interfaces (e.g. default methods) are therefore rejected
+     * and lead to a full analysis.
+     */
+    @Override
+    public SegmentedResult calculateRegion(String regionText, String fileName) throws IOException {
+        CompilationUnit cu = parse(REGION_PREFIX + regionText + REGION_SUFFIX);
+        if (cu.getTypes().size() != 1) {
+            throw new IOException("Region is not a sequence of class members");
+        }
+        List<SegmentedResult.Segment> segments = new ArrayList<>();
+        ComplexityResult result = analyze(cu, fileName, new AnalysisContext(), segments, -1);
+        return new SegmentedResult(result, mergeOverlapping(segments), SegmentedResult.EndState.EMPTY);
+    }
+
+    /**
+     * Outside of methods only blank lines and line comments that cannot end a block comment
+     * are considered neutral; anything else may change the structure of the file.
+     */
+    @Override
+    public boolean isNeutralGapEdit(String oldText, String newText) {
+        return isBlankOrLineComment(oldText) && isBlankOrLineComment(newText);
+    }
+
+    /**
+     * Lines between methods may belong to a class body, an initializer or no type at all,
+     * so they are never analyzed on their own.
+     */
+    @Override
+    public boolean hasContextFreeGaps() {
+        return false;
+    }
+
+    private static boolean isBlankOrLineComment(String text) {
+        for (String token : GAP_SENSITIVE_TOKENS) {
+            if (text.contains(token)) {
+                return false;
+            }
+        }
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("//")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CompilationUnit parse(String sourceCode) throws IOException {
+        return result(parsers.get().parse(sourceCode));
+    }
+
+    private static CompilationUnit result(ParseResult<CompilationUnit> parseResult) throws IOException {
         if (!parseResult.isSuccessful()) {
             throw new IOException("Failed to parse Java code: " + parseResult.getProblems());
         }
 
-        CompilationUnit cu = parseResult.getResult().orElseThrow();
+        return parseResult.getResult().orElseThrow();
+    }
+
+    /**
+     * @param segments receives one segment per method that is not nested in another method, or null
+     * @param lineOffset added to the parsed line numbers of the segments
+     */
+    private ComplexityResult analyze(CompilationUnit cu, String fileName, AnalysisContext context,
+                                     List<SegmentedResult.Segment> segments, int lineOffset) {
         Map<String, Integer> complexities = new HashMap<>();
+        context.checkpoint(fileName, "Java", complexities);
+
+        // A single traversal; decisions count toward the innermost enclosing method
+        cu.accept(new ComplexityCounter() {
+            private Map<String, Integer> segmentFunctions;
 
-        // Visit all methods and calculate their complexity
-        cu.accept(new VoidVisitorAdapter<Void>() {
             @Override
             public void visit(MethodDeclaration method, Void arg) {
-                super.visit(method, arg);
-                int complexity = calculateMethodComplexity(method);
+                context.checkpoint(fileName, "Java", complexities);
+                boolean startsSegment = segments != null && depth == 0;
+                if (startsSegment) {
+                    segmentFunctions = new LinkedHashMap<>();
+                }
+                int complexity = countMethod(method);
                 String methodName = method.getNameAsString() + method.getSignature().toString();
                 complexities.put(methodName, complexity);
+                if (segmentFunctions != null) {
+                    segmentFunctions.put(methodName, complexity);
+                }
+                if (startsSegment) {
+                    segments.add(new SegmentedResult.Segment(method.getBegin().orElseThrow().line - 1 + lineOffset,
+                        method.getEnd().orElseThrow().line + lineOffset, segmentFunctions,
+                        SegmentedResult.Boundary.CLOSED));
+                    segmentFunctions = null;
+                }
             }
         }, null);
 
         return new ComplexityResult(fileName, "Java", complexities);
     }
 
-    private int calculateMethodComplexity(MethodDeclaration method) {
-        ComplexityCounter counter = new ComplexityCounter();
-        method.accept(counter, null);
-        return counter.getComplexity();
+    /**
+     * Combines methods sharing a line into one segment, so segments never overlap.
+     */
+    private static List<SegmentedResult.Segment> mergeOverlapping(List<SegmentedResult.Segment> segments) {
+        List<SegmentedResult.Segment> merged = new ArrayList<>();
+        for (SegmentedResult.Segment segment : segments) {
+            SegmentedResult.Segment last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && segment.getStartLine() < last.getEndLine()) {
+                Map<String, Integer> functions = new LinkedHashMap<>(last.getFunctions());
+                functions.putAll(segment.getFunctions());
+                merged.set(merged.size() - 1, new SegmentedResult.Segment(last.getStartLine(),
+                    Math.max(last.getEndLine(), segment.getEndLine()), functions, SegmentedResult.Boundary.CLOSED));
+            } else {
+                merged.add(segment);
+            }
+        }
+        return merged;
     }
 
     @Override
@@ -53,6 +218,11 @@ public class JavaComplexityCalculator implements ComplexityCalculator {
         return "Java";
     }
 
+    @Override
+    public int getAlgorithmVersion() {
+        return 2; // 2: decisions of nested methods no longer count toward the enclosing method
+    }
+
     /**
      * Visitor that counts decision points to calculate cyclomatic complexity
      * Formula: M = E - N + 2P where:
@@ -61,62 +231,81 @@ public class JavaComplexityCalculator implements ComplexityCalculator {
      * - P = connected components
      *
      * Simplified: Start at 1, add 1 for each decision point
+     *
+     * Keeps one counter per method being visited, so methods of anonymous and local
+     * classes are counted on their own while the enclosing method is still open.
+     * Decisions outside of any method (e.g. in field initializers) are not counted.
      */
     private static class ComplexityCounter extends VoidVisitorAdapter<Void> {
-        private int complexity = 1; // Base complexity
+        private int[] counters = new int[8];
+        protected int depth; // number of methods being visited
 
-        public int getComplexity() {
-            return complexity;
+        /**
+         * Visits the body of a method and returns its complexity.
+         */
+        protected int countMethod(MethodDeclaration method) {
+            if (depth == counters.length) {
+                counters = Arrays.copyOf(counters, depth * 2);
+            }
+            counters[depth++] = 1; // Base complexity
+            super.visit(method, null);
+            return counters[--depth];
+        }
+
+        private void decision() {
+            if (depth > 0) {
+                counters[depth - 1]++;
+            }
         }
 
         // Control flow statements
         @Override
         public void visit(IfStmt n, Void arg) {
-            complexity++; // if condition
+            decision(); // if condition
             super.visit(n, arg);
         }
 
         @Override
         public void visit(ForStmt n, Void arg) {
-            complexity++; // for loop
+            decision(); // for loop
             super.visit(n, arg);
         }
 
         @Override
         public void visit(ForEachStmt n, Void arg) {
-            complexity++; // for-each loop
+            decision(); // for-each loop
             super.visit(n, arg);
         }
 
         @Override
         public void visit(WhileStmt n, Void arg) {
-            complexity++; // while loop
+            decision(); // while loop
             super.visit(n, arg);
         }
 
         @Override
         public void visit(DoStmt n, Void arg) {
-            complexity++; // do-while loop
+            decision(); // do-while loop
             super.visit(n, arg);
         }
 
         @Override
         public void visit(SwitchEntry n, Void arg) {
             if (!n.getLabels().isEmpty()) {
-                complexity++; // each case
+                decision(); // each case
             }
             super.visit(n, arg);
         }
 
         @Override
         public void visit(CatchClause n, Void arg) {
-            complexity++; // catch block
+            decision(); // catch block
             super.visit(n, arg);
         }
 
         @Override
         public void visit(ConditionalExpr n, Void arg) {
-            complexity++; // ternary operator
+            decision(); // ternary operator
             super.visit(n, arg);
         }
 
@@ -125,7 +314,7 @@ public class JavaComplexityCalculator implements ComplexityCalculator {
         public void visit(BinaryExpr n, Void arg) {
             if (n.getOperator() == BinaryExpr.Operator.AND ||
                 n.getOperator() == BinaryExpr.Operator.OR) {
-                complexity++; // && and ||
+                decision(); // && and ||
             }
             super.visit(n, arg);
         }
@@ -0,0 +1,114 @@
+package io.github.complexity.calculator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Cuts source text into chunks of whole lines, each handed out as its own {@link AsmLineScanner}
+ *
+ * Every chunk but the last ends directly after a line break, so scanning the chunks one after
+ * another yields the same lines as scanning the whole text. Text already in memory is split into
+ * ranges without copying. A stream is read one chunk at a time; a chunk ending in {@code \r} is
+ * only cut there once the next character is known not to be {@code \n}, and a line longer than
+ * the chunk size grows the buffer until it fits.
+ */
+final class LineChunkReader {
+
+    static final int DEFAULT_CHUNK_CHARS = 1024 * 1024;
+
+    private final Reader reader;
+    private final int chunkChars;
+    private final String text; // the whole input, if it is already in memory
+    private int position; // in text
+    private char[] buffer;
+    private int length;
+    private boolean endOfInput;
+
+    /**
+     * @param chunkChars approximate size of a chunk, or 0 to return the text as a single chunk
+     */
+    LineChunkReader(String text, int chunkChars) {
+        this.reader = null;
+        this.text = text;
+        this.chunkChars = chunkChars > 0 ? chunkChars : Integer.MAX_VALUE;
+    }
+
+    LineChunkReader(Reader reader, int chunkChars) {
+        this.reader = reader;
+        this.text = null;
+        this.chunkChars = chunkChars;
+        this.buffer = new char[chunkChars];
+    }
+
+    /**
+     * Returns a scanner over the next chunk, or null at the end of the input.
+     */
+    AsmLineScanner next() throws IOException {
+        return reader == null ? nextRange() : nextFromReader();
+    }
+
+    private AsmLineScanner nextRange() {
+        if (position >= text.length()) {
+            return null;
+        }
+        int from = position;
+        int to = text.length() - from > chunkChars ? lineEndAfter(from + chunkChars) : text.length();
+        position = to;
+        return new AsmLineScanner(text, from, to);
+    }
+
+    // Position after the first line break at or after the index
+    private int lineEndAfter(int index) {
+        while (index < text.length()) {
+            char c = text.charAt(index++);
+            if (c == '\n') {
+                return index;
+            }
+            if (c == '\r') {
+                return index < text.length() && text.charAt(index) == '\n' ? index + 1 : index;
+            }
+        }
+        return index;
+    }
+
+    private AsmLineScanner nextFromReader() throws IOException {
+        while (true) {
+            fill();
+            int cut = endOfInput ? length : lastLineEnd();
+            if (cut > 0) {
+                String chunk = new String(buffer, 0, cut);
+                length -= cut;
+                System.arraycopy(buffer, cut, buffer, 0, length);
+                return new AsmLineScanner(chunk);
+            }
+            if (endOfInput) {
+                return null;
+            }
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    private void fill() throws IOException {
+        while (length < buffer.length && !endOfInput) {
+            int read = reader.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                length += read;
+            }
+        }
+    }
+
+    // Position after the last line break that is certainly complete, 0 if there is none
+    private int lastLineEnd() {
+        for (int i = length - 1; i >= 0; i--) {
+            char c = buffer[i];
+            if (c == '\n' || (c == '\r' && i < length - 1)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -1,11 +1,8 @@
 package io.github.complexity.calculator;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Reader;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Calculates cyclomatic complexity for MOS 6502 assembler code
@@ -21,19 +18,7 @@ import java.util.regex.Pattern;
  * - Bit branches (BBR0-BBR7, BBS0-BBS7 for 65C02)
  * - Each subroutine starts at complexity 1
  */
-public class Mos6502ComplexityCalculator implements ComplexityCalculator {
-
-    // Patterns for different assembler constructs
-    private static final Pattern PROC_PATTERN = Pattern.compile(
-        "^\\s*\\.proc\\s+([a-zA-Z_][a-zA-Z0-9_]*)");
-    private static final Pattern ENDPROC_PATTERN = Pattern.compile(
-        "^\\s*\\.endproc");
-    private static final Pattern SUBROUTINE_PATTERN = Pattern.compile(
-        "^\\s*SUBROUTINE");
-    private static final Pattern LABEL_PATTERN = Pattern.compile(
-        "^([a-zA-Z_][a-zA-Z0-9_]*):");
-    private static final Pattern RTS_PATTERN = Pattern.compile(
-        "^\\s*(RTS|rts)\\b");
+public class Mos6502ComplexityCalculator implements IncrementalComplexityCalculator {
 
     /**
      * Helper class to manage subroutine parsing state.
@@ -43,6 +28,9 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
         int currentComplexity;
         String labelCandidate; // Potential subroutine label waiting for RTS
         int candidateComplexity;
+        // Segment tracking for incremental analysis, null if not needed
+        SegmentRecorder recorder;
+        int lineNumber;
 
         void startSubroutine(String name) {
             this.currentSubroutine = name;
@@ -90,63 +78,186 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
         boolean hasCandidate() {
             return labelCandidate != null;
         }
+
+        boolean isEmpty() {
+            return currentSubroutine == null && labelCandidate == null;
+        }
+
+        void beginSegment(SegmentedResult.Boundary previousBoundary) {
+            if (recorder != null) {
+                recorder.begin(lineNumber, previousBoundary);
+            }
+        }
     }
 
     // 6502 conditional branch instructions
-    private static final Set<String> CONDITIONAL_BRANCHES = new HashSet<>(Arrays.asList(
+    private static final String[] CONDITIONAL_BRANCHES = {
         "BEQ", "BNE",  // Branch on Equal / Not Equal
         "BCC", "BCS",  // Branch on Carry Clear / Set
         "BPL", "BMI",  // Branch on Plus / Minus
         "BVC", "BVS"   // Branch on Overflow Clear / Set
-    ));
+    };
 
     // 65C02 bit branch instructions
-    private static final Set<String> BIT_BRANCHES = new HashSet<>(Arrays.asList(
+    private static final String[] BIT_BRANCHES = {
         "BBR0", "BBR1", "BBR2", "BBR3", "BBR4", "BBR5", "BBR6", "BBR7",
         "BBS0", "BBS1", "BBS2", "BBS3", "BBS4", "BBS5", "BBS6", "BBS7"
-    ));
+    };
+
+    // Each of these opcodes is one decision point
+    private static final AsmLineScanner.OpcodeTable DECISION_OPCODES =
+        new AsmLineScanner.OpcodeTable(CONDITIONAL_BRANCHES, BIT_BRANCHES);
+
+    private final int parallelChunkChars;
+
+    public Mos6502ComplexityCalculator() {
+        this(AsmPass.PARALLEL_CHUNK_CHARS);
+    }
+
+    /**
+     * @param parallelChunkChars characters per chunk when a large source is scanned in parallel,
+     *                           or 0 to scan sequentially
+     */
+    Mos6502ComplexityCalculator(int parallelChunkChars) {
+        this.parallelChunkChars = parallelChunkChars;
+    }
 
     @Override
     public ComplexityResult calculate(String sourceCode, String fileName) throws IOException {
-        Map<String, Integer> complexities = new HashMap<>();
-        SubroutineState state = new SubroutineState();
-
-        BufferedReader reader = new BufferedReader(new StringReader(sourceCode));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String trimmed = preprocessLine(line);
-            if (trimmed == null) {
-                continue;
-            }
+        return calculate(sourceCode, fileName, new AnalysisContext());
+    }
 
-            // Check for ca65 .proc/.endproc
-            if (processProcStart(trimmed, state, complexities)) continue;
-            if (processProcEnd(trimmed, state, complexities)) continue;
+    @Override
+    public ComplexityResult calculate(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        return analyze(new LineChunkReader(sourceCode, parallelChunkChars), fileName, context, null, true).getResult();
+    }
 
-            // Check for DASM SUBROUTINE directive
-            if (processSubroutineDirective(trimmed, state, complexities)) continue;
+    /**
+     * Reads the source in chunks of whole lines, so memory use does not depend on its size.
+     */
+    @Override
+    public ComplexityResult calculate(Reader source, String fileName, AnalysisContext context)
+            throws IOException {
+        int chunkChars = parallelChunkChars > 0 ? parallelChunkChars : LineChunkReader.DEFAULT_CHUNK_CHARS;
+        return analyze(new LineChunkReader(source, chunkChars), fileName, context, null, true).getResult();
+    }
 
-            // Check for RTS (return from subroutine)
-            if (processRts(trimmed, state, complexities)) continue;
+    @Override
+    public SegmentedResult calculateSegments(String sourceCode, String fileName, AnalysisContext context)
+            throws IOException {
+        return analyze(new LineChunkReader(sourceCode, 0), fileName, context, new SegmentRecorder(), true);
+    }
 
-            // Check for label (potential subroutine start)
-            if (processLabel(trimmed, state, complexities)) continue;
+    @Override
+    public SegmentedResult calculateRegion(String regionText, String fileName) throws IOException {
+        return analyze(new LineChunkReader(regionText, 0), fileName, new AnalysisContext(), new SegmentRecorder(),
+            false);
+    }
 
-            // Count decision points if we're in a subroutine or have a candidate
-            if (state.hasSubroutine() || state.hasCandidate()) {
-                state.addComplexity(countDecisionPoints(trimmed));
-            }
+    @Override
+    public boolean isNeutralGapEdit(String oldText, String newText) {
+        try {
+            SegmentedResult region = calculateRegion(newText, "gap");
+            return region.getSegments().isEmpty() && region.getEndState() == SegmentedResult.EndState.EMPTY;
+        } catch (IOException e) {
+            return false;
         }
+    }
+
+    @Override
+    public boolean hasContextFreeGaps() {
+        return true;
+    }
+
+    /**
+     * @param recorder records segments for incremental analysis, or null
+     * @param wholeFile whether a file without subroutines is reported as one global function
+     */
+    private SegmentedResult analyze(LineChunkReader chunks, String fileName, AnalysisContext context,
+                                    SegmentRecorder recorder, boolean wholeFile) throws IOException {
+        Pass pass = new Pass(fileName, context, new HashMap<>());
+        pass.state.recorder = recorder;
+        // Segments are only recorded by a sequential scan
+        boolean parallel = recorder == null && parallelChunkChars > 0;
+        pass.scanAll(chunks, parallel ? () -> new Pass(fileName, context, new LinkedHashMap<>()) : null);
+
+        SubroutineState state = pass.state;
+        Map<String, Integer> complexities = pass.complexities;
+        SegmentedResult.EndState endState = state.hasSubroutine() ? SegmentedResult.EndState.OPEN :
+            state.hasCandidate() ? SegmentedResult.EndState.CANDIDATE : SegmentedResult.EndState.EMPTY;
 
         // Save last subroutine if exists
         saveSubroutine(state, complexities);
 
         // If no subroutines found, treat whole file as one function
-        if (complexities.isEmpty()) {
-            complexities.put("_global_", calculateGlobalComplexity(sourceCode));
+        if (complexities.isEmpty() && wholeFile) {
+            complexities.put("_global_", pass.getGlobalComplexity());
+        }
+
+        return new SegmentedResult(new ComplexityResult(fileName, "6502 Assembler", complexities),
+            recorder != null ? recorder.finish(pass.lineCount) : List.of(), endState);
+    }
+
+    /**
+     * Scan of consecutive lines with its own subroutine state
+     */
+    private final class Pass extends AsmPass {
+        final SubroutineState state = new SubroutineState();
+
+        Pass(String fileName, AnalysisContext context, Map<String, Integer> complexities) {
+            super(fileName, "6502 Assembler", context, complexities);
+        }
+
+        // .proc starts a subroutine whatever was open before, and RTS leaves none open or pending
+        @Override
+        boolean resetsState(AsmLineScanner line) {
+            return procName(line) > 0 || (line.isWordAt(0, "RTS", "rts") && !line.isLabel());
+        }
+
+        @Override
+        int countDecisionPoints(AsmLineScanner line) {
+            return Mos6502ComplexityCalculator.this.countDecisionPoints(line);
+        }
+
+        @Override
+        void processLine(AsmLineScanner line, int decisionPoints) {
+            state.lineNumber = lineCount;
+            Mos6502ComplexityCalculator.this.processLine(line, decisionPoints, state, complexities);
+            if (state.recorder != null) {
+                state.recorder.afterLine(lineCount, state.isEmpty());
+            }
         }
 
-        return new ComplexityResult(fileName, "6502 Assembler", complexities);
+        @Override
+        void adoptState(AsmPass chunk) {
+            SubroutineState other = ((Pass) chunk).state;
+            state.currentSubroutine = other.currentSubroutine;
+            state.currentComplexity = other.currentComplexity;
+            state.labelCandidate = other.labelCandidate;
+            state.candidateComplexity = other.candidateComplexity;
+        }
+    }
+
+    private void processLine(AsmLineScanner line, int decisionPoints, SubroutineState state,
+                             Map<String, Integer> complexities) {
+        // Check for ca65 .proc/.endproc
+        if (processProcStart(line, state, complexities)) return;
+        if (processProcEnd(line, state, complexities)) return;
+
+        // Check for DASM SUBROUTINE directive
+        if (processSubroutineDirective(line, state, complexities)) return;
+
+        // Check for RTS (return from subroutine)
+        if (processRts(line, state, complexities)) return;
+
+        // Check for label (potential subroutine start)
+        if (processLabel(line, state, complexities)) return;
+
+        // Count decision points if we're in a subroutine or have a candidate
+        if (state.hasSubroutine() || state.hasCandidate()) {
+            state.addComplexity(decisionPoints);
+        }
     }
 
     /**
@@ -155,29 +266,42 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
     private void saveSubroutine(SubroutineState state, Map<String, Integer> complexities) {
         if (state.hasSubroutine()) {
             complexities.put(state.currentSubroutine, state.currentComplexity);
+            if (state.recorder != null) {
+                state.recorder.function(state.currentSubroutine, state.currentComplexity);
+            }
         }
     }
 
     /**
      * Processes ca65 .proc declaration. Returns true if line was processed.
      */
-    private boolean processProcStart(String line, SubroutineState state, Map<String, Integer> complexities) {
-        Matcher matcher = PROC_PATTERN.matcher(line);
-        if (matcher.find()) {
+    private boolean processProcStart(AsmLineScanner line, SubroutineState state, Map<String, Integer> complexities) {
+        int name = procName(line);
+        int nameLength = name > 0 ? line.identifierLengthAt(name) : 0;
+        if (nameLength > 0) {
             saveSubroutine(state, complexities);
             state.clearLabelCandidate();
-            state.startSubroutine(matcher.group(1));
+            state.startSubroutine(line.text(name, nameLength));
+            state.beginSegment(SegmentedResult.Boundary.BEFORE_RESET);
             return true;
         }
         return false;
     }
 
+    /**
+     * Matches ".proc name".
+     * @return the offset of the name, or 0 if the line does not match
+     */
+    private static int procName(AsmLineScanner line) {
+        int name = line.startsWith(".proc") ? line.skipWhitespace(".proc".length()) : -1;
+        return name > 0 && line.identifierLengthAt(name) > 0 ? name : 0;
+    }
+
     /**
      * Processes ca65 .endproc declaration. Returns true if line was processed.
      */
-    private boolean processProcEnd(String line, SubroutineState state, Map<String, Integer> complexities) {
-        Matcher matcher = ENDPROC_PATTERN.matcher(line);
-        if (matcher.find()) {
+    private boolean processProcEnd(AsmLineScanner line, SubroutineState state, Map<String, Integer> complexities) {
+        if (line.startsWith(".endproc")) {
             saveSubroutine(state, complexities);
             state.endSubroutine();
             return true;
@@ -188,9 +312,9 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
     /**
      * Processes DASM SUBROUTINE directive. Returns true if line was processed.
      */
-    private boolean processSubroutineDirective(String line, SubroutineState state, Map<String, Integer> complexities) {
-        Matcher matcher = SUBROUTINE_PATTERN.matcher(line);
-        if (matcher.find()) {
+    private boolean processSubroutineDirective(AsmLineScanner line, SubroutineState state,
+                                               Map<String, Integer> complexities) {
+        if (line.startsWith("SUBROUTINE")) {
             // DASM SUBROUTINE creates an anonymous boundary
             // Use the last label as the subroutine name
             if (state.hasCandidate()) {
@@ -204,9 +328,8 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
     /**
      * Processes RTS (return from subroutine). Returns true if line was processed.
      */
-    private boolean processRts(String line, SubroutineState state, Map<String, Integer> complexities) {
-        Matcher matcher = RTS_PATTERN.matcher(line);
-        if (matcher.find()) {
+    private boolean processRts(AsmLineScanner line, SubroutineState state, Map<String, Integer> complexities) {
+        if (line.isWordAt(0, "RTS", "rts")) {
             // If we have a label candidate, promote it to a subroutine and end it
             if (state.hasCandidate()) {
                 state.promoteLabelCandidate();
@@ -227,10 +350,9 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
     /**
      * Processes label declaration. Returns true if line was processed.
      */
-    private boolean processLabel(String line, SubroutineState state, Map<String, Integer> complexities) {
-        Matcher matcher = LABEL_PATTERN.matcher(line);
-        if (matcher.find()) {
-            String labelName = matcher.group(1);
+    private boolean processLabel(AsmLineScanner line, SubroutineState state, Map<String, Integer> complexities) {
+        if (line.isLabel()) {
+            String labelName = line.text(0, line.identifierLength());
 
             // If we're not in a subroutine, this could be a new subroutine
             if (!state.hasSubroutine()) {
@@ -240,6 +362,7 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
                     state.clearLabelCandidate();
                 }
                 state.setLabelCandidate(labelName);
+                state.beginSegment(SegmentedResult.Boundary.BEFORE_LABEL);
                 return true;
             }
             // Labels inside subroutines are just local labels, not new subroutines
@@ -247,65 +370,9 @@ public class Mos6502ComplexityCalculator implements ComplexityCalculator {
         return false;
     }
 
-    /**
-     * Calculates complexity for files without explicit subroutine declarations.
-     */
-    private int calculateGlobalComplexity(String sourceCode) throws IOException {
-        int totalComplexity = 1;
-        BufferedReader reader = new BufferedReader(new StringReader(sourceCode));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String trimmed = preprocessLine(line);
-            if (trimmed != null) {
-                totalComplexity += countDecisionPoints(trimmed);
-            }
-        }
-        return totalComplexity;
-    }
-
-    /**
-     * Preprocesses a line by trimming and removing comments.
-     * @return the preprocessed line, or null if the line should be skipped
-     */
-    private String preprocessLine(String line) {
-        String trimmed = line.trim();
-
-        // Skip empty lines and comments
-        if (trimmed.isEmpty() || trimmed.startsWith(";")) {
-            return null;
-        }
-
-        // Remove inline comments
-        int commentPos = trimmed.indexOf(';');
-        if (commentPos >= 0) {
-            trimmed = trimmed.substring(0, commentPos).trim();
-        }
-
-        return trimmed;
-    }
-
-    private int countDecisionPoints(String instruction) {
-        int count = 0;
-
-        // Extract the opcode (first word)
-        String[] parts = instruction.split("\\s+");
-        if (parts.length == 0) {
-            return 0;
-        }
-
-        String opcode = parts[0].toUpperCase();
-
-        // Check for conditional branches
-        if (CONDITIONAL_BRANCHES.contains(opcode)) {
-            count++;
-        }
-
-        // Check for bit branches (65C02)
-        if (BIT_BRANCHES.contains(opcode)) {
-            count++;
-        }
-
-        return count;
+    private int countDecisionPoints(AsmLineScanner line) {
+        // Conditional branches and 65C02 bit branches
+        return line.opcodeIn(DECISION_OPCODES) ? 1 : 0;
     }
 
     @Override
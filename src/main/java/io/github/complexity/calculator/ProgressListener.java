@@ -0,0 +1,28 @@
+package io.github.complexity.calculator;
+
+import java.util.Map;
+
+/**
+ * Receives the progress of an analysis through its {@link AnalysisContext}
+ *
+ * Both methods may be called concurrently from several threads, e.g. when the files of a
+ * directory are analyzed in parallel, and should return quickly since they run on the
+ * analyzing thread.
+ */
+public interface ProgressListener {
+
+    /**
+     * Called at every checkpoint that does not abort the analysis.
+     *
+     * @param fileName the file being analyzed
+     * @param language the language of the calculator
+     * @param completed the functions completed so far; only valid during the call
+     */
+    void checkpoint(String fileName, String language, Map<String, Integer> completed);
+
+    /**
+     * Called with the complete result of one of several files analyzed under the same context.
+     */
+    default void fileCompleted(ComplexityResult result) {
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.complexity.calculator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks segment boundaries while a line-based calculator runs
+ *
+ * Line numbers passed in are 1-based as counted by the calculators; the recorded
+ * segments are 0-based and end exclusive.
+ */
+final class SegmentRecorder {
+    private final List<SegmentedResult.Segment> segments = new ArrayList<>();
+    private int startLine = -1; // -1 if no segment is open
+    private Map<String, Integer> functions;
+
+    /**
+     * Starts a segment at the given line, ending an open one before it.
+     */
+    void begin(int line, SegmentedResult.Boundary previousBoundary) {
+        if (startLine >= 0) {
+            end(line - 1, previousBoundary);
+        }
+        startLine = line - 1;
+        functions = new LinkedHashMap<>();
+    }
+
+    /**
+     * Records a completed function of the open segment.
+     */
+    void function(String name, int complexity) {
+        if (functions != null) {
+            functions.put(name, complexity);
+        }
+    }
+
+    /**
+     * Called after a line has been processed; ends the open segment once no state is left.
+     */
+    void afterLine(int line, boolean stateEmpty) {
+        if (stateEmpty && startLine >= 0) {
+            end(line, SegmentedResult.Boundary.CLOSED);
+        }
+    }
+
+    /**
+     * Ends the open segment at the end of the input.
+     */
+    List<SegmentedResult.Segment> finish(int lastLine) {
+        if (startLine >= 0) {
+            end(lastLine, SegmentedResult.Boundary.END_OF_FILE);
+        }
+        return segments;
+    }
+
+    private void end(int line, SegmentedResult.Boundary boundary) {
+        segments.add(new SegmentedResult.Segment(startLine, line, functions, boundary));
+        startLine = -1;
+        functions = null;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.complexity.calculator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Complexity result together with the line spans it was computed from
+ *
+ * A segment is a run of lines (a method, a PROC or a label-delimited block) whose
+ * functions depend only on the text of those lines. Lines between segments are
+ * gaps that do not contribute any function. Line numbers are 0-based, end exclusive.
+ */
+public final class SegmentedResult {
+
+    /**
+     * Parser state after the last line of a segment or region.
+     */
+    public enum EndState {
+        /** No function or candidate label is open */
+        EMPTY,
+        /** Only a label that may still turn out to be a subroutine is open */
+        CANDIDATE,
+        /** A function is open */
+        OPEN
+    }
+
+    /**
+     * Why a segment ended, which determines what a re-analyzed replacement may end with.
+     */
+    public enum Boundary {
+        /** The segment closed its function itself (e.g. ENDP, RTS, closing brace) */
+        CLOSED,
+        /** The next line starts a new function regardless of the current state */
+        BEFORE_RESET,
+        /** The next line is a label, which only starts a function if none is open */
+        BEFORE_LABEL,
+        /** The segment ends with the file */
+        END_OF_FILE;
+
+        /**
+         * Returns whether a replacement ending in the given state leaves the following lines unaffected.
+         */
+        boolean accepts(EndState state) {
+            switch (this) {
+                case CLOSED:
+                    return state == EndState.EMPTY;
+                case BEFORE_LABEL:
+                    return state != EndState.OPEN;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * A run of lines and the functions found in it, in the order they were reported.
+     */
+    public static final class Segment {
+        private final int startLine;
+        private final int endLine;
+        private final Map<String, Integer> functions;
+        private final Boundary boundary;
+
+        public Segment(int startLine, int endLine, Map<String, Integer> functions, Boundary boundary) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.functions = functions;
+            this.boundary = boundary;
+        }
+
+        public int getStartLine() {
+            return startLine;
+        }
+
+        public int getEndLine() {
+            return endLine;
+        }
+
+        public Map<String, Integer> getFunctions() {
+            return functions;
+        }
+
+        public Boundary getBoundary() {
+            return boundary;
+        }
+
+        Segment shift(int lines) {
+            return lines == 0 ? this : new Segment(startLine + lines, endLine + lines, functions, boundary);
+        }
+    }
+
+    private final ComplexityResult result;
+    private final List<Segment> segments;
+    private final EndState endState;
+
+    public SegmentedResult(ComplexityResult result, List<Segment> segments, EndState endState) {
+        this.result = result;
+        this.segments = segments;
+        this.endState = endState;
+    }
+
+    public ComplexityResult getResult() {
+        return result;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public EndState getEndState() {
+        return endState;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A JSON-RPC message ready to be written onto the output stream
+ *
+ * Most messages are small JSON trees. Large or constant ones instead write their fields
+ * straight onto the stream, so that neither a tree nor a string of the whole message is built.
+ */
+abstract class JsonRpcMessage {
+    private static final Gson gson = new Gson(); // Omits null members, as JSON-RPC responses always did
+
+    abstract void writeTo(JsonWriter out) throws IOException;
+
+    static JsonRpcMessage of(JsonElement message) {
+        return new JsonRpcMessage() {
+            @Override
+            void writeTo(JsonWriter out) {
+                gson.toJson(message, out);
+            }
+        };
+    }
+
+    /**
+     * A response whose result was serialized beforehand, e.g. a constant one.
+     */
+    static JsonRpcMessage withResult(JsonElement id, String resultJson) {
+        return new JsonRpcMessage() {
+            @Override
+            void writeTo(JsonWriter out) throws IOException {
+                out.beginObject();
+                writeHeader(out, id);
+                out.name("result").jsonValue(resultJson);
+                out.endObject();
+            }
+        };
+    }
+
+    static String toJson(JsonElement element) {
+        return gson.toJson(element);
+    }
+
+    /**
+     * Writes the jsonrpc and id members of a response.
+     */
+    static void writeHeader(JsonWriter out, JsonElement id) throws IOException {
+        out.name("jsonrpc").value("2.0");
+        if (id != null && !id.isJsonNull()) {
+            out.name("id");
+            gson.toJson(id, out);
+        }
+    }
+}
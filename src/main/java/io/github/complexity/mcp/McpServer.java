@@ -1,15 +1,31 @@
 package io.github.complexity.mcp;
 
+import com.github.javaparser.ParserConfiguration;
 import com.google.gson.*;
+import io.github.complexity.cache.DiskResultCache;
+import io.github.complexity.cache.FileKey;
+import io.github.complexity.cache.ResultCache;
+import io.github.complexity.cache.SingleFlight;
+import io.github.complexity.cache.WorkspaceSnapshot;
 import io.github.complexity.calculator.*;
+import io.github.complexity.workspace.DirectoryWalker;
+import io.github.complexity.workspace.HotspotCollector;
+import io.github.complexity.workspace.WorkspaceIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * MCP Server for cyclomatic complexity analysis
@@ -17,15 +33,205 @@ import java.util.regex.Pattern;
  */
 public class McpServer {
     private static final Logger logger = LoggerFactory.getLogger(McpServer.class);
-    private static final Gson gson = new Gson(); // No pretty printing - JSON-RPC requires single-line responses
 
-    private final Map<String, ComplexityCalculator> calculators = new HashMap<>();
+    // Number of interactive requests processed concurrently (defaults to the number of cores, at least 2)
+    private static final int WORKER_THREADS = Integer.getInteger("complexity.workers",
+        Math.max(2, Runtime.getRuntime().availableProcessors()));
+    // Number of bulk requests (directory scans, huge inputs) processed concurrently
+    private static final int BULK_WORKER_THREADS = Integer.getInteger("complexity.bulkWorkers",
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // Requests waiting per lane before new ones are rejected as "server busy"
+    private static final int INTERACTIVE_QUEUE_CAPACITY = Integer.getInteger("complexity.interactiveQueue", 256);
+    private static final int BULK_QUEUE_CAPACITY = Integer.getInteger("complexity.bulkQueue", 32);
+    // Inputs larger than this (source code length or file size) are scheduled as bulk work
+    private static final long BULK_THRESHOLD_BYTES = Long.getLong("complexity.bulkThresholdBytes", 512 * 1024);
+
+    // Bounds of the in-memory result cache
+    private static final int CACHE_MAX_ENTRIES = Integer.getInteger("complexity.cache.maxEntries", 10_000);
+    private static final long CACHE_MAX_BYTES = Long.getLong("complexity.cache.maxBytes", 64L * 1024 * 1024);
+    // Size limit of the persistent result cache (enabled by setting complexity.cache.dir)
+    private static final long DISK_CACHE_MAX_BYTES = Long.getLong("complexity.cache.diskMaxBytes", 256L * 1024 * 1024);
+
+    // Quiet period after the last file change before a watched workspace is updated
+    private static final long WATCH_DEBOUNCE_MILLIS = Long.getLong("complexity.watch.debounceMillis", 300);
+    // Maximum number of functions listed by query_workspace unless the request asks for more
+    private static final int DEFAULT_QUERY_LIMIT = 100;
+    // Number of functions returned by find_hotspots unless the request asks for more
+    private static final int DEFAULT_HOTSPOT_LIMIT = 50;
+    // Incremental analyses kept for analyze_changes; the least recently used one is dropped first
+    private static final int INCREMENTAL_MAX_HANDLES = Integer.getInteger("complexity.incremental.maxHandles", 64);
+    // Leading characters of a .asm/.s file examined to tell 6502 from x86 assembler
+    private static final int ASM_DETECT_PREFIX_CHARS = Integer.getInteger("complexity.asm.detectPrefixChars", 1024 * 1024);
+    // Files larger than this are analyzed as a stream instead of being read into memory at once
+    private static final long STREAM_THRESHOLD_BYTES = Long.getLong("complexity.streamThresholdBytes", 64L * 1024 * 1024);
+    // Longest accepted message; longer ones are rejected without being buffered
+    private static final long MAX_MESSAGE_CHARS = Long.getLong("complexity.maxMessageChars", 128L * 1024 * 1024);
+    // Minimum time between progress notifications of a tool call
+    private static final long PROGRESS_INTERVAL_MILLIS = Long.getLong("complexity.progress.intervalMillis", 500);
+
+    // JSON-RPC error code (implementation defined server error range) for rejected requests
+    private static final int SERVER_BUSY = -32001;
+
+    // The tools never change, so their list is serialized once and spliced into every response
+    private static final String TOOLS_LIST_RESULT = JsonRpcMessage.toJson(createToolsListResult());
+
+    // Read-only after construction; the calculators themselves are stateless and thread-safe
+    private final Map<String, ComplexityCalculator> calculators;
+
+    // Token-based approximations used for mode "fast"; other languages are already token-based
+    private final Map<String, ComplexityCalculator> fastCalculators =
+        Map.of("java", new FastJavaComplexityCalculator());
+
+    // Stateless and thread-safe, like the calculators
+    private final AssemblerDialectDetector dialectDetector = new AssemblerDialectDetector(ASM_DETECT_PREFIX_CHARS);
+
+    // Running tool calls by JSON-RPC id, for notifications/cancelled
+    private final Map<String, AnalysisContext> activeRequests = new ConcurrentHashMap<>();
+
+    private final RequestScheduler scheduler;
+
+    // Writer of the running server loop, used for notifications sent while a request runs
+    private volatile ResponseWriter writer;
+
+    // Results of unchanged files are answered from memory
+    private final ResultCache<FileKey> resultCache = new ResultCache<>(CACHE_MAX_ENTRIES, CACHE_MAX_BYTES);
+
+    // Concurrent analyses of the same file version share one computation
+    private final SingleFlight<FileKey, ComplexityResult> inFlightAnalyses = new SingleFlight<>();
+
+    // Results of unchanged content survive restarts and are shared between servers; null if disabled
+    private final DiskResultCache diskCache = openDiskCache();
+
+    // Per-file results of earlier sessions, memory-mapped for instant warm starts; null if disabled
+    private final WorkspaceSnapshot snapshot;
+
+    // Results computed in this session, merged into the snapshot on shutdown
+    private final Map<FileKey, ComplexityResult> snapshotUpdates = new ConcurrentHashMap<>();
+
+    // Watched workspaces by root directory
+    private final Map<Path, WorkspaceIndex> workspaces = new ConcurrentHashMap<>();
+
+    // Incremental analyses by result handle, in access order
+    private final Map<String, IncrementalHandle> incrementalHandles = Collections.synchronizedMap(
+        new LinkedHashMap<String, IncrementalHandle>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IncrementalHandle> eldest) {
+                return size() > INCREMENTAL_MAX_HANDLES;
+            }
+        });
+    private final AtomicLong handleCounter = new AtomicLong();
+
+    /**
+     * Latest analysis of a result handle and the file it was read from (null for inline code)
+     * together with the file's charset.
+     */
+    private static final class IncrementalHandle {
+        final IncrementalAnalysis analysis;
+        final String filePath;
+        final Charset charset;
+
+        IncrementalHandle(IncrementalAnalysis analysis, String filePath, Charset charset) {
+            this.analysis = analysis;
+            this.filePath = filePath;
+            this.charset = charset;
+        }
+    }
 
     public McpServer() {
-        calculators.put("java", new JavaComplexityCalculator());
+        this(defaultCalculators());
+    }
+
+    McpServer(Map<String, ComplexityCalculator> calculators) {
+        this(calculators, new RequestScheduler(
+            WORKER_THREADS, INTERACTIVE_QUEUE_CAPACITY, BULK_WORKER_THREADS, BULK_QUEUE_CAPACITY));
+    }
+
+    McpServer(Map<String, ComplexityCalculator> calculators, RequestScheduler scheduler) {
+        this.calculators = Collections.unmodifiableMap(new HashMap<>(calculators));
+        this.scheduler = scheduler;
+        this.snapshot = openSnapshot(rulesVersion(this.calculators, fastCalculators));
+    }
+
+    private static Map<String, ComplexityCalculator> defaultCalculators() {
+        Map<String, ComplexityCalculator> calculators = new HashMap<>();
+        calculators.put("java", new JavaComplexityCalculator(javaLanguageLevel()));
         calculators.put("asm", new AssemblerComplexityCalculator());
         calculators.put("s", new AssemblerComplexityCalculator());
         calculators.put("6502", new Mos6502ComplexityCalculator());
+        return calculators;
+    }
+
+    /**
+     * Java syntax accepted by the parser, from complexity.java.languageLevel (e.g. JAVA_17).
+     */
+    private static ParserConfiguration.LanguageLevel javaLanguageLevel() {
+        String level = System.getProperty("complexity.java.languageLevel", "POPULAR");
+        try {
+            return ParserConfiguration.LanguageLevel.valueOf(level.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown Java language level {}, using POPULAR. Supported levels: {}", level,
+                Arrays.toString(ParserConfiguration.LanguageLevel.values()));
+            return ParserConfiguration.LanguageLevel.POPULAR;
+        }
+    }
+
+    private static DiskResultCache openDiskCache() {
+        String directory = System.getProperty("complexity.cache.dir");
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        try {
+            return new DiskResultCache(Paths.get(directory), DISK_CACHE_MAX_BYTES);
+        } catch (IOException e) {
+            logger.warn("Persistent result cache disabled, cannot open {}: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fingerprint of the counting rules of all calculators, so that a snapshot written
+     * by an older version of any calculator is discarded.
+     */
+    private static int rulesVersion(Map<String, ComplexityCalculator> calculators,
+                                    Map<String, ComplexityCalculator> fastCalculators) {
+        List<String> rules = new ArrayList<>();
+        for (Map.Entry<String, ComplexityCalculator> entry : calculators.entrySet()) {
+            ComplexityCalculator calculator = entry.getValue();
+            rules.add(entry.getKey() + "=" + calculator.getClass().getName() + ":" + calculator.getAlgorithmVersion());
+        }
+        for (Map.Entry<String, ComplexityCalculator> entry : fastCalculators.entrySet()) {
+            ComplexityCalculator calculator = entry.getValue();
+            rules.add("fast:" + entry.getKey() + "=" + calculator.getClass().getName() + ":"
+                + calculator.getAlgorithmVersion());
+        }
+        Collections.sort(rules);
+        return rules.hashCode();
+    }
+
+    private static WorkspaceSnapshot openSnapshot(int rulesVersion) {
+        String file = System.getProperty("complexity.snapshot.file");
+        if (file == null || file.isBlank()) {
+            return null;
+        }
+        try {
+            WorkspaceSnapshot snapshot = WorkspaceSnapshot.open(Paths.get(file), rulesVersion);
+            logger.info("Loaded snapshot of {} files from {}", snapshot.size(), file);
+            return snapshot;
+        } catch (IOException e) {
+            logger.warn("Workspace snapshot disabled, cannot open {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            snapshot.save(snapshotUpdates);
+        } catch (IOException e) {
+            logger.error("Cannot save workspace snapshot to {}", snapshot.getFile(), e);
+        }
     }
 
     public static void main(String[] args) {
@@ -34,54 +240,336 @@ public class McpServer {
     }
 
     public void run() {
+        run(System.in, System.out);
+    }
+
+    /**
+     * Reads requests line by line and dispatches each one to the interactive or bulk
+     * lane of the scheduler. Each line is parsed straight from the input stream, so a
+     * large request is held once as a JSON tree rather than also as a line. Responses are
+     * written in completion order as soon as they are ready; clients correlate them by
+     * their JSON-RPC id. Returns after the input is exhausted and all in-flight requests
+     * have been answered.
+     */
+    void run(InputStream in, OutputStream out) {
         logger.info("Starting Cyclomatic Complexity MCP Server");
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-             PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)), true)) {
+        ResponseWriter writer = new ResponseWriter(out);
+        this.writer = writer;
+        watchConfiguredRoots();
 
-            String line;
-            while ((line = reader.readLine()) != null) {
+        try (MessageFrameReader frames = new MessageFrameReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8), MAX_MESSAGE_CHARS)) {
+            while (frames.nextFrame()) {
+                JsonElement message;
                 try {
-                    JsonObject request = JsonParser.parseString(line).getAsJsonObject();
-                    JsonObject response = handleRequest(request);
+                    message = JsonParser.parseReader(frames);
+                } catch (JsonParseException e) {
+                    // The rest of the line is skipped by the next frame
+                    if (frames.isTooLarge()) {
+                        logger.warn("Rejected request of more than {} characters", frames.getMaxChars());
+                        writer.write(createErrorResponse(null, -32600,
+                            "Invalid Request: message exceeds " + frames.getMaxChars() + " characters"));
+                    } else {
+                        logger.error("Error parsing request", e);
+                        writer.write(createErrorResponse(null, -32700, "Parse error: " + e.getMessage()));
+                    }
+                    continue;
+                }
+
+                try {
+                    // Notifications are cheap and must not queue behind running analyses
+                    // (notifications/cancelled has to reach the request it cancels)
+                    if (isNotification(message)) {
+                        handleMessage(message);
+                        continue;
+                    }
 
-                    if (response != null) {
-                        writer.println(gson.toJson(response));
-                        writer.flush();
+                    if (message.isJsonArray()) {
+                        dispatchBatch(message.getAsJsonArray(), writer);
+                    } else {
+                        dispatch(message).thenAccept(response -> {
+                            if (response != null) {
+                                writer.write(response);
+                            }
+                        });
                     }
-                } catch (Exception e) {
-                    logger.error("Error processing request", e);
-                    JsonObject error = createErrorResponse(null, -32603, "Internal error: " + e.getMessage());
-                    writer.println(gson.toJson(error));
-                    writer.flush();
+                } catch (RuntimeException e) {
+                    // A single bad message must not end the read loop
+                    logger.error("Error dispatching request", e);
+                    JsonElement id = message.isJsonObject() ? message.getAsJsonObject().get("id") : null;
+                    writer.write(createErrorResponse(id, -32603, "Internal error: " + e.getMessage()));
                 }
             }
         } catch (IOException e) {
             logger.error("IO Error in main loop", e);
+        } finally {
+            scheduler.shutdownAndAwait();
+            closeWorkspaces();
+            saveSnapshot();
         }
 
         logger.info("Server shutting down");
     }
 
-    private JsonObject handleRequest(JsonObject request) {
-        String method = request.has("method") ? request.get("method").getAsString() : "";
+    /**
+     * Starts watching the roots listed in the complexity.watch.roots system property
+     * (comma separated). The initial indexing runs in the bulk lane.
+     */
+    private void watchConfiguredRoots() {
+        String roots = System.getProperty("complexity.watch.roots");
+        if (roots == null || roots.isBlank()) {
+            return;
+        }
+        for (String root : roots.split(",")) {
+            if (root.isBlank()) {
+                continue;
+            }
+            scheduler.submit(RequestScheduler.Lane.BULK, () -> {
+                try {
+                    return watchWorkspace(Paths.get(root.trim()), List.of(), List.of(), true);
+                } catch (IOException e) {
+                    logger.error("Cannot watch workspace {}", root, e);
+                    return null;
+                }
+            });
+        }
+    }
+
+    private void closeWorkspaces() {
+        for (WorkspaceIndex index : workspaces.values()) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close watcher of {}: {}", index.getRoot(), e.getMessage());
+            }
+        }
+        workspaces.clear();
+    }
+
+    /**
+     * Handles a JSON-RPC 2.0 batch. The elements are scheduled individually, processed in
+     * parallel and answered with a single array once all of them are done. Notifications
+     * contribute no entry; a batch of only notifications gets no response.
+     */
+    private void dispatchBatch(JsonArray batch, ResponseWriter writer) {
+        if (batch.isEmpty()) {
+            writer.write(createErrorResponse(null, -32600, "Invalid Request: empty batch"));
+            return;
+        }
+
+        List<CompletableFuture<JsonRpcMessage>> futures = new ArrayList<>(batch.size());
+        for (JsonElement element : batch) {
+            futures.add(dispatch(element));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            List<JsonRpcMessage> responses = new ArrayList<>(futures.size());
+            for (CompletableFuture<JsonRpcMessage> future : futures) {
+                JsonRpcMessage response = future.getNow(null);
+                if (response != null) {
+                    responses.add(response);
+                }
+            }
+            if (!responses.isEmpty()) {
+                writer.write(responses);
+            }
+        });
+    }
+
+    /**
+     * Admits a single request to its lane.
+     *
+     * @return a future with the response (null for notifications); never fails, a full
+     *         queue yields a "server busy" error response
+     */
+    private CompletableFuture<JsonRpcMessage> dispatch(JsonElement message) {
+        try {
+            registerToolCall(message);
+        } catch (IllegalArgumentException e) {
+            // Malformed tool call parameters, e.g. a non-numeric timeout_ms; nothing is queued
+            JsonElement id = message.getAsJsonObject().get("id");
+            return CompletableFuture.completedFuture(
+                JsonRpcMessage.of(createErrorResponse(id, -32602, "Invalid params: " + e.getMessage())));
+        }
+        return scheduler.submit(classify(message), () -> handleMessage(message))
+            .exceptionally(error -> {
+                JsonElement id = message.isJsonObject() ? message.getAsJsonObject().get("id") : null;
+                if (id != null) {
+                    activeRequests.remove(id.toString());
+                }
+                return JsonRpcMessage.of(createErrorResponse(id, SERVER_BUSY,
+                    "Server busy: too many pending requests, retry later"));
+            });
+    }
+
+    /**
+     * Classifies a request as bulk work by tool or input size; everything else is interactive.
+     * Runs on the reader thread and never throws: malformed members are classified as
+     * interactive and reported when the request is handled.
+     */
+    private RequestScheduler.Lane classify(JsonElement message) {
+        if (!message.isJsonObject()) {
+            return RequestScheduler.Lane.INTERACTIVE;
+        }
+        JsonObject request = message.getAsJsonObject();
+        JsonObject params = request.has("params") && request.get("params").isJsonObject() ?
+            request.getAsJsonObject("params") : null;
+        if (params == null || !isString(params.get("name"))) {
+            return RequestScheduler.Lane.INTERACTIVE;
+        }
+        JsonObject arguments = params.has("arguments") && params.get("arguments").isJsonObject() ?
+            params.getAsJsonObject("arguments") : new JsonObject();
+
+        switch (params.get("name").getAsString()) {
+            case "analyze_directory":
+            case "find_hotspots":
+            case "watch_workspace":
+                return RequestScheduler.Lane.BULK;
+            case "analyze_complexity_code":
+                return isString(arguments.get("source_code")) &&
+                    arguments.get("source_code").getAsString().length() > BULK_THRESHOLD_BYTES ?
+                    RequestScheduler.Lane.BULK : RequestScheduler.Lane.INTERACTIVE;
+            case "analyze_complexity":
+                return isString(arguments.get("file_path")) && fileSize(arguments.get("file_path").getAsString())
+                    > BULK_THRESHOLD_BYTES ? RequestScheduler.Lane.BULK : RequestScheduler.Lane.INTERACTIVE;
+            default:
+                return RequestScheduler.Lane.INTERACTIVE;
+        }
+    }
+
+    private static long fileSize(String filePath) {
+        try {
+            return Files.size(Paths.get(filePath));
+        } catch (IOException | RuntimeException e) {
+            return 0; // Reported properly when the request is handled
+        }
+    }
+
+    /**
+     * Creates the analysis context of a tool call before it is queued, so that
+     * timeouts start at receipt and queued requests can already be cancelled.
+     *
+     * @throws IllegalArgumentException if the parameters used by the context are malformed
+     */
+    private void registerToolCall(JsonElement message) {
+        if (!message.isJsonObject()) {
+            return;
+        }
+        JsonObject request = message.getAsJsonObject();
+        if (request.has("id") && isString(request.get("method"))
+            && "tools/call".equals(request.get("method").getAsString())) {
+            activeRequests.put(request.get("id").toString(), createContext(request));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if params, arguments, timeout_ms or partial_results are malformed
+     */
+    private AnalysisContext createContext(JsonObject request) {
+        JsonObject params = objectMember(request, "params");
+        JsonObject arguments = params != null ? objectMember(params, "arguments") : null;
+        long timeoutMillis = 0;
+        if (arguments != null && arguments.has("timeout_ms")) {
+            JsonElement timeout = arguments.get("timeout_ms");
+            if (!timeout.isJsonPrimitive() || !timeout.getAsJsonPrimitive().isNumber()) {
+                throw new IllegalArgumentException("timeout_ms must be an integer");
+            }
+            timeoutMillis = timeout.getAsLong();
+        }
+        AnalysisContext context = new AnalysisContext(timeoutMillis);
+
+        // The client asks for progress notifications with a token in params._meta
+        JsonObject meta = params != null && params.get("_meta") instanceof JsonObject ?
+            params.getAsJsonObject("_meta") : null;
+        ResponseWriter progressWriter = writer;
+        if (meta != null && meta.has("progressToken") && progressWriter != null) {
+            boolean partialResults = false;
+            if (arguments != null && arguments.has("partial_results")) {
+                JsonElement partial = arguments.get("partial_results");
+                if (!partial.isJsonPrimitive() || !partial.getAsJsonPrimitive().isBoolean()) {
+                    throw new IllegalArgumentException("partial_results must be a boolean");
+                }
+                partialResults = partial.getAsBoolean();
+            }
+            context.setProgressListener(new ProgressReporter(meta.get("progressToken"), partialResults,
+                progressWriter, PROGRESS_INTERVAL_MILLIS));
+        }
+        return context;
+    }
+
+    /**
+     * Returns the member as an object, or null if it is absent.
+     *
+     * @throws IllegalArgumentException if the member is not an object
+     */
+    private static JsonObject objectMember(JsonObject object, String name) {
+        JsonElement member = object.get(name);
+        if (member == null || member.isJsonNull()) {
+            return null;
+        }
+        if (!member.isJsonObject()) {
+            throw new IllegalArgumentException(name + " must be an object");
+        }
+        return member.getAsJsonObject();
+    }
+
+    private static boolean isString(JsonElement element) {
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+    }
+
+    private static boolean isNotification(JsonElement message) {
+        return message.isJsonObject() && !message.getAsJsonObject().has("id");
+    }
+
+    /**
+     * Handles a single (possibly batched) message and never throws.
+     *
+     * @return the response, or null for notifications
+     */
+    private JsonRpcMessage handleMessage(JsonElement message) {
+        if (!message.isJsonObject()) {
+            return JsonRpcMessage.of(createErrorResponse(null, -32600, "Invalid Request: expected a JSON object"));
+        }
+        JsonObject request = message.getAsJsonObject();
+        try {
+            return handleRequest(request);
+        } catch (Exception e) {
+            logger.error("Error processing request", e);
+            return JsonRpcMessage.of(createErrorResponse(request.get("id"), -32603, "Internal error: " + e.getMessage()));
+        }
+    }
+
+    private JsonRpcMessage handleRequest(JsonObject request) {
         JsonElement idElement = request.get("id");
+        if (request.has("method") && !isString(request.get("method"))) {
+            return JsonRpcMessage.of(createErrorResponse(idElement, -32600, "Invalid Request: method must be a string"));
+        }
+        String method = request.has("method") ? request.get("method").getAsString() : "";
 
         logger.debug("Received request: method={}", method);
 
         switch (method) {
             case "initialize":
-                return handleInitialize(idElement);
+                return JsonRpcMessage.of(handleInitialize(idElement));
             case "notifications/initialized":
                 // This is a notification, no response needed
                 logger.debug("Received initialized notification");
                 return null;
+            case "notifications/cancelled":
+                handleCancelled(request);
+                return null;
             case "tools/list":
                 return handleToolsList(idElement);
             case "tools/call":
                 return handleToolsCall(request, idElement);
             default:
-                return createErrorResponse(idElement, -32601, "Method not found: " + method);
+                if (idElement == null) {
+                    // Unknown notifications are ignored, JSON-RPC forbids responding to them
+                    logger.debug("Ignoring notification: {}", method);
+                    return null;
+                }
+                return JsonRpcMessage.of(createErrorResponse(idElement, -32601, "Method not found: " + method));
         }
     }
 
@@ -110,11 +598,11 @@ public class McpServer {
         return response;
     }
 
-    private JsonObject handleToolsList(JsonElement id) {
-        JsonObject response = new JsonObject();
-        response.add("jsonrpc", new JsonPrimitive("2.0"));
-        response.add("id", id);
+    private JsonRpcMessage handleToolsList(JsonElement id) {
+        return JsonRpcMessage.withResult(id, TOOLS_LIST_RESULT);
+    }
 
+    private static JsonObject createToolsListResult() {
         JsonArray tools = new JsonArray();
 
         // Tool 1: analyze_file - Analyze a file by path
@@ -140,6 +628,18 @@ public class McpServer {
         langProp.addProperty("description", "Language: 'java', 'asm', or '6502' (auto-detected from extension if not provided)");
         analyzeProps.add("language", langProp);
 
+        JsonObject encodingProp = new JsonObject();
+        encodingProp.addProperty("type", "string");
+        encodingProp.addProperty("description", "Charset of the file, e.g. 'UTF-8' or 'windows-1252' " +
+            "(detected from a byte order mark or UTF-8 validity if not provided, falling back to ISO-8859-1)");
+        analyzeProps.add("encoding", encodingProp);
+
+        analyzeProps.add("mode", createModeProperty());
+        analyzeProps.add("incremental", createIncrementalProperty());
+        analyzeProps.add("timeout_ms", createTimeoutProperty());
+        analyzeProps.add("partial_results", createPartialResultsProperty());
+        analyzeProps.add("output", createOutputProperty());
+
         analyzeSchema.add("properties", analyzeProps);
 
         JsonArray required = new JsonArray();
@@ -177,6 +677,12 @@ public class McpServer {
         fileNameProp.addProperty("description", "File name for reporting (optional)");
         codeProps.add("file_name", fileNameProp);
 
+        codeProps.add("mode", createModeProperty());
+        codeProps.add("incremental", createIncrementalProperty());
+        codeProps.add("timeout_ms", createTimeoutProperty());
+        codeProps.add("partial_results", createPartialResultsProperty());
+        codeProps.add("output", createOutputProperty());
+
         codeSchema.add("properties", codeProps);
 
         JsonArray codeRequired = new JsonArray();
@@ -187,198 +693,1048 @@ public class McpServer {
         analyzeCodeTool.add("inputSchema", codeSchema);
         tools.add(analyzeCodeTool);
 
+        // Tool 3: analyze_directory - Analyze a whole directory tree in parallel
+        JsonObject analyzeDirTool = new JsonObject();
+        analyzeDirTool.addProperty("name", "analyze_directory");
+        analyzeDirTool.addProperty("description",
+            "Analyzes the cyclomatic complexity of all supported source files below a directory in parallel. " +
+            "Honours .gitignore files and optional include/exclude glob patterns. Returns aggregate metrics " +
+            "and a per-file overview.");
+
+        JsonObject dirSchema = new JsonObject();
+        dirSchema.addProperty("type", "object");
+
+        JsonObject dirProps = new JsonObject();
+
+        JsonObject dirPathProp = new JsonObject();
+        dirPathProp.addProperty("type", "string");
+        dirPathProp.addProperty("description", "Path to the root directory to analyze");
+        dirProps.add("directory_path", dirPathProp);
+
+        JsonObject includeProp = new JsonObject();
+        includeProp.addProperty("type", "array");
+        JsonObject globItems = new JsonObject();
+        globItems.addProperty("type", "string");
+        includeProp.add("items", globItems);
+        includeProp.addProperty("description",
+            "Glob patterns relative to the root that files must match, e.g. '**/*.java' (optional)");
+        dirProps.add("include", includeProp);
+
+        JsonObject excludeProp = new JsonObject();
+        excludeProp.addProperty("type", "array");
+        excludeProp.add("items", globItems);
+        excludeProp.addProperty("description",
+            "Glob patterns relative to the root that exclude files and directories, e.g. 'build/**' (optional)");
+        dirProps.add("exclude", excludeProp);
+
+        JsonObject gitignoreProp = new JsonObject();
+        gitignoreProp.addProperty("type", "boolean");
+        gitignoreProp.addProperty("description", "Honour .gitignore files (default: true)");
+        dirProps.add("respect_gitignore", gitignoreProp);
+
+        dirProps.add("mode", createModeProperty());
+        dirProps.add("timeout_ms", createTimeoutProperty());
+        dirProps.add("partial_results", createPartialResultsProperty());
+
+        dirSchema.add("properties", dirProps);
+
+        JsonArray dirRequired = new JsonArray();
+        dirRequired.add("directory_path");
+        dirSchema.add("required", dirRequired);
+
+        analyzeDirTool.add("inputSchema", dirSchema);
+        tools.add(analyzeDirTool);
+
+        // Tool 4: find_hotspots - Rank the most complex functions of a directory tree
+        JsonObject hotspotsTool = new JsonObject();
+        hotspotsTool.addProperty("name", "find_hotspots");
+        hotspotsTool.addProperty("description",
+            "Finds the most complex functions below a directory in parallel and returns them ranked by " +
+            "complexity with their files. Memory use depends only on the number of requested hotspots.");
+
+        JsonObject hotspotsSchema = new JsonObject();
+        hotspotsSchema.addProperty("type", "object");
+
+        JsonObject hotspotsProps = new JsonObject();
+        hotspotsProps.add("directory_path", dirPathProp);
+
+        JsonObject hotspotLimitProp = new JsonObject();
+        hotspotLimitProp.addProperty("type", "integer");
+        hotspotLimitProp.addProperty("description",
+            "Number of functions to return (optional, default " + DEFAULT_HOTSPOT_LIMIT + ")");
+        hotspotsProps.add("limit", hotspotLimitProp);
+
+        JsonObject hotspotMinProp = new JsonObject();
+        hotspotMinProp.addProperty("type", "integer");
+        hotspotMinProp.addProperty("description",
+            "Ignore functions with a lower complexity (optional)");
+        hotspotsProps.add("min_complexity", hotspotMinProp);
+
+        hotspotsProps.add("include", includeProp);
+        hotspotsProps.add("exclude", excludeProp);
+        hotspotsProps.add("respect_gitignore", gitignoreProp);
+        hotspotsProps.add("mode", createModeProperty());
+        hotspotsProps.add("timeout_ms", createTimeoutProperty());
+        hotspotsProps.add("partial_results", createPartialResultsProperty());
+
+        hotspotsSchema.add("properties", hotspotsProps);
+
+        JsonArray hotspotsRequired = new JsonArray();
+        hotspotsRequired.add("directory_path");
+        hotspotsSchema.add("required", hotspotsRequired);
+
+        hotspotsTool.add("inputSchema", hotspotsSchema);
+        tools.add(hotspotsTool);
+
+        // Tool 5: watch_workspace - Index a directory tree and keep the index up to date
+        JsonObject watchTool = new JsonObject();
+        watchTool.addProperty("name", "watch_workspace");
+        watchTool.addProperty("description",
+            "Analyzes all supported source files below a directory once and then watches it for changes, " +
+            "re-analyzing only modified files. Use query_workspace to query the index.");
+
+        JsonObject watchSchema = new JsonObject();
+        watchSchema.addProperty("type", "object");
+
+        JsonObject watchProps = new JsonObject();
+
+        JsonObject watchPathProp = new JsonObject();
+        watchPathProp.addProperty("type", "string");
+        watchPathProp.addProperty("description", "Path to the root directory to watch");
+        watchProps.add("directory_path", watchPathProp);
+        watchProps.add("include", includeProp);
+        watchProps.add("exclude", excludeProp);
+        watchProps.add("respect_gitignore", gitignoreProp);
+
+        watchSchema.add("properties", watchProps);
+
+        JsonArray watchRequired = new JsonArray();
+        watchRequired.add("directory_path");
+        watchSchema.add("required", watchRequired);
+
+        watchTool.add("inputSchema", watchSchema);
+        tools.add(watchTool);
+
+        // Tool 6: query_workspace - Answer queries from the watched workspaces
+        JsonObject queryTool = new JsonObject();
+        queryTool.addProperty("name", "query_workspace");
+        queryTool.addProperty("description",
+            "Answers complexity queries from the index of the watched workspaces without re-analyzing: " +
+            "the complexity of one file, or all functions with at least a given complexity.");
+
+        JsonObject querySchema = new JsonObject();
+        querySchema.addProperty("type", "object");
+
+        JsonObject queryProps = new JsonObject();
+
+        JsonObject queryFileProp = new JsonObject();
+        queryFileProp.addProperty("type", "string");
+        queryFileProp.addProperty("description", "Path to a file in a watched workspace (optional)");
+        queryProps.add("file_path", queryFileProp);
+
+        JsonObject minComplexityProp = new JsonObject();
+        minComplexityProp.addProperty("type", "integer");
+        minComplexityProp.addProperty("description",
+            "List all functions with at least this complexity (optional, default 11)");
+        queryProps.add("min_complexity", minComplexityProp);
+
+        JsonObject limitProp = new JsonObject();
+        limitProp.addProperty("type", "integer");
+        limitProp.addProperty("description",
+            "Maximum number of functions to list (optional, default " + DEFAULT_QUERY_LIMIT + ")");
+        queryProps.add("limit", limitProp);
+
+        querySchema.add("properties", queryProps);
+
+        queryTool.add("inputSchema", querySchema);
+        tools.add(queryTool);
+
+        // Tool 7: analyze_changes - Update an incremental analysis after an edit
+        JsonObject changesTool = new JsonObject();
+        changesTool.addProperty("name", "analyze_changes");
+        changesTool.addProperty("description",
+            "Updates an analysis started with 'incremental: true' after the source was edited. Only the " +
+            "functions touched by the changed lines are analyzed again; the file is analyzed completely " +
+            "when an edit cannot be isolated. The result handle then refers to the new version.");
+
+        JsonObject changesSchema = new JsonObject();
+        changesSchema.addProperty("type", "object");
+
+        JsonObject changesProps = new JsonObject();
+
+        JsonObject handleProp = new JsonObject();
+        handleProp.addProperty("type", "string");
+        handleProp.addProperty("description", "Result handle returned by the previous analysis");
+        changesProps.add("handle", handleProp);
+
+        JsonObject newSourceProp = new JsonObject();
+        newSourceProp.addProperty("type", "string");
+        newSourceProp.addProperty("description",
+            "Complete edited source code (optional for file handles, which re-read the file)");
+        changesProps.add("source_code", newSourceProp);
+
+        JsonObject diffProp = new JsonObject();
+        diffProp.addProperty("type", "string");
+        diffProp.addProperty("description", "Unified diff from the previous version to the edited one");
+        changesProps.add("diff", diffProp);
+
+        JsonObject lineChangesProp = new JsonObject();
+        lineChangesProp.addProperty("type", "array");
+        JsonObject lineChangeItem = new JsonObject();
+        lineChangeItem.addProperty("type", "object");
+        JsonObject lineChangeProps = new JsonObject();
+        JsonObject startLineProp = new JsonObject();
+        startLineProp.addProperty("type", "integer");
+        startLineProp.addProperty("description",
+            "First replaced line of the previous version (1-based); for pure insertions the line they precede");
+        lineChangeProps.add("start_line", startLineProp);
+        JsonObject oldLineCountProp = new JsonObject();
+        oldLineCountProp.addProperty("type", "integer");
+        oldLineCountProp.addProperty("description", "Number of lines removed");
+        lineChangeProps.add("old_line_count", oldLineCountProp);
+        JsonObject newLineCountProp = new JsonObject();
+        newLineCountProp.addProperty("type", "integer");
+        newLineCountProp.addProperty("description", "Number of lines inserted in their place");
+        lineChangeProps.add("new_line_count", newLineCountProp);
+        lineChangeItem.add("properties", lineChangeProps);
+        lineChangesProp.add("items", lineChangeItem);
+        lineChangesProp.addProperty("description",
+            "Changed line ranges, as an alternative to diff (optional)");
+        changesProps.add("changes", lineChangesProp);
+
+        changesProps.add("timeout_ms", createTimeoutProperty());
+
+        changesSchema.add("properties", changesProps);
+
+        JsonArray changesRequired = new JsonArray();
+        changesRequired.add("handle");
+        changesSchema.add("required", changesRequired);
+
+        changesTool.add("inputSchema", changesSchema);
+        tools.add(changesTool);
+
+        // Tool 8: server_stats - Report scheduler statistics
+        JsonObject statsTool = new JsonObject();
+        statsTool.addProperty("name", "server_stats");
+        statsTool.addProperty("description",
+            "Reports server statistics: per-lane queue depth, wait times and rejected requests.");
+
+        JsonObject statsSchema = new JsonObject();
+        statsSchema.addProperty("type", "object");
+        statsSchema.add("properties", new JsonObject());
+
+        statsTool.add("inputSchema", statsSchema);
+        tools.add(statsTool);
+
         JsonObject result = new JsonObject();
         result.add("tools", tools);
+        return result;
+    }
 
-        response.add("result", result);
-        return response;
+    private static JsonObject createModeProperty() {
+        JsonObject modeProp = new JsonObject();
+        modeProp.addProperty("type", "string");
+        JsonArray modes = new JsonArray();
+        modes.add("full");
+        modes.add("fast");
+        modeProp.add("enum", modes);
+        modeProp.addProperty("description",
+            "'full' parses Java into a syntax tree; 'fast' only tokenizes it, which is much faster on large " +
+            "codebases and matches 'full' on well-formed code (optional, default 'full')");
+        return modeProp;
+    }
+
+    private static JsonObject createIncrementalProperty() {
+        JsonObject incrementalProp = new JsonObject();
+        incrementalProp.addProperty("type", "boolean");
+        incrementalProp.addProperty("description",
+            "Keep the analysis and return a result handle for analyze_changes (optional, default false)");
+        return incrementalProp;
+    }
+
+    private static JsonObject createTimeoutProperty() {
+        JsonObject timeoutProp = new JsonObject();
+        timeoutProp.addProperty("type", "integer");
+        timeoutProp.addProperty("description",
+            "Maximum analysis time in milliseconds; when exceeded, a partial result with the " +
+            "functions completed so far is returned (optional)");
+        return timeoutProp;
+    }
+
+    private static JsonObject createOutputProperty() {
+        JsonObject outputProp = new JsonObject();
+        outputProp.addProperty("type", "string");
+        JsonArray outputs = new JsonArray();
+        outputs.add("text");
+        outputs.add("json");
+        outputProp.add("enum", outputs);
+        outputProp.addProperty("description",
+            "'text' returns a readable summary; 'json' returns structuredContent with file, language, " +
+            "totals and the functions by descending complexity (optional, default 'text')");
+        return outputProp;
     }
 
-    private JsonObject handleToolsCall(JsonObject request, JsonElement id) {
+    private static JsonObject createPartialResultsProperty() {
+        JsonObject partialProp = new JsonObject();
+        partialProp.addProperty("type", "boolean");
+        partialProp.addProperty("description",
+            "With a progressToken in _meta, list the functions completed so far in the progress " +
+            "notifications under _meta.partialResults (optional, default false)");
+        return partialProp;
+    }
+
+    private JsonRpcMessage handleToolsCall(JsonObject request, JsonElement id) {
+        String requestKey = id != null ? id.toString() : null;
+        AnalysisContext registered = requestKey != null ? activeRequests.get(requestKey) : null;
+        AnalysisContext context = registered != null ? registered : createContext(request);
+        try {
+            JsonRpcMessage response = callTool(request, id, context);
+            if (response != null && context.getProgressListener() instanceof ProgressReporter reporter) {
+                reporter.flush();
+            }
+            return response;
+        } finally {
+            if (registered != null) {
+                activeRequests.remove(requestKey, registered);
+            }
+        }
+    }
+
+    private JsonRpcMessage callTool(JsonObject request, JsonElement id, AnalysisContext context) {
         JsonObject params = request.getAsJsonObject("params");
         String toolName = params.get("name").getAsString();
         JsonObject arguments = params.getAsJsonObject("arguments");
+        boolean json = isJsonOutput(arguments);
 
         logger.debug("Tool call: {}", toolName);
 
         try {
+            if (json) {
+                return new StructuredToolResponse(id, analyzeForJson(toolName, arguments, context));
+            }
+
             String resultText;
             if ("analyze_complexity".equals(toolName)) {
-                resultText = handleAnalyzeFile(arguments);
+                resultText = handleAnalyzeFile(arguments, context);
             } else if ("analyze_complexity_code".equals(toolName)) {
-                resultText = handleAnalyzeCode(arguments);
+                resultText = handleAnalyzeCode(arguments, context);
+            } else if ("analyze_directory".equals(toolName)) {
+                resultText = handleAnalyzeDirectory(arguments, context);
+            } else if ("find_hotspots".equals(toolName)) {
+                resultText = handleFindHotspots(arguments, context);
+            } else if ("analyze_changes".equals(toolName)) {
+                resultText = handleAnalyzeChanges(arguments, context);
+            } else if ("watch_workspace".equals(toolName)) {
+                resultText = handleWatchWorkspace(arguments);
+            } else if ("query_workspace".equals(toolName)) {
+                resultText = handleQueryWorkspace(arguments);
+            } else if ("server_stats".equals(toolName)) {
+                resultText = handleServerStats();
             } else {
-                return createErrorResponse(id, -32602, "Unknown tool: " + toolName);
+                return JsonRpcMessage.of(createErrorResponse(id, -32602, "Unknown tool: " + toolName));
+            }
+
+            return JsonRpcMessage.of(createToolResponse(id, resultText));
+
+        } catch (AnalysisAbortedException e) {
+            if (e.isCancelled()) {
+                // The client abandoned the request, no response is expected
+                logger.info("Tool call {} cancelled", id);
+                return null;
             }
+            logger.info("Tool call {} timed out", id);
+            return json ? new StructuredToolResponse(id, e.getPartialResult()) :
+                JsonRpcMessage.of(createToolResponse(id, e.getPartialResult().getSummary()));
+        } catch (Exception e) {
+            logger.error("Error executing tool", e);
+            return JsonRpcMessage.of(createErrorResponse(id, -32603, "Tool execution error: " + e.getMessage()));
+        }
+    }
 
-            JsonObject response = new JsonObject();
-            response.add("jsonrpc", new JsonPrimitive("2.0"));
-            response.add("id", id);
+    private static boolean isJsonOutput(JsonObject arguments) {
+        return arguments != null && arguments.has("output") &&
+            "json".equalsIgnoreCase(arguments.get("output").getAsString());
+    }
 
-            JsonObject result = new JsonObject();
-            JsonArray content = new JsonArray();
+    /**
+     * Runs a single-file analysis tool for structured output.
+     */
+    private ComplexityResult analyzeForJson(String toolName, JsonObject arguments, AnalysisContext context)
+            throws IOException {
+        if (isIncremental(arguments)) {
+            throw new IllegalArgumentException("JSON output is not supported for incremental analysis");
+        }
+        switch (toolName) {
+            case "analyze_complexity":
+                return analyzeFileArguments(arguments, context);
+            case "analyze_complexity_code":
+                return analyzeCodeArguments(arguments, context);
+            default:
+                throw new IllegalArgumentException("JSON output is not supported by " + toolName);
+        }
+    }
 
-            JsonObject textContent = new JsonObject();
-            textContent.addProperty("type", "text");
-            textContent.addProperty("text", resultText);
+    private JsonObject createToolResponse(JsonElement id, String resultText) {
+        JsonObject response = new JsonObject();
+        response.add("jsonrpc", new JsonPrimitive("2.0"));
+        response.add("id", id);
 
-            content.add(textContent);
-            result.add("content", content);
+        JsonObject result = new JsonObject();
+        JsonArray content = new JsonArray();
 
-            response.add("result", result);
-            return response;
+        JsonObject textContent = new JsonObject();
+        textContent.addProperty("type", "text");
+        textContent.addProperty("text", resultText);
 
-        } catch (Exception e) {
-            logger.error("Error executing tool", e);
-            return createErrorResponse(id, -32603, "Tool execution error: " + e.getMessage());
+        content.add(textContent);
+        result.add("content", content);
+
+        response.add("result", result);
+        return response;
+    }
+
+    /**
+     * Handles notifications/cancelled by stopping the referenced request at its next checkpoint.
+     */
+    private void handleCancelled(JsonObject notification) {
+        JsonObject params = notification.getAsJsonObject("params");
+        if (params == null || !params.has("requestId")) {
+            return;
+        }
+        AnalysisContext context = activeRequests.get(params.get("requestId").toString());
+        if (context != null) {
+            logger.debug("Cancelling request {}", params.get("requestId"));
+            context.cancel();
         }
     }
 
-    private String handleAnalyzeFile(JsonObject arguments) throws IOException {
+    private String handleAnalyzeFile(JsonObject arguments, AnalysisContext context) throws IOException {
+        if (!isIncremental(arguments)) {
+            return analyzeFileArguments(arguments, context).getSummary();
+        }
+        if (isFastMode(arguments)) {
+            throw new IllegalArgumentException("Incremental analysis is not supported in fast mode");
+        }
         String filePath = arguments.get("file_path").getAsString();
-        String language = null;
+        String language = language(arguments);
+        SourceFile source = SourceFile.read(Paths.get(filePath), charset(arguments));
+        if (language == null || language.isEmpty()) {
+            language = detectLanguage(filePath, source.getText());
+        }
+        return startIncrementalAnalysis(incrementalCalculator(language), source.getText(), filePath, filePath,
+            source.getCharset(), context);
+    }
+
+    private ComplexityResult analyzeFileArguments(JsonObject arguments, AnalysisContext context) throws IOException {
+        return analyzeFile(arguments.get("file_path").getAsString(), language(arguments), isFastMode(arguments),
+            charset(arguments), context);
+    }
+
+    /**
+     * The language argument in lower case, or null to detect it.
+     */
+    private static String language(JsonObject arguments) {
+        return arguments.has("language") ? arguments.get("language").getAsString().toLowerCase() : null;
+    }
 
-        if (arguments.has("language")) {
-            language = arguments.get("language").getAsString().toLowerCase();
+    /**
+     * The charset requested by the encoding argument, or null to detect it.
+     */
+    private static Charset charset(JsonObject arguments) {
+        if (!arguments.has("encoding")) {
+            return null;
+        }
+        String name = arguments.get("encoding").getAsString();
+        if (!Charset.isSupported(name)) {
+            throw new IllegalArgumentException("Unsupported encoding: " + name);
         }
+        return Charset.forName(name);
+    }
+
+    /**
+     * Analyzes a file. Unchanged files are answered from the result cache, and
+     * concurrent requests for the same file version share one computation.
+     */
+    private ComplexityResult analyzeFile(String filePath, String language, boolean fast, AnalysisContext context)
+            throws IOException {
+        return analyzeFile(filePath, language, fast, null, context);
+    }
+
+    /**
+     * @param charset the charset of the file, or null to detect it
+     */
+    private ComplexityResult analyzeFile(String filePath, String language, boolean fast, Charset charset,
+                                         AnalysisContext context) throws IOException {
+        FileKey key = fileKey(filePath, language, fast, charset);
+        ComplexityResult cached = resultCache.get(key);
+        if (cached != null) {
+            return cached.withFileName(filePath);
+        }
+        if (snapshot != null) {
+            ComplexityResult stored = snapshot.get(key);
+            if (stored != null) {
+                resultCache.put(key, stored);
+                return stored.withFileName(filePath);
+            }
+        }
+
+        while (true) {
+            try {
+                ComplexityResult result = inFlightAnalyses.execute(key,
+                    () -> computeAndCacheFile(key, filePath, language, fast, charset, context),
+                    () -> context.checkpoint(filePath, language != null ? language : "unknown", Map.of()));
+                return result.withFileName(filePath);
+            } catch (AnalysisAbortedException e) {
+                if (context.shouldStop()) {
+                    throw e;
+                }
+                // The request that owned the shared computation was cancelled, run it ourselves
+                logger.debug("Shared analysis of {} was aborted by its owner, retrying", filePath);
+            }
+        }
+    }
+
+    /**
+     * Analyzes a file like {@link #analyzeFile}, answering from the caches where possible, but
+     * neither stores its result in the result cache, the snapshot or the persistent cache, nor
+     * makes a result cache entry more recently used. Used by scans whose results are only needed
+     * for a moment, so that they do not fill the caches with every file of a tree. A hit in the
+     * persistent cache refreshes the age of that entry, as every read of it does.
+     */
+    private ComplexityResult analyzeFileUncached(String filePath, boolean fast, AnalysisContext context)
+            throws IOException {
+        FileKey key = fileKey(filePath, null, fast, null);
+        ComplexityResult cached = resultCache.peek(key);
+        if (cached == null && snapshot != null) {
+            cached = snapshot.get(key);
+        }
+        if (cached != null) {
+            return cached.withFileName(filePath);
+        }
+        return computeFile(filePath, null, fast, null, false, context);
+    }
+
+    private static FileKey fileKey(String filePath, String language, boolean fast, Charset charset)
+            throws IOException {
+        // Fast results are approximations and must not be served to full requests
+        String keyLanguage = fast ? "fast:" + (language != null ? language : "") : language;
+        if (charset != null) {
+            // An explicit charset may decode differently than the detected one
+            keyLanguage = (keyLanguage != null ? keyLanguage : "") + "@" + charset.name();
+        }
+        return FileKey.of(Paths.get(filePath), keyLanguage);
+    }
+
+    private ComplexityResult computeAndCacheFile(FileKey key, String filePath, String language, boolean fast,
+                                                 Charset charset, AnalysisContext context) throws IOException {
+        ComplexityResult result = computeFile(filePath, language, fast, charset, true, context);
+        resultCache.put(key, result);
+        if (snapshot != null && !result.isPartial()) {
+            snapshotUpdates.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param store whether a computed result is added to the persistent cache
+     */
+    private ComplexityResult computeFile(String filePath, String language, boolean fast, Charset charset,
+                                         boolean store, AnalysisContext context) throws IOException {
+        Path path = Paths.get(filePath);
+        if (Files.size(path) > STREAM_THRESHOLD_BYTES) {
+            return computeFileStreaming(path, filePath, language, fast, charset, store, context);
+        }
+
+        // Read once; language detection, cache key and analysis share the content
+        SourceFile source = SourceFile.read(path, charset);
 
         // Auto-detect language from extension if not provided
         if (language == null || language.isEmpty()) {
-            language = detectLanguage(filePath);
+            language = detectLanguage(filePath, source.getText());
         }
 
-        ComplexityCalculator calculator = calculators.get(language);
+        ComplexityCalculator calculator = calculator(language, fast);
+
+        String diskKey = null;
+        if (diskCache != null) {
+            diskKey = DiskResultCache.key(source.getText(), calculator);
+            ComplexityResult stored = diskCache.get(diskKey, filePath);
+            if (stored != null) {
+                return stored;
+            }
+        }
+
+        ComplexityResult result = calculator.calculate(source.getText(), filePath, context);
+        if (diskKey != null && store) {
+            diskCache.put(diskKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Analyzes a file without holding its text in memory. Language detection reads a prefix of
+     * the file, and the persistent cache key takes a pass of its own, so the file may be read twice.
+     */
+    private ComplexityResult computeFileStreaming(Path path, String filePath, String language, boolean fast,
+                                                  Charset charset, boolean store, AnalysisContext context)
+            throws IOException {
+        if (language == null || language.isEmpty()) {
+            language = detectLanguage(filePath, SourceFile.readPrefix(path, charset, ASM_DETECT_PREFIX_CHARS));
+        }
+
+        ComplexityCalculator calculator = calculator(language, fast);
+
+        String diskKey = null;
+        if (diskCache != null) {
+            try (Reader reader = SourceFile.open(path, charset)) {
+                diskKey = DiskResultCache.key(reader, calculator);
+            }
+            ComplexityResult stored = diskCache.get(diskKey, filePath);
+            if (stored != null) {
+                return stored;
+            }
+        }
+
+        ComplexityResult result;
+        try (Reader reader = SourceFile.open(path, charset)) {
+            result = calculator.calculate(reader, filePath, context);
+        }
+        if (diskKey != null && store) {
+            diskCache.put(diskKey, result);
+        }
+        return result;
+    }
+
+    private String handleAnalyzeCode(JsonObject arguments, AnalysisContext context) throws IOException {
+        if (!isIncremental(arguments)) {
+            return analyzeCodeArguments(arguments, context).getSummary();
+        }
+        if (isFastMode(arguments)) {
+            throw new IllegalArgumentException("Incremental analysis is not supported in fast mode");
+        }
+        return startIncrementalAnalysis(incrementalCalculator(language(arguments)),
+            arguments.get("source_code").getAsString(), codeFileName(arguments), null, null, context);
+    }
+
+    private ComplexityResult analyzeCodeArguments(JsonObject arguments, AnalysisContext context) throws IOException {
+        String sourceCode = arguments.get("source_code").getAsString();
+        String fileName = codeFileName(arguments);
+        ComplexityCalculator calculator = calculator(language(arguments), isFastMode(arguments));
+
+        String diskKey = null;
+        if (diskCache != null) {
+            diskKey = DiskResultCache.key(sourceCode, calculator);
+            ComplexityResult stored = diskCache.get(diskKey, fileName);
+            if (stored != null) {
+                return stored;
+            }
+        }
+
+        ComplexityResult result = calculator.calculate(sourceCode, fileName, context);
+        if (diskKey != null) {
+            diskCache.put(diskKey, result);
+        }
+        return result;
+    }
+
+    private static String codeFileName(JsonObject arguments) {
+        return arguments.has("file_name") ? arguments.get("file_name").getAsString() : "inline_code";
+    }
+
+    private ComplexityCalculator calculator(String language, boolean fast) {
+        ComplexityCalculator calculator = fast && fastCalculators.containsKey(language) ?
+            fastCalculators.get(language) : calculators.get(language);
         if (calculator == null) {
             throw new IllegalArgumentException("Unsupported language: " + language +
                 ". Supported languages: " + calculators.keySet());
         }
+        return calculator;
+    }
 
-        String sourceCode = new String(Files.readAllBytes(Paths.get(filePath)));
-        ComplexityResult result = calculator.calculate(sourceCode, filePath);
-
-        return result.getSummary();
+    private static boolean isFastMode(JsonObject arguments) {
+        String mode = arguments.has("mode") ? arguments.get("mode").getAsString() : "full";
+        if (!mode.equals("full") && !mode.equals("fast")) {
+            throw new IllegalArgumentException("Unknown mode: " + mode + ". Supported modes: full, fast");
+        }
+        return mode.equals("fast");
     }
 
-    private String handleAnalyzeCode(JsonObject arguments) throws IOException {
-        String sourceCode = arguments.get("source_code").getAsString();
-        String language = arguments.get("language").getAsString().toLowerCase();
-        String fileName = arguments.has("file_name") ?
-            arguments.get("file_name").getAsString() : "inline_code";
+    private static boolean isIncremental(JsonObject arguments) {
+        return arguments.has("incremental") && arguments.get("incremental").getAsBoolean();
+    }
 
+    private IncrementalComplexityCalculator incrementalCalculator(String language) {
         ComplexityCalculator calculator = calculators.get(language);
         if (calculator == null) {
             throw new IllegalArgumentException("Unsupported language: " + language +
                 ". Supported languages: " + calculators.keySet());
         }
+        if (!(calculator instanceof IncrementalComplexityCalculator)) {
+            throw new IllegalArgumentException("Incremental analysis is not supported for language: " + language);
+        }
+        return (IncrementalComplexityCalculator) calculator;
+    }
 
-        ComplexityResult result = calculator.calculate(sourceCode, fileName);
-        return result.getSummary();
+    /**
+     * Analyzes a complete source and keeps the analysis for analyze_changes under a new handle.
+     */
+    private String startIncrementalAnalysis(IncrementalComplexityCalculator calculator, String sourceCode,
+                                            String fileName, String filePath, Charset charset,
+                                            AnalysisContext context) throws IOException {
+        IncrementalAnalysis analysis = IncrementalAnalysis.analyze(calculator, sourceCode, fileName, context);
+        String handle = "h" + handleCounter.incrementAndGet();
+        incrementalHandles.put(handle, new IncrementalHandle(analysis, filePath, charset));
+        return analysis.getResult().getSummary() + String.format("%nResult Handle: %s%n", handle);
     }
 
-    private String detectLanguage(String filePath) throws IOException {
-        String lower = filePath.toLowerCase();
-        if (lower.endsWith(".java")) {
-            return "java";
-        } else if (lower.endsWith(".asm") || lower.endsWith(".s")) {
-            // Ambiguous extension - need to analyze content
-            String sourceCode = new String(Files.readAllBytes(Paths.get(filePath)));
-            return detectAssemblerType(sourceCode);
-        } else if (lower.endsWith(".a65") || lower.endsWith(".s65") ||
-                   lower.endsWith(".asm65") || lower.endsWith(".a")) {
-            return "6502";
+    private String handleAnalyzeChanges(JsonObject arguments, AnalysisContext context) throws IOException {
+        String handle = arguments.get("handle").getAsString();
+        IncrementalHandle previous = incrementalHandles.get(handle);
+        if (previous == null) {
+            throw new IllegalArgumentException("Unknown or expired result handle: " + handle);
+        }
+
+        String sourceCode;
+        if (arguments.has("source_code")) {
+            sourceCode = arguments.get("source_code").getAsString();
+        } else if (previous.filePath != null) {
+            sourceCode = SourceFile.read(Paths.get(previous.filePath), previous.charset).getText();
+        } else {
+            throw new IllegalArgumentException("source_code is required for handles of inline code");
         }
-        throw new IllegalArgumentException("Cannot detect language from file extension: " + filePath);
-    }
 
-    // Precompiled regex patterns for assembler detection (performance optimization)
-    private static final int DIRECTIVE_WEIGHT = 2;
-
-    // 6502-specific instructions (that don't exist in x86)
-    private static final Pattern[] PATTERNS_6502_INSTR = {
-        Pattern.compile("\\bLDA\\b"), Pattern.compile("\\bLDX\\b"), Pattern.compile("\\bLDY\\b"),
-        Pattern.compile("\\bSTA\\b"), Pattern.compile("\\bSTX\\b"), Pattern.compile("\\bSTY\\b"),
-        Pattern.compile("\\bINX\\b"), Pattern.compile("\\bINY\\b"), Pattern.compile("\\bDEX\\b"),
-        Pattern.compile("\\bDEY\\b"), Pattern.compile("\\bBEQ\\b"), Pattern.compile("\\bBNE\\b"),
-        Pattern.compile("\\bBCC\\b"), Pattern.compile("\\bBCS\\b"), Pattern.compile("\\bBPL\\b"),
-        Pattern.compile("\\bBMI\\b"), Pattern.compile("\\bBVC\\b"), Pattern.compile("\\bBVS\\b"),
-        Pattern.compile("\\bPHA\\b"), Pattern.compile("\\bPLA\\b"), Pattern.compile("\\bPHP\\b"),
-        Pattern.compile("\\bPLP\\b"), Pattern.compile("\\bSEC\\b"), Pattern.compile("\\bCLC\\b"),
-        Pattern.compile("\\bSED\\b"), Pattern.compile("\\bCLD\\b"), Pattern.compile("\\bSEI\\b"),
-        Pattern.compile("\\bCLI\\b"), Pattern.compile("\\bCLV\\b"), Pattern.compile("\\bADC\\b"),
-        Pattern.compile("\\bSBC\\b"), Pattern.compile("\\bCMP\\b"), Pattern.compile("\\bCPX\\b"),
-        Pattern.compile("\\bCPY\\b"), Pattern.compile("\\bRTS\\b"), Pattern.compile("\\bRTI\\b"),
-        Pattern.compile("\\bJSR\\b")
-    };
-
-    // 6502-specific directives
-    private static final Pattern[] PATTERNS_6502_DIRECTIVES = {
-        Pattern.compile("\\bPROCESSOR\\s+6502\\b"), Pattern.compile("\\.PROC\\b"),
-        Pattern.compile("\\.ENDPROC\\b"), Pattern.compile("\\bSUBROUTINE\\b"),
-        Pattern.compile("\\b!ZONE\\b"), Pattern.compile("\\b!ADDR\\b")
-    };
-
-    // x86-specific instructions (that don't exist in 6502)
-    private static final Pattern[] PATTERNS_X86_INSTR = {
-        Pattern.compile("\\bMOV\\b"), Pattern.compile("\\bPUSH\\b"), Pattern.compile("\\bPOP\\b"),
-        Pattern.compile("\\bCALL\\b"), Pattern.compile("\\bRET\\b"), Pattern.compile("\\bADD\\b"),
-        Pattern.compile("\\bSUB\\b"), Pattern.compile("\\bXOR\\b"), Pattern.compile("\\bAND\\b"),
-        Pattern.compile("\\bOR\\b"), Pattern.compile("\\bLEA\\b"), Pattern.compile("\\bJMP\\b"),
-        Pattern.compile("\\bJE\\b"), Pattern.compile("\\bJNE\\b"), Pattern.compile("\\bJZ\\b"),
-        Pattern.compile("\\bJG\\b"), Pattern.compile("\\bJL\\b"), Pattern.compile("\\bINC\\b"),
-        Pattern.compile("\\bDEC\\b"), Pattern.compile("\\bNOP\\b"), Pattern.compile("\\bINT\\b"),
-        Pattern.compile("\\bCMOV\\b"), Pattern.compile("\\bSETCC\\b"), Pattern.compile("\\bLOOP\\b")
-    };
-
-    // x86-specific directives and registers
-    private static final Pattern[] PATTERNS_X86_DIRECTIVES = {
-        Pattern.compile("\\bSECTION\\b"), Pattern.compile("\\bSEGMENT\\b"),
-        Pattern.compile("\\bGLOBAL\\b"), Pattern.compile("\\bEXTERN\\b"),
-        Pattern.compile("\\b\\[RBP\\b"), Pattern.compile("\\b\\[RSP\\b"),
-        Pattern.compile("\\b\\[ESP\\b"), Pattern.compile("\\b\\[EBP\\b"),
-        Pattern.compile("\\bRAX\\b"), Pattern.compile("\\bRBX\\b"),
-        Pattern.compile("\\bRCX\\b"), Pattern.compile("\\bRDX\\b"),
-        Pattern.compile("\\bEAX\\b"), Pattern.compile("\\bEBX\\b"),
-        Pattern.compile("\\bECX\\b"), Pattern.compile("\\bEDX\\b")
-    };
+        List<IncrementalAnalysis.LineChange> changes;
+        if (arguments.has("diff")) {
+            changes = IncrementalAnalysis.parseUnifiedDiff(arguments.get("diff").getAsString());
+        } else if (arguments.has("changes")) {
+            changes = parseLineChanges(arguments.getAsJsonArray("changes"));
+        } else {
+            throw new IllegalArgumentException("Either diff or changes is required");
+        }
+
+        IncrementalAnalysis updated = previous.analysis.update(sourceCode, changes, context);
+        incrementalHandles.put(handle, new IncrementalHandle(updated, previous.filePath, previous.charset));
+
+        StringBuilder sb = new StringBuilder(updated.getResult().getSummary());
+        if (updated.isIncremental()) {
+            sb.append(String.format("%nIncremental Update: re-analyzed %d of %d lines%n",
+                updated.getReanalyzedLines(), updated.getLineCount()));
+        } else {
+            sb.append(String.format("%nIncremental Update: full analysis of %d lines%n", updated.getLineCount()));
+        }
+        sb.append(String.format("Result Handle: %s%n", handle));
+        return sb.toString();
+    }
 
     /**
-     * Detects whether assembly code is 6502 or x86/x64 by analyzing content.
-     * Looks for architecture-specific instructions and directives.
+     * Converts 1-based line ranges of the previous version into line changes.
      */
-    private String detectAssemblerType(String sourceCode) {
-        String upperCode = sourceCode.toUpperCase();
+    private static List<IncrementalAnalysis.LineChange> parseLineChanges(JsonArray array) {
+        List<IncrementalAnalysis.LineChange> changes = new ArrayList<>();
+        for (JsonElement element : array) {
+            JsonObject change = element.getAsJsonObject();
+            int oldCount = change.has("old_line_count") ? change.get("old_line_count").getAsInt() : 0;
+            int newCount = change.has("new_line_count") ? change.get("new_line_count").getAsInt() : 0;
+            changes.add(new IncrementalAnalysis.LineChange(change.get("start_line").getAsInt() - 1, oldCount,
+                0, newCount));
+        }
+        changes.sort(Comparator.comparingInt(IncrementalAnalysis.LineChange::getOldStart));
+        int delta = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            IncrementalAnalysis.LineChange change = changes.get(i);
+            changes.set(i, new IncrementalAnalysis.LineChange(change.getOldStart(), change.getOldCount(),
+                change.getOldStart() + delta, change.getNewCount()));
+            delta += change.getNewCount() - change.getOldCount();
+        }
+        return changes;
+    }
 
-        // Count 6502-specific indicators
-        int score6502 = 0;
-        int scoreX86 = 0;
+    private String handleServerStats() {
+        StringBuilder sb = new StringBuilder(scheduler.getStatistics());
+        sb.append(String.format("%nFile Analyses:%n"));
+        sb.append(String.format("  executed %d, coalesced with an in-flight analysis %d%n",
+            inFlightAnalyses.getExecutedCount(), inFlightAnalyses.getSharedCount()));
+        sb.append(String.format("  result cache: %s%n", resultCache.getStatistics()));
+        sb.append(String.format("  persistent cache: %s%n",
+            diskCache != null ? diskCache.getStatistics() : "disabled (set complexity.cache.dir)"));
+        sb.append(String.format("  workspace snapshot: %s%n",
+            snapshot != null ? snapshot.getStatistics() : "disabled (set complexity.snapshot.file)"));
+        if (!workspaces.isEmpty()) {
+            sb.append(String.format("%nWatched Workspaces:%n"));
+            workspaces.values().forEach(index -> sb.append(String.format("  %s%n", index.getStatistics())));
+        }
+        return sb.toString();
+    }
 
-        // Count matches for 6502 instructions
-        for (Pattern pattern : PATTERNS_6502_INSTR) {
-            if (pattern.matcher(upperCode).find()) {
-                score6502++;
+    private String handleAnalyzeDirectory(JsonObject arguments, AnalysisContext context) throws IOException {
+        Path root = Paths.get(arguments.get("directory_path").getAsString()).toAbsolutePath().normalize();
+        List<String> includes = getStringList(arguments, "include");
+        List<String> excludes = getStringList(arguments, "exclude");
+        boolean respectGitignore = !arguments.has("respect_gitignore") ||
+            arguments.get("respect_gitignore").getAsBoolean();
+        boolean fast = isFastMode(arguments);
+
+        DirectoryWalker walker = new DirectoryWalker(includes, excludes, respectGitignore,
+            path -> isSupportedFile(path.toString()));
+
+        Map<Path, ComplexityResult> results = new ConcurrentHashMap<>();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger skipped = new AtomicInteger();
+        long start = System.nanoTime();
+
+        walker.walk(root, file -> {
+            if (context.shouldStop()) {
+                skipped.incrementAndGet();
+                return;
+            }
+            try {
+                ComplexityResult result = analyzeFile(file.toString(), null, fast, context);
+                results.put(file, result);
+                context.fileCompleted(result);
+            } catch (AnalysisAbortedException e) {
+                skipped.incrementAndGet();
+            } catch (Exception e) {
+                logger.debug("Failed to analyze {}", file, e);
+                failures.add(root.relativize(file) + ": " + e.getMessage());
             }
+        });
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Analyzed {} files below {} in {} ms", results.size(), root, elapsedMillis);
+
+        if (context.isCancelled()) {
+            throw new AnalysisAbortedException(null, true);
+        }
+        return formatDirectorySummary(root, results, failures, skipped.get());
+    }
+
+    private String handleFindHotspots(JsonObject arguments, AnalysisContext context) throws IOException {
+        Path root = Paths.get(arguments.get("directory_path").getAsString()).toAbsolutePath().normalize();
+        int limit = arguments.has("limit") ? arguments.get("limit").getAsInt() : DEFAULT_HOTSPOT_LIMIT;
+        int minComplexity = arguments.has("min_complexity") ? arguments.get("min_complexity").getAsInt() : 1;
+        boolean respectGitignore = !arguments.has("respect_gitignore") ||
+            arguments.get("respect_gitignore").getAsBoolean();
+        boolean fast = isFastMode(arguments);
+
+        DirectoryWalker walker = new DirectoryWalker(getStringList(arguments, "include"),
+            getStringList(arguments, "exclude"), respectGitignore, path -> isSupportedFile(path.toString()));
+
+        // Each file's result goes straight into the bounded heap and is dropped afterwards;
+        // it is not cached, so memory use stays bounded by the limit however large the tree is
+        HotspotCollector collector = new HotspotCollector(limit, minComplexity);
+        AtomicInteger analyzed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+
+        walker.walk(root, file -> {
+            if (context.shouldStop()) {
+                skipped.incrementAndGet();
+                return;
+            }
+            try {
+                ComplexityResult result = analyzeFileUncached(file.toString(), fast, context);
+                collector.offer(file, result);
+                analyzed.incrementAndGet();
+                context.fileCompleted(result);
+            } catch (AnalysisAbortedException e) {
+                skipped.incrementAndGet();
+            } catch (Exception e) {
+                logger.debug("Failed to analyze {}", file, e);
+                failed.incrementAndGet();
+            }
+        });
+
+        if (context.isCancelled()) {
+            throw new AnalysisAbortedException(null, true);
+        }
+
+        List<HotspotCollector.Hotspot> hotspots = collector.getHotspots();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Directory: %s%n", root));
+        if (skipped.get() > 0) {
+            sb.append(String.format("Partial Result: analysis stopped early, %d files were not analyzed%n",
+                skipped.get()));
+        }
+        sb.append(String.format("Files Analyzed: %d%n", analyzed.get()));
+        if (failed.get() > 0) {
+            sb.append(String.format("Failed Files: %d%n", failed.get()));
+        }
+        sb.append(String.format("%nTop %d Hotspots:%n", hotspots.size()));
+        int rank = 1;
+        for (HotspotCollector.Hotspot hotspot : hotspots) {
+            String indicator = hotspot.getComplexity() > 10 ? " ⚠️" : "";
+            sb.append(String.format("  %d. %s: %d%s (%s)%n", rank++, hotspot.getFunction(),
+                hotspot.getComplexity(), indicator, root.relativize(hotspot.getFile())));
+        }
+        return sb.toString();
+    }
+
+    private String handleWatchWorkspace(JsonObject arguments) throws IOException {
+        Path root = Paths.get(arguments.get("directory_path").getAsString());
+        boolean respectGitignore = !arguments.has("respect_gitignore") ||
+            arguments.get("respect_gitignore").getAsBoolean();
+        WorkspaceIndex index = watchWorkspace(root, getStringList(arguments, "include"),
+            getStringList(arguments, "exclude"), respectGitignore);
+        return String.format("Watching %s%n", index.getStatistics());
+    }
+
+    /**
+     * Indexes and watches a directory tree, or returns the existing index of the root.
+     */
+    private WorkspaceIndex watchWorkspace(Path directory, List<String> includes, List<String> excludes,
+                                          boolean respectGitignore) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        DirectoryWalker walker = new DirectoryWalker(includes, excludes, respectGitignore,
+            path -> isSupportedFile(path.toString()));
+        WorkspaceIndex index = new WorkspaceIndex(root, walker,
+            file -> analyzeFile(file.toString(), null, false, new AnalysisContext()), WATCH_DEBOUNCE_MILLIS);
+        WorkspaceIndex existing = workspaces.putIfAbsent(root, index);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            index.start();
+        } catch (IOException | RuntimeException e) {
+            workspaces.remove(root, index);
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    private String handleQueryWorkspace(JsonObject arguments) {
+        if (workspaces.isEmpty()) {
+            throw new IllegalArgumentException("No workspace is watched, call watch_workspace first");
         }
 
-        // Count matches for 6502 directives (weighted higher)
-        for (Pattern pattern : PATTERNS_6502_DIRECTIVES) {
-            if (pattern.matcher(upperCode).find()) {
-                score6502 += DIRECTIVE_WEIGHT;
+        if (arguments.has("file_path")) {
+            Path file = Paths.get(arguments.get("file_path").getAsString()).toAbsolutePath().normalize();
+            for (WorkspaceIndex index : workspaces.values()) {
+                if (file.startsWith(index.getRoot())) {
+                    ComplexityResult result = index.getFile(file);
+                    if (result != null) {
+                        return result.getSummary();
+                    }
+                }
             }
+            throw new IllegalArgumentException("File is not part of a watched workspace: " + file);
         }
 
-        // Count matches for x86 instructions
-        for (Pattern pattern : PATTERNS_X86_INSTR) {
-            if (pattern.matcher(upperCode).find()) {
-                scoreX86++;
+        int minComplexity = arguments.has("min_complexity") ? arguments.get("min_complexity").getAsInt() : 11;
+        int limit = arguments.has("limit") ? arguments.get("limit").getAsInt() : DEFAULT_QUERY_LIMIT;
+        List<WorkspaceIndex.FunctionEntry> matches = new ArrayList<>();
+        for (WorkspaceIndex index : workspaces.values()) {
+            matches.addAll(index.getFunctionsAbove(minComplexity, limit));
+        }
+        matches.sort(Comparator.comparingInt(WorkspaceIndex.FunctionEntry::getComplexity).reversed()
+            .thenComparing(WorkspaceIndex.FunctionEntry::getFile));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Functions with complexity >= %d:%n", minComplexity));
+        matches.stream().limit(limit).forEach(entry -> {
+            String indicator = entry.getComplexity() > 10 ? " ⚠️" : "";
+            sb.append(String.format("  %s: %d%s (%s)%n",
+                entry.getFunction(), entry.getComplexity(), indicator, entry.getFile()));
+        });
+        if (matches.isEmpty()) {
+            sb.append(String.format("  none%n"));
+        }
+        return sb.toString();
+    }
+
+    private String formatDirectorySummary(Path root, Map<Path, ComplexityResult> results,
+                                          Collection<String> failures, int skipped) {
+        int totalFunctions = 0;
+        int totalComplexity = 0;
+        int maxComplexity = 0;
+        String mostComplex = "N/A";
+        for (Map.Entry<Path, ComplexityResult> entry : results.entrySet()) {
+            ComplexityResult result = entry.getValue();
+            totalFunctions += result.getFunctionComplexities().size();
+            totalComplexity += result.getTotalComplexity();
+            if (result.getMaxComplexity() > maxComplexity) {
+                maxComplexity = result.getMaxComplexity();
+                mostComplex = result.getMostComplexFunction() + " (" + root.relativize(entry.getKey()) + ")";
             }
         }
 
-        // Count matches for x86 directives (weighted higher)
-        for (Pattern pattern : PATTERNS_X86_DIRECTIVES) {
-            if (pattern.matcher(upperCode).find()) {
-                scoreX86 += DIRECTIVE_WEIGHT;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Directory: %s%n", root));
+        if (skipped > 0) {
+            sb.append(String.format("Partial Result: analysis stopped early, %d files were not analyzed%n", skipped));
+        }
+        sb.append(String.format("Files Analyzed: %d%n", results.size()));
+        sb.append(String.format("Total Functions: %d%n", totalFunctions));
+        sb.append(String.format("Total Complexity: %d%n", totalComplexity));
+        sb.append(String.format("Max Complexity: %d in %s%n", maxComplexity, mostComplex));
+
+        if (!failures.isEmpty()) {
+            sb.append(String.format("%nFailed Files: %d%n", failures.size()));
+            failures.stream().sorted().forEach(f -> sb.append(String.format("  %s%n", f)));
+        }
+
+        sb.append(String.format("%nFile Complexities:%n"));
+        results.entrySet().stream()
+            .sorted(Comparator.comparingInt((Map.Entry<Path, ComplexityResult> e) -> e.getValue().getMaxComplexity())
+                .reversed()
+                .thenComparing(Map.Entry::getKey))
+            .forEach(e -> {
+                ComplexityResult result = e.getValue();
+                String indicator = result.getMaxComplexity() > 10 ? " ⚠️" : "";
+                sb.append(String.format("  %s (%s): %d functions, total %d, max %d in %s%s%n",
+                    root.relativize(e.getKey()), result.getLanguage(),
+                    result.getFunctionComplexities().size(), result.getTotalComplexity(),
+                    result.getMaxComplexity(), result.getMostComplexFunction(), indicator));
+            });
+
+        return sb.toString();
+    }
+
+    private static List<String> getStringList(JsonObject arguments, String name) {
+        List<String> values = new ArrayList<>();
+        if (!arguments.has(name)) {
+            return values;
+        }
+        JsonElement element = arguments.get(name);
+        if (element.isJsonArray()) {
+            for (JsonElement item : element.getAsJsonArray()) {
+                values.add(item.getAsString());
             }
+        } else {
+            values.add(element.getAsString());
         }
+        return values;
+    }
+
+    private static boolean isSupportedFile(String filePath) {
+        String lower = filePath.toLowerCase();
+        return lower.endsWith(".java") || lower.endsWith(".asm") || lower.endsWith(".s") ||
+               lower.endsWith(".a65") || lower.endsWith(".s65") ||
+               lower.endsWith(".asm65") || lower.endsWith(".a");
+    }
+
+    private String detectLanguage(String filePath, String sourceCode) {
+        String lower = filePath.toLowerCase();
+        if (lower.endsWith(".java")) {
+            return "java";
+        } else if (lower.endsWith(".asm") || lower.endsWith(".s")) {
+            // Ambiguous extension - need to analyze content
+            return detectAssemblerType(sourceCode);
+        } else if (lower.endsWith(".a65") || lower.endsWith(".s65") ||
+                   lower.endsWith(".asm65") || lower.endsWith(".a")) {
+            return "6502";
+        }
+        throw new IllegalArgumentException("Cannot detect language from file extension: " + filePath);
+    }
+
+    /**
+     * Detects whether assembly code is 6502 or x86/x64 by analyzing content.
+     * Looks for architecture-specific instructions and directives.
+     */
+    private String detectAssemblerType(String sourceCode) {
+        AssemblerDialectDetector.Scores scores = dialectDetector.detect(sourceCode);
+        int score6502 = scores.getScore6502();
+        int scoreX86 = scores.getScoreX86();
 
         logger.info("Assembly detection scores - 6502: {}, x86: {}", score6502, scoreX86);
 
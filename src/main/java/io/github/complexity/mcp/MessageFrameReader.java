@@ -0,0 +1,133 @@
+package io.github.complexity.mcp;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Frames newline-delimited JSON-RPC messages on the input stream
+ *
+ * Each message is handed out as a reader of its own that ends at the line break, so a JSON
+ * parser can decode it incrementally without the line being read into a string first. The
+ * rest of a message that could not be parsed is skipped, and a message longer than the limit
+ * fails with an {@link IOException} as soon as the limit is passed, without being buffered.
+ */
+final class MessageFrameReader extends Reader {
+    private final Reader in;
+    private final long maxChars;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean inFrame; // the current message has not reached its line break yet
+    private long frameChars;
+    private boolean tooLarge;
+
+    /**
+     * @param maxChars maximum length of a message in characters
+     */
+    MessageFrameReader(Reader in, long maxChars) {
+        this.in = in;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Skips the rest of the current message and blank lines, and starts the next message.
+     *
+     * @return false at the end of the input
+     */
+    boolean nextFrame() throws IOException {
+        skipFrame();
+        while (true) {
+            if (position == limit && !fill()) {
+                return false;
+            }
+            char c = buffer[position];
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                break;
+            }
+            position++;
+        }
+        inFrame = true;
+        frameChars = 0;
+        tooLarge = false;
+        return true;
+    }
+
+    /**
+     * Returns whether the current message was rejected for exceeding the maximum length.
+     */
+    boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    long getMaxChars() {
+        return maxChars;
+    }
+
+    @Override
+    public int read(char[] target, int offset, int length) throws IOException {
+        if (!inFrame || length == 0) {
+            return inFrame ? 0 : -1;
+        }
+        if (position == limit && !fill()) {
+            inFrame = false;
+            return -1;
+        }
+        int end = Math.min(limit, position + length);
+        int lineBreak = indexOfLineBreak(position, end);
+        int count = (lineBreak >= 0 ? lineBreak : end) - position;
+        System.arraycopy(buffer, position, target, offset, count);
+        position += count;
+        if (lineBreak >= 0) {
+            position++;
+            inFrame = false;
+        }
+
+        frameChars += count;
+        if (frameChars > maxChars) {
+            tooLarge = true;
+            throw new IOException("Message exceeds " + maxChars + " characters");
+        }
+        return count == 0 && !inFrame ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void skipFrame() throws IOException {
+        while (inFrame) {
+            if (position == limit && !fill()) {
+                inFrame = false;
+                return;
+            }
+            int lineBreak = indexOfLineBreak(position, limit);
+            if (lineBreak >= 0) {
+                position = lineBreak + 1;
+                inFrame = false;
+            } else {
+                position = limit;
+            }
+        }
+    }
+
+    private int indexOfLineBreak(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
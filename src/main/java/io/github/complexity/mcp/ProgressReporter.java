@@ -0,0 +1,146 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import io.github.complexity.calculator.ComplexityResult;
+import io.github.complexity.calculator.ProgressListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends MCP progress notifications for a tool call that carries a progress token
+ *
+ * Progress comes from the checkpoints of the calculators and, in directory analyses, from every
+ * completed file, possibly on many threads at once. At most one notification is sent per interval,
+ * so that progress costs next to nothing between notifications. If the client asked for partial
+ * results, each notification also lists the functions completed since the previous one, per file;
+ * functions completed in between are collected and sent with the next notification or by
+ * {@link #flush()}. The final response remains the complete result.
+ */
+class ProgressReporter implements ProgressListener {
+
+    private final JsonElement progressToken;
+    private final boolean partialResults;
+    private final ResponseWriter writer;
+    private final long intervalNanos;
+    private final AtomicLong progress = new AtomicLong();
+    private final AtomicInteger filesCompleted = new AtomicInteger();
+    // Functions already listed, per file still being analyzed
+    private final Map<String, Map<String, Integer>> reported = new ConcurrentHashMap<>();
+    private volatile long nextNotificationNanos;
+    private JsonArray pending = new JsonArray(); // guarded by this
+    private String message = ""; // guarded by this
+    private long lastProgress; // guarded by this
+
+    /**
+     * @param partialResults whether notifications list the functions completed since the previous one
+     * @param intervalMillis minimum time between notifications
+     */
+    ProgressReporter(JsonElement progressToken, boolean partialResults, ResponseWriter writer, long intervalMillis) {
+        this.progressToken = progressToken;
+        this.partialResults = partialResults;
+        this.writer = writer;
+        this.intervalNanos = intervalMillis * 1_000_000;
+        this.nextNotificationNanos = System.nanoTime() + intervalNanos;
+    }
+
+    @Override
+    public void checkpoint(String fileName, String language, Map<String, Integer> completed) {
+        progress.incrementAndGet();
+        if (!isDue()) {
+            return;
+        }
+        synchronized (this) {
+            if (!isDue()) {
+                return;
+            }
+            if (partialResults) {
+                Map<String, Integer> seen = reported.computeIfAbsent(fileName, file -> new HashMap<>());
+                addBatch(fileName, language, completed, seen);
+                seen.putAll(completed);
+            }
+            message = String.format("%s: %d functions completed", fileName, completed.size());
+            send();
+        }
+    }
+
+    @Override
+    public void fileCompleted(ComplexityResult result) {
+        progress.incrementAndGet();
+        int files = filesCompleted.incrementAndGet();
+        Map<String, Integer> seen = reported.remove(result.getFileName());
+        if (!partialResults && !isDue()) {
+            return;
+        }
+        synchronized (this) {
+            if (partialResults) {
+                addBatch(result.getFileName(), result.getLanguage(), result.getFunctionComplexities(),
+                    seen != null ? seen : Map.of());
+            }
+            message = String.format("%d files analyzed", files);
+            if (isDue()) {
+                send();
+            }
+        }
+    }
+
+    /**
+     * Sends the functions collected since the last notification, if any. Called before the
+     * response so that no partial result arrives after it.
+     */
+    synchronized void flush() {
+        if (pending.size() > 0) {
+            send();
+        }
+    }
+
+    private boolean isDue() {
+        return System.nanoTime() - nextNotificationNanos >= 0;
+    }
+
+    // Adds the functions that are new or changed since they were last listed
+    private void addBatch(String fileName, String language, Map<String, Integer> completed,
+                          Map<String, Integer> seen) {
+        JsonObject functions = new JsonObject();
+        for (Map.Entry<String, Integer> function : completed.entrySet()) {
+            if (!function.getValue().equals(seen.get(function.getKey()))) {
+                functions.addProperty(function.getKey(), function.getValue());
+            }
+        }
+        if (functions.size() > 0) {
+            JsonObject batch = new JsonObject();
+            batch.addProperty("file", fileName);
+            batch.addProperty("language", language);
+            batch.add("functions", functions);
+            pending.add(batch);
+        }
+    }
+
+    private void send() {
+        // The protocol requires the progress to increase with every notification
+        lastProgress = Math.max(progress.get(), lastProgress + 1);
+        JsonObject params = new JsonObject();
+        params.add("progressToken", progressToken);
+        params.addProperty("progress", lastProgress);
+        params.addProperty("message", message);
+        if (pending.size() > 0) {
+            JsonObject meta = new JsonObject();
+            meta.add("partialResults", pending);
+            params.add("_meta", meta);
+            pending = new JsonArray();
+        }
+
+        JsonObject notification = new JsonObject();
+        notification.add("jsonrpc", new JsonPrimitive("2.0"));
+        notification.addProperty("method", "notifications/progress");
+        notification.add("params", params);
+        writer.write(notification);
+        nextNotificationNanos = System.nanoTime() + intervalNanos;
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.complexity.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the request handlers
+ *
+ * Work is split into two lanes with their own worker threads and bounded queues:
+ * small, interactive requests and large, bulk requests (directory scans, huge
+ * inputs). A bulk scan can therefore never starve interactive calls, and when a
+ * lane's queue is full the request is rejected immediately instead of letting
+ * memory grow without bound.
+ */
+class RequestScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(RequestScheduler.class);
+
+    enum Lane {
+        INTERACTIVE("interactive"),
+        BULK("bulk");
+
+        private final String displayName;
+
+        Lane(String displayName) {
+            this.displayName = displayName;
+        }
+
+        String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Executor and statistics of one lane.
+     */
+    private static class LaneExecutor {
+        final Lane lane;
+        final ThreadPoolExecutor executor;
+        final int queueCapacity;
+        final LongAdder submitted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder started = new LongAdder();
+        final LongAdder totalWaitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        LaneExecutor(Lane lane, int threads, int queueCapacity) {
+            this.lane = lane;
+            this.queueCapacity = queueCapacity;
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(lane),
+                new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        void recordStart(long enqueuedNanos) {
+            long waitNanos = System.nanoTime() - enqueuedNanos;
+            started.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            logger.debug("Request started in {} lane after {} \u00B5s, queue depth {}",
+                lane.getDisplayName(), waitNanos / 1_000, executor.getQueue().size());
+        }
+
+        String getStatistics() {
+            long startedCount = started.sum();
+            double avgWaitMillis = startedCount > 0 ? totalWaitNanos.sum() / 1e6 / startedCount : 0;
+            return String.format("  %s: %d workers (%d busy), queue %d/%d (max %d), submitted %d, rejected %d, " +
+                    "avg wait %.2f ms, max wait %.2f ms%n",
+                lane.getDisplayName(), executor.getMaximumPoolSize(), executor.getActiveCount(),
+                executor.getQueue().size(), queueCapacity, maxQueueDepth.get(),
+                submitted.sum(), rejected.sum(), avgWaitMillis, maxWaitNanos.get() / 1e6);
+        }
+    }
+
+    private final LaneExecutor interactive;
+    private final LaneExecutor bulk;
+
+    RequestScheduler(int interactiveThreads, int interactiveQueue, int bulkThreads, int bulkQueue) {
+        this.interactive = new LaneExecutor(Lane.INTERACTIVE, interactiveThreads, interactiveQueue);
+        this.bulk = new LaneExecutor(Lane.BULK, bulkThreads, bulkQueue);
+    }
+
+    /**
+     * Queues a task on the given lane.
+     *
+     * @return a future with the task's result, or failed with RejectedExecutionException
+     *         if the lane's queue is full
+     */
+    <T> CompletableFuture<T> submit(Lane lane, Supplier<T> task) {
+        LaneExecutor laneExecutor = lane == Lane.BULK ? bulk : interactive;
+        laneExecutor.submitted.increment();
+        long enqueuedNanos = System.nanoTime();
+        try {
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+                laneExecutor.recordStart(enqueuedNanos);
+                return task.get();
+            }, laneExecutor.executor);
+            laneExecutor.maxQueueDepth.accumulateAndGet(laneExecutor.executor.getQueue().size(), Math::max);
+            return future;
+        } catch (RejectedExecutionException e) {
+            laneExecutor.rejected.increment();
+            logger.warn("Rejected request: {} lane queue is full", lane.getDisplayName());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns queue depth, wait time and rejection statistics of both lanes.
+     */
+    String getStatistics() {
+        return String.format("Request Lanes:%n") + interactive.getStatistics() + bulk.getStatistics();
+    }
+
+    /**
+     * Stops accepting work and waits until all queued and running tasks have completed.
+     */
+    void shutdownAndAwait() {
+        interactive.executor.shutdown();
+        bulk.executor.shutdown();
+        try {
+            for (LaneExecutor laneExecutor : new LaneExecutor[] {interactive, bulk}) {
+                while (!laneExecutor.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.info("Waiting for in-flight {} requests to complete", laneExecutor.lane.getDisplayName());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interactive.executor.shutdownNow();
+            bulk.executor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory threadFactory(Lane lane) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "mcp-" + lane.getDisplayName() + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
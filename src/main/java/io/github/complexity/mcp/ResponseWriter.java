@@ -0,0 +1,75 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Serializes JSON-RPC messages onto the output stream
+ *
+ * Responses are produced concurrently by the worker threads; every message is
+ * written and flushed as one line under a lock so that concurrent writes never
+ * interleave on stdout. Messages are streamed through a {@link JsonWriter}
+ * rather than serialized into a string first.
+ */
+class ResponseWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseWriter.class);
+
+    private final Writer writer;
+
+    ResponseWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes one message as a single line and flushes it.
+     */
+    void write(JsonElement message) {
+        write(JsonRpcMessage.of(message));
+    }
+
+    /**
+     * Writes one message as a single line and flushes it.
+     */
+    synchronized void write(JsonRpcMessage message) {
+        try {
+            // No pretty printing - JSON-RPC requires single-line messages
+            message.writeTo(new JsonWriter(writer));
+            endLine();
+        } catch (IOException | JsonIOException e) {
+            logger.error("Cannot write message", e);
+        }
+    }
+
+    /**
+     * Writes the responses to a batch as one array on a single line and flushes it.
+     */
+    synchronized void write(List<JsonRpcMessage> batch) {
+        try {
+            JsonWriter out = new JsonWriter(writer);
+            out.beginArray();
+            for (JsonRpcMessage message : batch) {
+                message.writeTo(out);
+            }
+            out.endArray();
+            endLine();
+        } catch (IOException | JsonIOException e) {
+            logger.error("Cannot write batch response", e);
+        }
+    }
+
+    private void endLine() throws IOException {
+        writer.write('\n');
+        writer.flush();
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.complexity.mcp;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The text of a source file, read once and decoded once
+ *
+ * The file is read as ISO-8859-1, one char per byte, which lets the String take over the read
+ * buffer instead of copying it. Pure ASCII content (nearly all assembler and most Java sources)
+ * reads the same in every ASCII-compatible charset, so that String is the result and the file
+ * is the only full copy on the heap. Other content is turned back into bytes, the Latin-1 String
+ * is dropped, and the text is validated in a small buffer and decoded once from those bytes, so
+ * no more than two copies of the file are held at any time.
+ *
+ * Without an explicit charset, a byte order mark selects UTF-8 or UTF-16; otherwise the content
+ * is UTF-8 if it is valid UTF-8, and ISO-8859-1 if not (e.g. sources written with an 8-bit code page).
+ * Files too large to hold in memory are {@link #open opened} as a stream instead.
+ */
+final class SourceFile {
+
+    private static final String ASCII = asciiCharacters();
+    // Bytes examined to detect the charset of a streamed file
+    private static final int DETECT_PREFIX_BYTES = 64 * 1024;
+
+    private final Charset charset;
+    private final String text;
+
+    private SourceFile(Charset charset, String text) {
+        this.charset = charset;
+        this.text = text;
+    }
+
+    /**
+     * Reads and decodes a file.
+     *
+     * @param charset the charset of the file, or null to detect it
+     */
+    static SourceFile read(Path path, Charset charset) throws IOException {
+        String latin1 = Files.readString(path, StandardCharsets.ISO_8859_1);
+
+        Charset marked = charset == null ? byteOrderMark(latin1) : null;
+        if (charset != null
+                ? charset.equals(StandardCharsets.ISO_8859_1) || (isAscii(latin1) && isAsciiCompatible(charset))
+                : marked == null && isAscii(latin1)) {
+            return new SourceFile(charset != null ? charset : StandardCharsets.UTF_8, latin1);
+        }
+
+        byte[] bytes = latin1.getBytes(StandardCharsets.ISO_8859_1);
+        if (charset == null && marked == null && !isValid(bytes, StandardCharsets.UTF_8, true)) {
+            return new SourceFile(StandardCharsets.ISO_8859_1, latin1);
+        }
+        latin1 = null; // only the bytes are needed from here on
+        Charset decoding = charset != null ? charset : marked != null ? marked : StandardCharsets.UTF_8;
+        return new SourceFile(decoding, decode(bytes, decoding));
+    }
+
+    /**
+     * Opens a file as a stream of decoded text. The charset is detected like {@link #read} does,
+     * but only from the first {@value #DETECT_PREFIX_BYTES} bytes; invalid input after them is
+     * replaced instead of falling back to ISO-8859-1.
+     *
+     * @param charset the charset of the file, or null to detect it
+     */
+    static Reader open(Path path, Charset charset) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), DETECT_PREFIX_BYTES);
+        try {
+            in.mark(DETECT_PREFIX_BYTES);
+            byte[] prefix = in.readNBytes(DETECT_PREFIX_BYTES);
+            in.reset();
+
+            String bytes = new String(prefix, StandardCharsets.ISO_8859_1);
+            if (charset == null) {
+                Charset marked = byteOrderMark(bytes);
+                charset = marked != null ? marked :
+                    isAscii(bytes) || isValid(prefix, StandardCharsets.UTF_8, false) ?
+                        StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+            }
+            if (charset.equals(StandardCharsets.UTF_8) && bytes.startsWith("\u00EF\u00BB\u00BF")) {
+                in.skipNBytes(3);
+            }
+            return new InputStreamReader(in, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads up to the given number of characters from the start of a file, as {@link #open} decodes them.
+     */
+    static String readPrefix(Path path, Charset charset, int maxChars) throws IOException {
+        StringBuilder prefix = new StringBuilder();
+        char[] buffer = new char[8192];
+        try (Reader reader = open(path, charset)) {
+            int read;
+            while (prefix.length() < maxChars
+                    && (read = reader.read(buffer, 0, Math.min(buffer.length, maxChars - prefix.length()))) >= 0) {
+                prefix.append(buffer, 0, read);
+            }
+        }
+        return prefix.toString();
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    private static boolean isAscii(String bytes) {
+        for (int i = 0; i < bytes.length(); i++) {
+            if (bytes.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the bytes decode without malformed or unmappable input. The text is decoded into a
+     * small buffer that is reused, so validation does not hold a copy of the file.
+     *
+     * @param endOfInput false to allow a sequence to be cut off at the end
+     */
+    private static boolean isValid(byte[] bytes, Charset charset, boolean endOfInput) {
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        CharBuffer out = CharBuffer.allocate(8192);
+        while (true) {
+            CoderResult result = decoder.decode(in, out, endOfInput);
+            if (result.isError()) {
+                return false;
+            }
+            if (result.isUnderflow()) {
+                return !endOfInput || !decoder.flush(out.clear()).isError();
+            }
+            out.clear();
+        }
+    }
+
+    // Whether every ASCII byte decodes to the same character, unlike e.g. UTF-16 or EBCDIC
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.canEncode() && new String(ASCII.getBytes(StandardCharsets.ISO_8859_1), charset).equals(ASCII);
+    }
+
+    private static Charset byteOrderMark(String bytes) {
+        if (bytes.startsWith("\u00EF\u00BB\u00BF")) {
+            return StandardCharsets.UTF_8;
+        }
+        if (bytes.startsWith("\u00FE\u00FF") || bytes.startsWith("\u00FF\u00FE")) {
+            return StandardCharsets.UTF_16; // consumes the byte order mark itself
+        }
+        return null;
+    }
+
+    // Decodes straight into the String, replacing malformed and unmappable input
+    private static String decode(byte[] bytes, Charset charset) {
+        int start = charset.equals(StandardCharsets.UTF_8) && bytes.length >= 3
+            && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF ? 3 : 0;
+        return new String(bytes, start, bytes.length - start, charset);
+    }
+
+    private static String asciiCharacters() {
+        StringBuilder ascii = new StringBuilder(128);
+        for (char c = 0; c < 128; c++) {
+            ascii.append(c);
+        }
+        return ascii.toString();
+    }
+}
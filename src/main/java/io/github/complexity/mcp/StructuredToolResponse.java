@@ -0,0 +1,70 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import io.github.complexity.calculator.ComplexityResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tool response carrying a complexity result as structured content (output "json")
+ *
+ * The result is written member by member onto the output stream instead of being formatted
+ * into a summary or built as a JSON tree first. Functions are listed by descending complexity,
+ * like in the summary; the text content only holds a one-line overview.
+ */
+final class StructuredToolResponse extends JsonRpcMessage {
+    private final JsonElement id;
+    private final ComplexityResult result;
+
+    StructuredToolResponse(JsonElement id, ComplexityResult result) {
+        this.id = id;
+        this.result = result;
+    }
+
+    @Override
+    void writeTo(JsonWriter out) throws IOException {
+        Map<String, Integer> complexities = result.getFunctionComplexities();
+        out.beginObject();
+        writeHeader(out, id);
+        out.name("result").beginObject();
+
+        out.name("content").beginArray().beginObject();
+        out.name("type").value("text");
+        out.name("text").value(result.getFileName() + " (" + result.getLanguage() + "): " + complexities.size() +
+            " functions, total complexity " + result.getTotalComplexity() + ", max " + result.getMaxComplexity() +
+            (result.isPartial() ? ", partial" : ""));
+        out.endObject().endArray();
+
+        out.name("structuredContent").beginObject();
+        out.name("file").value(result.getFileName());
+        out.name("language").value(result.getLanguage());
+        out.name("partial").value(result.isPartial());
+        out.name("totalFunctions").value(complexities.size());
+        out.name("totalComplexity").value(result.getTotalComplexity());
+        out.name("maxComplexity").value(result.getMaxComplexity());
+        out.name("mostComplexFunction");
+        if (complexities.isEmpty()) {
+            out.nullValue();
+        } else {
+            out.value(result.getMostComplexFunction());
+        }
+        out.name("functions").beginArray();
+        List<Map.Entry<String, Integer>> functions = new ArrayList<>(complexities.entrySet());
+        functions.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        for (Map.Entry<String, Integer> function : functions) {
+            out.beginObject();
+            out.name("name").value(function.getKey());
+            out.name("complexity").value(function.getValue().intValue());
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+
+        out.endObject();
+        out.endObject();
+    }
+}
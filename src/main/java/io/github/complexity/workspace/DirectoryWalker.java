@@ -0,0 +1,272 @@
+package io.github.complexity.workspace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * Walks a directory tree in parallel using a fork-join traversal
+ *
+ * Every subdirectory becomes its own fork-join task, so large trees are spread
+ * across all cores. Files are filtered by include/exclude globs (relative to the
+ * root), by the .gitignore files found along the way and by a caller supplied
+ * predicate, and are then handed to a {@link FileVisitor} on the worker thread.
+ */
+public class DirectoryWalker {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryWalker.class);
+
+    /**
+     * Callback invoked for every selected file. Called concurrently from worker threads.
+     */
+    public interface FileVisitor {
+        void visit(Path file);
+
+        /**
+         * Called for every directory that is traversed, before its files are visited.
+         */
+        default void visitDirectory(Path directory) {
+        }
+    }
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final List<PathMatcher> excludedDirectories; // "dir/**" excludes dir itself
+    private final boolean respectGitignore;
+    private final Predicate<Path> fileFilter;
+
+    /**
+     * @param includes glob patterns a file must match (all files if empty)
+     * @param excludes glob patterns that exclude files and prune directories
+     * @param respectGitignore whether .gitignore files are honoured
+     * @param fileFilter additional filter, e.g. for supported file extensions
+     */
+    public DirectoryWalker(List<String> includes, List<String> excludes,
+                           boolean respectGitignore, Predicate<Path> fileFilter) {
+        this.includes = compileGlobs(includes);
+        this.excludes = compileGlobs(excludes);
+        this.excludedDirectories = compileDirectoryGlobs(excludes);
+        this.respectGitignore = respectGitignore;
+        this.fileFilter = fileFilter;
+    }
+
+    /**
+     * Walks the tree below root and blocks until every selected file has been visited.
+     */
+    public void walk(Path root, FileVisitor visitor) throws IOException {
+        Path normalizedRoot = root.toAbsolutePath().normalize();
+        if (!Files.isDirectory(normalizedRoot)) {
+            throw new IOException("Not a directory: " + root);
+        }
+        List<GitignoreRules> rules = new ArrayList<>();
+        ForkJoinPool.commonPool().invoke(new DirectoryTask(normalizedRoot, normalizedRoot, rules, visitor));
+    }
+
+    /**
+     * Walks only the subtree below directory, selecting the same files as a walk from root
+     * would. Does nothing if the directory itself is excluded.
+     */
+    public void walk(Path root, Path directory, FileVisitor visitor) throws IOException {
+        Path normalizedRoot = root.toAbsolutePath().normalize();
+        Path normalizedDirectory = directory.toAbsolutePath().normalize();
+        if (!Files.isDirectory(normalizedDirectory)) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        List<GitignoreRules> rules = rulesAbove(normalizedRoot, normalizedDirectory);
+        if (rules != null) {
+            ForkJoinPool.commonPool().invoke(new DirectoryTask(normalizedRoot, normalizedDirectory, rules, visitor));
+        }
+    }
+
+    /**
+     * Returns whether a walk from root would visit the given file.
+     */
+    public boolean accepts(Path root, Path file) {
+        Path normalizedRoot = root.toAbsolutePath().normalize();
+        Path normalizedFile = file.toAbsolutePath().normalize();
+        Path directory = normalizedFile.getParent();
+        if (directory == null || !directory.startsWith(normalizedRoot) || !Files.isRegularFile(normalizedFile)) {
+            return false;
+        }
+        List<GitignoreRules> rules = rulesAbove(normalizedRoot, directory);
+        if (rules == null) {
+            return false;
+        }
+        if (respectGitignore) {
+            rules = withLocalRules(directory, rules);
+        }
+        return !isExcluded(normalizedRoot, normalizedFile, false, rules)
+            && isIncluded(normalizedRoot, normalizedFile)
+            && fileFilter.test(normalizedFile);
+    }
+
+    /**
+     * Collects the .gitignore rules a traversal from root passes on to the given directory.
+     *
+     * @return the rules, or null if the directory or one of its parents is excluded
+     */
+    private List<GitignoreRules> rulesAbove(Path root, Path directory) {
+        List<GitignoreRules> rules = new ArrayList<>();
+        Path current = root;
+        for (Path name : root.relativize(directory)) {
+            if (name.toString().isEmpty()) {
+                break; // directory is the root itself
+            }
+            if (respectGitignore) {
+                rules = withLocalRules(current, rules);
+            }
+            current = current.resolve(name);
+            if (".git".equals(name.toString()) || isExcluded(root, current, true, rules)) {
+                return null;
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Fork-join task processing one directory and forking a task per subdirectory.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path directory;
+        private final List<GitignoreRules> inheritedRules;
+        private final FileVisitor visitor;
+
+        DirectoryTask(Path root, Path directory, List<GitignoreRules> inheritedRules, FileVisitor visitor) {
+            this.root = root;
+            this.directory = directory;
+            this.inheritedRules = inheritedRules;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            List<GitignoreRules> rules = inheritedRules;
+            if (respectGitignore) {
+                rules = withLocalRules(directory, inheritedRules);
+            }
+
+            visitor.visitDirectory(directory);
+
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    // Do not follow symbolic links to directories to avoid cycles
+                    boolean isDirectory = Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS);
+                    if (isDirectory) {
+                        if (".git".equals(entry.getFileName().toString())
+                            || isExcluded(root, entry, true, rules)) {
+                            continue;
+                        }
+                        subtasks.add(new DirectoryTask(root, entry, rules, visitor));
+                    } else if (Files.isRegularFile(entry)
+                               && !isExcluded(root, entry, false, rules)
+                               && isIncluded(root, entry)
+                               && fileFilter.test(entry)) {
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Cannot read directory {}: {}", directory, e.getMessage());
+                return;
+            }
+
+            // Fork subdirectories first so idle workers can steal them while we process our files
+            for (DirectoryTask subtask : subtasks) {
+                subtask.fork();
+            }
+            for (Path file : files) {
+                visitor.visit(file);
+            }
+            for (DirectoryTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+    }
+
+    private boolean isIncluded(Path root, Path file) {
+        if (includes.isEmpty()) {
+            return true;
+        }
+        return matchesAny(includes, root.relativize(file));
+    }
+
+    private boolean isExcluded(Path root, Path path, boolean isDirectory, List<GitignoreRules> rules) {
+        Path relative = root.relativize(path);
+        if (matchesAny(excludes, relative) || (isDirectory && matchesAny(excludedDirectories, relative))) {
+            return true;
+        }
+        Boolean ignored = null;
+        for (GitignoreRules rule : rules) { // deeper .gitignore files override outer ones
+            Boolean verdict = rule.isIgnored(path, isDirectory);
+            if (verdict != null) {
+                ignored = verdict;
+            }
+        }
+        return Boolean.TRUE.equals(ignored);
+    }
+
+    private static List<GitignoreRules> withLocalRules(Path directory, List<GitignoreRules> inherited) {
+        try {
+            GitignoreRules local = GitignoreRules.load(directory);
+            if (local == null) {
+                return inherited;
+            }
+            List<GitignoreRules> combined = new ArrayList<>(inherited);
+            combined.add(local);
+            return combined;
+        } catch (IOException e) {
+            logger.warn("Cannot read .gitignore in {}: {}", directory, e.getMessage());
+            return inherited;
+        }
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> compileGlobs(List<String> globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+            if (glob.startsWith("**/")) {
+                // "**/*.java" should also match files directly in the root
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3)));
+            }
+        }
+        return matchers;
+    }
+
+    /**
+     * Compiles the directory part of globs ending in /**, which exclude everything below
+     * that directory, so the directory is pruned rather than walked for nothing.
+     */
+    private static List<PathMatcher> compileDirectoryGlobs(List<String> globs) {
+        List<String> directories = new ArrayList<>();
+        for (String glob : globs) {
+            if (glob.endsWith("/**") && glob.length() > 3) {
+                directories.add(glob.substring(0, glob.length() - 3));
+            }
+        }
+        return compileGlobs(directories);
+    }
+}
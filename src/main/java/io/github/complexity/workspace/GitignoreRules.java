@@ -0,0 +1,237 @@
+package io.github.complexity.workspace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Rules parsed from a single .gitignore file
+ *
+ * Supports the commonly used subset of the gitignore syntax:
+ * - Blank lines and lines starting with # are ignored
+ * - A leading ! negates the pattern (re-includes a previously ignored path)
+ * - A trailing / matches directories only
+ * - Patterns without an inner / match the file name at any depth
+ * - Patterns with an inner / (or a leading /) are anchored to the .gitignore directory
+ * - *, ?, [...] and ** wildcards, and \ escapes
+ *
+ * Patterns are translated to regular expressions rather than globs, since gitignore
+ * takes braces literally and treats an unterminated [ as an ordinary character.
+ */
+public class GitignoreRules {
+    private static final Logger logger = LoggerFactory.getLogger(GitignoreRules.class);
+
+    private static class Rule {
+        final Pattern pattern;
+        final boolean negated;
+        final boolean directoryOnly;
+        final boolean nameOnly;
+
+        Rule(Pattern pattern, boolean negated, boolean directoryOnly, boolean nameOnly) {
+            this.pattern = pattern;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.nameOnly = nameOnly;
+        }
+
+        boolean matches(Path relative, boolean isDirectory) {
+            if (directoryOnly && !isDirectory) {
+                return false;
+            }
+            if (nameOnly) {
+                Path name = relative.getFileName();
+                return name != null && pattern.matcher(name.toString()).matches();
+            }
+            return pattern.matcher(slashSeparated(relative)).matches();
+        }
+    }
+
+    private final Path baseDirectory;
+    private final List<Rule> rules;
+
+    private GitignoreRules(Path baseDirectory, List<Rule> rules) {
+        this.baseDirectory = baseDirectory;
+        this.rules = rules;
+    }
+
+    /**
+     * Loads the .gitignore file of the given directory.
+     *
+     * @return the parsed rules, or null if the directory has no (usable) .gitignore
+     */
+    public static GitignoreRules load(Path directory) throws IOException {
+        Path file = directory.resolve(".gitignore");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        GitignoreRules rules = parse(directory, Files.readAllLines(file));
+        return rules.rules.isEmpty() ? null : rules;
+    }
+
+    /**
+     * Parses gitignore lines relative to the given base directory.
+     */
+    public static GitignoreRules parse(Path baseDirectory, List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = parseLine(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return new GitignoreRules(baseDirectory, rules);
+    }
+
+    private static Rule parseLine(String line) {
+        String pattern = line.stripTrailing();
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+
+        boolean negated = pattern.startsWith("!");
+        if (negated) {
+            pattern = pattern.substring(1);
+        } else if (pattern.startsWith("\\#") || pattern.startsWith("\\!")) {
+            pattern = pattern.substring(1);
+        }
+
+        boolean directoryOnly = pattern.endsWith("/");
+        if (directoryOnly) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        if (pattern.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return new Rule(Pattern.compile(toRegex(pattern)), negated, directoryOnly, !anchored);
+        } catch (PatternSyntaxException e) {
+            logger.warn("Skipping unusable .gitignore pattern '{}': {}", line, e.getDescription());
+            return null;
+        }
+    }
+
+    /**
+     * Translates a gitignore pattern into a regular expression over '/' separated paths.
+     */
+    static String toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                int end = i;
+                while (end < length && pattern.charAt(end) == '*') {
+                    end++;
+                }
+                boolean wholeSegment = (i == 0 || pattern.charAt(i - 1) == '/')
+                    && (end == length || pattern.charAt(end) == '/');
+                if (end - i == 2 && wholeSegment) {
+                    if (end == length) {
+                        regex.append(".*"); // "foo/**": everything inside
+                    } else {
+                        regex.append("(?:.*/)?"); // "**/": zero or more directories
+                        end++;
+                    }
+                } else {
+                    regex.append("[^/]*");
+                }
+                i = end;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[' && classEnd(pattern, i) > 0) {
+                int end = classEnd(pattern, i);
+                int from = i + 1;
+                regex.append('[');
+                if (pattern.charAt(from) == '!' || pattern.charAt(from) == '^') {
+                    regex.append('^');
+                    from++;
+                }
+                for (int j = from; j < end; j++) {
+                    char member = pattern.charAt(j);
+                    if (member == '\\' && j + 1 < end) {
+                        member = pattern.charAt(++j);
+                    }
+                    if (!Character.isLetterOrDigit(member) && (member != '-' || j == from || j == end - 1)) {
+                        regex.append('\\');
+                    }
+                    regex.append(member);
+                }
+                regex.append("&&[^/]]");
+                i = end + 1;
+            } else {
+                if (c == '\\' && i + 1 < length) {
+                    c = pattern.charAt(++i);
+                }
+                // Everything else is literal, including braces and commas
+                if (!Character.isLetterOrDigit(c)) {
+                    regex.append('\\');
+                }
+                regex.append(c);
+                i++;
+            }
+        }
+        return regex.toString();
+    }
+
+    // Index of the ] closing the character class opened at start, or -1 if it is not closed
+    private static int classEnd(String pattern, int start) {
+        int i = start + 1;
+        if (i < pattern.length() && (pattern.charAt(i) == '!' || pattern.charAt(i) == '^')) {
+            i++;
+        }
+        if (i < pattern.length() && pattern.charAt(i) == ']') {
+            i++; // a leading ] is a member
+        }
+        while (i < pattern.length() && pattern.charAt(i) != ']') {
+            if (pattern.charAt(i) == '\\') {
+                i++;
+            }
+            i++;
+        }
+        return i < pattern.length() ? i : -1;
+    }
+
+    private static String slashSeparated(Path relative) {
+        String separator = relative.getFileSystem().getSeparator();
+        String path = relative.toString();
+        return "/".equals(separator) ? path : path.replace(separator, "/");
+    }
+
+    /**
+     * Evaluates the rules for a path.
+     *
+     * @return TRUE if the path is ignored, FALSE if it is explicitly re-included,
+     *         or null if no rule matches
+     */
+    public Boolean isIgnored(Path path, boolean isDirectory) {
+        if (!path.startsWith(baseDirectory)) {
+            return null;
+        }
+        Path relative = baseDirectory.relativize(path);
+        if (relative.toString().isEmpty()) {
+            return null;
+        }
+        Boolean result = null;
+        for (Rule rule : rules) { // last matching rule wins
+            if (rule.matches(relative, isDirectory)) {
+                result = !rule.negated;
+            }
+        }
+        return result;
+    }
+}
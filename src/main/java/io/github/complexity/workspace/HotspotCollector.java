@@ -0,0 +1,108 @@
+package io.github.complexity.workspace;
+
+import io.github.complexity.calculator.ComplexityResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the K most complex functions of many files in O(K) memory
+ *
+ * Results are offered one file at a time from concurrent workers and are kept in
+ * a bounded min-heap whose root is the weakest hotspot so far. Once the heap is
+ * full, its root complexity becomes a threshold below which functions (and whole
+ * files) are rejected without taking the lock.
+ */
+public class HotspotCollector {
+
+    /**
+     * One ranked function.
+     */
+    public static final class Hotspot {
+        private final Path file;
+        private final String function;
+        private final int complexity;
+
+        Hotspot(Path file, String function, int complexity) {
+            this.file = file;
+            this.function = function;
+            this.complexity = complexity;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public int getComplexity() {
+            return complexity;
+        }
+    }
+
+    // Ranks by complexity; ties are broken by path and name so the result does not depend on timing
+    private static final Comparator<Hotspot> RANKING = Comparator
+        .comparingInt((Hotspot h) -> h.complexity)
+        .thenComparing(h -> h.file, Comparator.reverseOrder())
+        .thenComparing(h -> h.function, Comparator.reverseOrder());
+
+    private final int limit;
+    private final PriorityQueue<Hotspot> heap; // guarded by this, weakest hotspot first
+    private volatile int threshold;
+
+    /**
+     * @param limit number of hotspots to keep
+     * @param minComplexity functions below this complexity are ignored
+     */
+    public HotspotCollector(int limit, int minComplexity) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit + 1, RANKING);
+        this.threshold = minComplexity;
+    }
+
+    /**
+     * Offers all functions of one file. Safe to call from several threads.
+     */
+    public void offer(Path file, ComplexityResult result) {
+        if (result.getMaxComplexity() < threshold) {
+            return;
+        }
+        for (Map.Entry<String, Integer> entry : result.getFunctionComplexities().entrySet()) {
+            if (entry.getValue() >= threshold) {
+                offer(new Hotspot(file, entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private synchronized void offer(Hotspot hotspot) {
+        if (heap.size() < limit) {
+            heap.add(hotspot);
+        } else if (RANKING.compare(hotspot, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(hotspot);
+        } else {
+            return;
+        }
+        if (heap.size() == limit) {
+            threshold = Math.max(threshold, heap.peek().complexity);
+        }
+    }
+
+    /**
+     * Returns the collected hotspots, most complex first.
+     */
+    public synchronized List<Hotspot> getHotspots() {
+        List<Hotspot> hotspots = new ArrayList<>(heap);
+        hotspots.sort(RANKING.reversed());
+        return hotspots;
+    }
+}
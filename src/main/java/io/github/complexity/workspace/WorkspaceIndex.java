@@ -0,0 +1,369 @@
+package io.github.complexity.workspace;
+
+import io.github.complexity.calculator.ComplexityResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live complexity index of a directory tree, kept up to date by a file watcher
+ *
+ * The tree is analyzed once when the index is started. Afterwards every directory
+ * is watched with a {@link WatchService}; changed paths are collected and, once the
+ * file system has been quiet for the debounce interval (e.g. after a git checkout),
+ * only the affected files are analyzed again. Queries for a file or for all
+ * functions above a complexity threshold are answered from the index.
+ */
+public class WorkspaceIndex implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceIndex.class);
+
+    /**
+     * Analyzes one file for the index.
+     */
+    public interface FileAnalyzer {
+        ComplexityResult analyze(Path file) throws IOException;
+    }
+
+    /**
+     * One function in the index, ordered by descending complexity.
+     */
+    public static final class FunctionEntry {
+        static final Comparator<FunctionEntry> ORDER = Comparator
+            .comparingInt((FunctionEntry e) -> -e.complexity)
+            .thenComparing(e -> e.file)
+            .thenComparing(e -> e.function);
+
+        private final Path file;
+        private final String function;
+        private final int complexity;
+
+        FunctionEntry(Path file, String function, int complexity) {
+            this.file = file;
+            this.function = function;
+            this.complexity = complexity;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public int getComplexity() {
+            return complexity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FunctionEntry)) {
+                return false;
+            }
+            FunctionEntry other = (FunctionEntry) o;
+            return complexity == other.complexity && file.equals(other.file) && function.equals(other.function);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, function, complexity);
+        }
+    }
+
+    private final Path root;
+    private final DirectoryWalker walker;
+    private final FileAnalyzer analyzer;
+    private final long debounceMillis;
+
+    private final Map<Path, ComplexityResult> files = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<FunctionEntry> functions = new ConcurrentSkipListSet<>(FunctionEntry.ORDER);
+
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Set<Path> registeredDirectories = ConcurrentHashMap.newKeySet();
+    private final Set<Path> pendingChanges = ConcurrentHashMap.newKeySet();
+    private volatile boolean rescanRequested;
+    private final ScheduledExecutorService debouncer;
+    private ScheduledFuture<?> pendingUpdate; // guarded by this
+    private WatchService watchService;
+    private Thread watchThread;
+
+    private final LongAdder changeEvents = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder reanalyzedFiles = new LongAdder();
+
+    /**
+     * @param walker selects the files of the tree
+     * @param debounceMillis quiet period after the last change before files are analyzed again
+     */
+    public WorkspaceIndex(Path root, DirectoryWalker walker, FileAnalyzer analyzer, long debounceMillis) {
+        this.root = root.toAbsolutePath().normalize();
+        this.walker = walker;
+        this.analyzer = analyzer;
+        this.debounceMillis = debounceMillis;
+        this.debouncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workspace-index-" + this.root.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Registers the watches, builds the index and starts following changes. Blocks
+     * until the initial analysis is complete.
+     */
+    public void start() throws IOException {
+        watchService = root.getFileSystem().newWatchService();
+        long start = System.nanoTime();
+        walker.walk(root, new DirectoryWalker.FileVisitor() {
+            @Override
+            public void visit(Path file) {
+                update(file);
+            }
+
+            @Override
+            public void visitDirectory(Path directory) {
+                register(directory);
+            }
+        });
+        logger.info("Indexed {} files below {} in {} ms", files.size(), root,
+            (System.nanoTime() - start) / 1_000_000);
+
+        watchThread = new Thread(this::watch, "workspace-watch-" + root.getFileName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Returns the indexed result of a file, or null if it is not part of the index.
+     */
+    public ComplexityResult getFile(Path file) {
+        return files.get(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the functions with at least the given complexity, most complex first.
+     */
+    public List<FunctionEntry> getFunctionsAbove(int minComplexity, int limit) {
+        List<FunctionEntry> result = new ArrayList<>();
+        for (FunctionEntry entry : functions) {
+            if (entry.complexity < minComplexity || result.size() >= limit) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    public int getFunctionCount() {
+        return functions.size();
+    }
+
+    private void register(Path directory) {
+        if (!registeredDirectories.add(directory)) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+        } catch (IOException | ClosedWatchServiceException e) {
+            logger.warn("Cannot watch {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                changeEvents.increment();
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    rescanRequested = true;
+                } else if (directory != null) {
+                    pendingChanges.add(directory.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                // The directory is gone
+                watchedDirectories.remove(key);
+                if (directory != null) {
+                    registeredDirectories.remove(directory);
+                }
+            }
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * (Re)starts the debounce timer, so a burst of changes is processed once it is over.
+     */
+    private synchronized void scheduleUpdate() {
+        if (pendingUpdate != null) {
+            pendingUpdate.cancel(false);
+        }
+        pendingUpdate = debouncer.schedule(this::applyChanges, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void applyChanges() {
+        updates.increment();
+        if (rescanRequested) {
+            // Events were lost, compare the whole tree with the index
+            rescanRequested = false;
+            pendingChanges.clear();
+            rescan();
+            return;
+        }
+        List<Path> changed = new ArrayList<>(pendingChanges);
+        pendingChanges.removeAll(changed);
+        for (Path path : changed) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (!registeredDirectories.contains(path)) {
+                    indexNewDirectory(path);
+                }
+            } else if (walker.accepts(root, path)) {
+                update(path);
+            } else {
+                // Deleted, renamed or no longer selected; also drops the contents of deleted directories
+                removeBelow(path);
+            }
+        }
+    }
+
+    private void indexNewDirectory(Path directory) {
+        try {
+            walker.walk(root, directory, new DirectoryWalker.FileVisitor() {
+                @Override
+                public void visit(Path file) {
+                    update(file);
+                }
+
+                @Override
+                public void visitDirectory(Path subdirectory) {
+                    register(subdirectory);
+                }
+            });
+        } catch (IOException e) {
+            logger.debug("Cannot index new directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void rescan() {
+        Set<Path> seen = ConcurrentHashMap.newKeySet();
+        try {
+            walker.walk(root, new DirectoryWalker.FileVisitor() {
+                @Override
+                public void visit(Path file) {
+                    seen.add(file);
+                    update(file);
+                }
+
+                @Override
+                public void visitDirectory(Path directory) {
+                    register(directory);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Cannot rescan {}: {}", root, e.getMessage());
+            return;
+        }
+        for (Path file : new ArrayList<>(files.keySet())) {
+            if (!seen.contains(file)) {
+                remove(file);
+            }
+        }
+    }
+
+    private void update(Path file) {
+        ComplexityResult result;
+        try {
+            result = analyzer.analyze(file);
+        } catch (Exception e) {
+            logger.debug("Failed to analyze {}", file, e);
+            remove(file);
+            return;
+        }
+        reanalyzedFiles.increment();
+        files.compute(file, (path, previous) -> {
+            if (previous != null) {
+                removeFunctions(path, previous);
+            }
+            result.getFunctionComplexities().forEach((function, complexity) ->
+                functions.add(new FunctionEntry(path, function, complexity)));
+            return result;
+        });
+    }
+
+    private void remove(Path file) {
+        files.computeIfPresent(file, (path, previous) -> {
+            removeFunctions(path, previous);
+            return null;
+        });
+    }
+
+    private void removeBelow(Path path) {
+        for (Path file : new ArrayList<>(files.keySet())) {
+            if (file.startsWith(path)) {
+                remove(file);
+            }
+        }
+    }
+
+    private void removeFunctions(Path file, ComplexityResult result) {
+        result.getFunctionComplexities().forEach((function, complexity) ->
+            functions.remove(new FunctionEntry(file, function, complexity)));
+    }
+
+    /**
+     * Returns index size and update counters as a summary line.
+     */
+    public String getStatistics() {
+        return String.format("%s: %d files, %d functions, %d watched directories, %d change events, " +
+                "%d updates, %d files analyzed",
+            root, files.size(), functions.size(), watchedDirectories.size(), changeEvents.sum(),
+            updates.sum(), reanalyzedFiles.sum());
+    }
+
+    @Override
+    public void close() throws IOException {
+        debouncer.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.complexity.cache;
+
+import io.github.complexity.calculator.ComplexityCalculator;
+import io.github.complexity.calculator.ComplexityResult;
+import io.github.complexity.calculator.JavaComplexityCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DiskResultCache
+ */
+class DiskResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] source(String code) {
+        return code.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void get_afterPut_survivesReopening() throws IOException {
+        ComplexityCalculator calculator = new JavaComplexityCalculator();
+        String key = DiskResultCache.key(source("class A {}"), calculator);
+        new DiskResultCache(tempDir, 1024 * 1024)
+            .put(key, new ComplexityResult("A.java", "Java", Map.of("main", 3, "run", 1)));
+
+        DiskResultCache reopened = new DiskResultCache(tempDir, 1024 * 1024);
+        ComplexityResult result = reopened.get(key, "Copy.java");
+
+        assertNotNull(result);
+        assertEquals("Copy.java", result.getFileName());
+        assertEquals("Java", result.getLanguage());
+        assertEquals(Map.of("main", 3, "run", 1), result.getFunctionComplexities());
+        assertNull(reopened.get(DiskResultCache.key(source("class B {}"), calculator), "B.java"));
+    }
+
+    @Test
+    void key_dependsOnCalculatorVersion() {
+        ComplexityCalculator current = new JavaComplexityCalculator();
+        ComplexityCalculator newer = new JavaComplexityCalculator() {
+            @Override
+            public int getAlgorithmVersion() {
+                return super.getAlgorithmVersion() + 1;
+            }
+        };
+
+        assertEquals(DiskResultCache.key(source("class A {}"), current),
+            DiskResultCache.key(source("class A {}"), new JavaComplexityCalculator()));
+        assertNotEquals(DiskResultCache.key(source("class A {}"), current),
+            DiskResultCache.key(source("class A {}"), newer));
+    }
+
+    @Test
+    void key_ofText_equalsKeyOfUtf8Bytes() {
+        ComplexityCalculator calculator = new JavaComplexityCalculator();
+        // Longer than one hashing chunk, with a surrogate pair across the chunk boundary
+        String text = "x".repeat(64 * 1024 - 1) + "\uD83D\uDE00 class \u00C4 {}";
+
+        assertEquals(DiskResultCache.key(source(text), calculator), DiskResultCache.key(text, calculator));
+    }
+
+    @Test
+    void key_ofReader_equalsKeyOfText() throws IOException {
+        ComplexityCalculator calculator = new JavaComplexityCalculator();
+        String text = "y".repeat(64 * 1024 - 1) + "\uD83D\uDE00 class \u00C4 {}\uD800";
+
+        assertEquals(DiskResultCache.key(text, calculator), DiskResultCache.key(new StringReader(text), calculator));
+    }
+
+    @Test
+    void put_partialResult_isNotStored() throws IOException {
+        DiskResultCache cache = new DiskResultCache(tempDir, 1024 * 1024);
+        String key = DiskResultCache.key(source("class A {}"), new JavaComplexityCalculator());
+
+        cache.put(key, new ComplexityResult("A.java", "Java", Map.of("main", 1), true));
+
+        assertNull(cache.get(key, "A.java"));
+    }
+
+    @Test
+    void put_beyondMaxBytes_evictsEntries() throws IOException {
+        DiskResultCache cache = new DiskResultCache(tempDir, 200);
+        ComplexityCalculator calculator = new JavaComplexityCalculator();
+        for (int i = 0; i < 20; i++) {
+            cache.put(DiskResultCache.key(source("class A" + i + " {}"), calculator),
+                new ComplexityResult("A" + i + ".java", "Java", Map.of("method" + i, i)));
+        }
+
+        assertTrue(cache.getStatistics().matches(".*evictions [1-9]\\d*.*"), cache.getStatistics());
+        assertNotNull(cache.get(DiskResultCache.key(source("class A19 {}"), calculator), "A19.java"),
+            "The most recently written entry should be kept");
+    }
+}
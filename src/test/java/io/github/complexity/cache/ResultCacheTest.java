@@ -0,0 +1,80 @@
+package io.github.complexity.cache;
+
+import io.github.complexity.calculator.ComplexityResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ResultCache
+ */
+class ResultCacheTest {
+
+    private static ComplexityResult result(String fileName) {
+        return new ComplexityResult(fileName, "Java", Map.of("main", 1));
+    }
+
+    @Test
+    void get_afterPut_returnsCachedResult() {
+        ResultCache<String> cache = new ResultCache<>(10, 1024 * 1024);
+        ComplexityResult result = result("A.java");
+
+        cache.put("a", result);
+
+        assertSame(result, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(cache.getStatistics().contains("hits 1, misses 1"));
+    }
+
+    @Test
+    void put_beyondMaxEntries_evictsLeastRecentlyUsed() {
+        ResultCache<String> cache = new ResultCache<>(2, 1024 * 1024);
+        cache.put("a", result("A.java"));
+        cache.put("b", result("B.java"));
+        cache.get("a"); // "b" is now the least recently used entry
+
+        cache.put("c", result("C.java"));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"), "Least recently used entry should be evicted");
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.getStatistics().contains("evictions 1"));
+    }
+
+    @Test
+    void peek_doesNotChangeEvictionOrder() {
+        ResultCache<String> cache = new ResultCache<>(2, 1024 * 1024);
+        ComplexityResult first = result("A.java");
+        cache.put("a", first);
+        cache.put("b", result("B.java"));
+
+        assertSame(first, cache.peek("a"));
+        cache.put("c", result("C.java"));
+
+        assertNull(cache.get("a"), "A peeked entry should still be evicted first");
+        assertNotNull(cache.get("b"));
+        assertTrue(cache.getStatistics().contains("hits 2, misses 1"));
+    }
+
+    @Test
+    void put_beyondMaxWeight_evictsUntilWithinBounds() {
+        ResultCache<String> cache = new ResultCache<>(100, 600);
+        cache.put("a", result("A.java"));
+        cache.put("b", result("B.java"));
+        cache.put("c", result("C.java"));
+
+        assertNull(cache.get("a"), "Oldest entries should be evicted when the weight limit is exceeded");
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    void put_partialResult_isNotCached() {
+        ResultCache<String> cache = new ResultCache<>(10, 1024 * 1024);
+
+        cache.put("a", new ComplexityResult("A.java", "Java", Map.of("main", 1), true));
+
+        assertNull(cache.get("a"), "Partial results must not be served from the cache");
+    }
+}
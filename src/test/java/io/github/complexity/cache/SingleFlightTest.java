@@ -0,0 +1,83 @@
+package io.github.complexity.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SingleFlight
+ */
+class SingleFlightTest {
+
+    private static void awaitShared(SingleFlight<?, ?> flight, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getSharedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void execute_concurrentCallsForSameKey_shareOneComputation() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        SingleFlight.Computation<Object> computation = () -> {
+            computations.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Object();
+        };
+
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> execute(flight, "a", computation));
+        while (computations.get() == 0) {
+            Thread.sleep(1);
+        }
+        CompletableFuture<Object> follower = CompletableFuture.supplyAsync(() -> execute(flight, "a", computation));
+        awaitShared(flight, 1);
+        release.countDown();
+
+        assertSame(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS),
+            "Both callers should receive the same result");
+        assertEquals(1, computations.get(), "The computation should run only once");
+        assertEquals(1, flight.getExecutedCount());
+        assertEquals(1, flight.getSharedCount());
+    }
+
+    @Test
+    void execute_afterCompletion_computesAgain() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+
+        flight.execute("a", computations::incrementAndGet, () -> { });
+        flight.execute("a", computations::incrementAndGet, () -> { });
+
+        assertEquals(2, computations.get(), "Completed computations should not be retained");
+    }
+
+    @Test
+    void execute_failingComputation_propagatesException() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+
+        assertThrows(IOException.class, () -> flight.execute("a", () -> {
+            throw new IOException("broken");
+        }, () -> { }));
+        assertDoesNotThrow(() -> flight.execute("a", () -> 1, () -> { }));
+    }
+
+    private static <V> V execute(SingleFlight<String, V> flight, String key, SingleFlight.Computation<V> computation) {
+        try {
+            return flight.execute(key, computation, () -> { });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
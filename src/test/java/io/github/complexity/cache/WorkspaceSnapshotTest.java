@@ -0,0 +1,97 @@
+package io.github.complexity.cache;
+
+import io.github.complexity.calculator.ComplexityResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WorkspaceSnapshot
+ */
+class WorkspaceSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static FileKey key(String path, long lastModified) {
+        return new FileKey(path, 100, lastModified, "");
+    }
+
+    private static ComplexityResult result(String path, Map<String, Integer> complexities) {
+        return new ComplexityResult(path, "Java", complexities);
+    }
+
+    @Test
+    void open_missingFile_isEmpty() throws IOException {
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.open(tempDir.resolve("snapshot.bin"));
+
+        assertEquals(0, snapshot.size());
+        assertNull(snapshot.get(key("/src/A.java", 1)));
+    }
+
+    @Test
+    void get_afterSave_returnsStoredResult() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        Map<String, Integer> complexities = new LinkedHashMap<>();
+        complexities.put("mainmain(String[])", 4);
+        complexities.put("runrun()", 1);
+        WorkspaceSnapshot.open(file).save(Map.of(
+            key("/src/A.java", 1), result("/src/A.java", complexities),
+            key("/src/B.java", 1), result("/src/B.java", Map.of("runrun()", 2))));
+
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.open(file);
+        ComplexityResult stored = snapshot.get(key("/src/A.java", 1));
+
+        assertEquals(2, snapshot.size());
+        assertNotNull(stored);
+        assertEquals("/src/A.java", stored.getFileName());
+        assertEquals("Java", stored.getLanguage());
+        assertEquals(complexities, stored.getFunctionComplexities());
+        assertEquals(Map.of("runrun()", 2), snapshot.get(key("/src/B.java", 1)).getFunctionComplexities());
+        assertNull(snapshot.get(key("/src/A.java", 2)), "A modified file should not be answered from the snapshot");
+        assertNull(snapshot.get(new FileKey("/src/A.java", 100, 1, "java")), "The language is part of the key");
+        assertNull(snapshot.get(key("/src/C.java", 1)));
+    }
+
+    @Test
+    void save_mergesWithPreviousEntries() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        WorkspaceSnapshot.open(file).save(Map.of(
+            key("/src/A.java", 1), result("/src/A.java", Map.of("a", 1)),
+            key("/src/B.java", 1), result("/src/B.java", Map.of("b", 1))));
+
+        WorkspaceSnapshot.open(file).save(Map.of(
+            key("/src/A.java", 2), result("/src/A.java", Map.of("a", 5)),
+            key("/src/A.java", 3), result("/src/A.java", Map.of("a", 7))));
+
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.open(file);
+        assertEquals(2, snapshot.size());
+        assertNull(snapshot.get(key("/src/A.java", 1)), "Older versions should be replaced");
+        assertEquals(Map.of("a", 7), snapshot.get(key("/src/A.java", 3)).getFunctionComplexities());
+        assertEquals(Map.of("b", 1), snapshot.get(key("/src/B.java", 1)).getFunctionComplexities());
+    }
+
+    @Test
+    void open_unknownFormat_isIgnored() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        Files.write(file, new byte[64]);
+
+        assertEquals(0, WorkspaceSnapshot.open(file).size());
+    }
+
+    @Test
+    void open_otherRulesVersion_isEmpty() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        WorkspaceSnapshot.open(file, 1).save(Map.of(key("/src/A.java", 1), result("/src/A.java", Map.of("a", 1))));
+
+        assertEquals(1, WorkspaceSnapshot.open(file, 1).size());
+        assertEquals(0, WorkspaceSnapshot.open(file, 2).size(), "Results of other counting rules must not be served");
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.complexity.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for AsmLineScanner
+ */
+class AsmLineScannerTest {
+
+    @Test
+    void nextLine_splitsLikeReadLineAndStripsComments() {
+        AsmLineScanner line = new AsmLineScanner("  main PROC ; entry\r\n\t; only a comment\r\rdone:\n");
+
+        assertTrue(line.nextLine());
+        assertEquals("main PROC", line.text(0, "main PROC".length()));
+        assertTrue(line.nextLine());
+        assertTrue(line.isBlank());
+        assertTrue(line.nextLine());
+        assertTrue(line.isBlank(), "A lone carriage return ends a line");
+        assertTrue(line.nextLine());
+        assertTrue(line.isLabel());
+        assertEquals(4, line.lineNumber());
+        assertFalse(line.nextLine(), "A trailing line break does not start another line");
+    }
+
+    @Test
+    void isWordAt_requiresWordBoundary() {
+        AsmLineScanner line = new AsmLineScanner("rts\nRTS_exit\nRts");
+
+        line.nextLine();
+        assertTrue(line.isWordAt(0, "RTS", "rts"));
+        line.nextLine();
+        assertFalse(line.isWordAt(0, "RTS", "rts"));
+        line.nextLine();
+        assertFalse(line.isWordAt(0, "RTS", "rts"), "Only the given spellings match");
+    }
+
+    @Test
+    void opcodeIn_ignoresCaseAndOperands() {
+        AsmLineScanner.OpcodeTable table = new AsmLineScanner.OpcodeTable(
+            new String[] {"JE", "JNE", "LOOPNZ"}, new String[] {"BBR0"});
+        AsmLineScanner line = new AsmLineScanner("jne done\nLoopNz\tagain\nJN done\nbbr0 $12, skip\nJNEX x");
+
+        line.nextLine();
+        assertTrue(line.opcodeIn(table));
+        line.nextLine();
+        assertTrue(line.opcodeIn(table));
+        line.nextLine();
+        assertFalse(line.opcodeIn(table));
+        line.nextLine();
+        assertTrue(line.opcodeIn(table));
+        line.nextLine();
+        assertFalse(line.opcodeIn(table));
+    }
+
+    @Test
+    void vectorDelimiters_findSamePositionsAsScalar() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+            "Requires --add-modules jdk.incubator.vector");
+        Random random = new Random(42);
+        char[] alphabet = {'a', ' ', '\t', ';', '\n', '\r', '\u00e9', '\u20ac'};
+        StringBuilder source = new StringBuilder();
+        while (source.length() < 3 * 16384 + 17) {
+            int run = random.nextInt(80);
+            for (int i = 0; i < run; i++) {
+                source.append('x');
+            }
+            source.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        String text = source.toString();
+
+        AsmDelimiters scalar = new AsmDelimiters.Scalar(text);
+        AsmDelimiters vector = new VectorAsmDelimiters(text);
+        for (int from = 0; from <= text.length(); from += 1 + random.nextInt(40)) {
+            boolean comments = random.nextBoolean();
+            assertEquals(scalar.next(from, comments), vector.next(from, comments), "from " + from);
+        }
+    }
+}
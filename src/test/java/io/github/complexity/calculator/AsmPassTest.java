@@ -0,0 +1,77 @@
+package io.github.complexity.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AsmPass
+ */
+class AsmPassTest {
+
+    private static final int CHUNK_CHARS = 4096;
+
+    private static final String[] X86_LINES = {
+        "  mov eax, 1", "  jne skip", "  loop again", "  cmovz eax, ebx ; pick", "", "; comment", "skip:"
+    };
+    private static final String[] MOS6502_LINES = {
+        "  lda #1", "  beq skip", "  bne back", "", "; comment", "  lda #2 ; no branch", ".endproc"
+    };
+
+    // Lines that change a pending label or an open function without resetting the state
+    private static final String[] RARE_LINES = {"  SUBROUTINE", "rts:", "RTS: ; label, not return"};
+
+    @Test
+    void scanAll_parallelChunksMatchSequentialScan() throws IOException {
+        Random random = new Random(42);
+        // From several resets per chunk to many chunks without any
+        for (int resetEvery : new int[] {20, 200, 5_000}) {
+            assertSameAsSequential(new AssemblerComplexityCalculator(CHUNK_CHARS),
+                source(random, X86_LINES, resetEvery, i -> random.nextBoolean() ? "f" + i + " PROC" : "f" + i + " ENDP"));
+            assertSameAsSequential(new Mos6502ComplexityCalculator(CHUNK_CHARS),
+                source(random, MOS6502_LINES, resetEvery, i -> random.nextBoolean() ? ".proc p" + i : "  rts"));
+        }
+    }
+
+    @Test
+    void scanAll_withoutFunctions_countsAllChunksGlobally() throws IOException {
+        String source = "  jne skip\n  mov eax, ebx\n".repeat(10 * CHUNK_CHARS);
+
+        ComplexityResult result = new AssemblerComplexityCalculator(CHUNK_CHARS).calculate(source, "global.asm");
+
+        assertEquals(Map.of("_global_", 1 + 10 * CHUNK_CHARS), result.getFunctionComplexities());
+    }
+
+    private interface ResetLine {
+        String create(int index);
+    }
+
+    private static String source(Random random, String[] lines, int resetEvery, ResetLine resetLine) {
+        StringBuilder source = new StringBuilder();
+        while (source.length() < 500 * CHUNK_CHARS) {
+            String line = random.nextInt(resetEvery) == 0 ? resetLine.create(random.nextInt(1_000_000))
+                : random.nextInt(200) == 0 ? RARE_LINES[random.nextInt(RARE_LINES.length)]
+                : random.nextInt(200) == 0 ? "label" + random.nextInt(1_000_000) + ":"
+                : lines[random.nextInt(lines.length)];
+            source.append(line).append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        return source.toString();
+    }
+
+    private static void assertSameAsSequential(IncrementalComplexityCalculator calculator, String source)
+            throws IOException {
+        ComplexityResult parallel = calculator.calculate(source, "big.asm");
+        // Recording segments always scans sequentially
+        ComplexityResult sequential = calculator.calculateSegments(source, "big.asm", new AnalysisContext())
+            .getResult();
+
+        assertEquals(new ArrayList<>(sequential.getFunctionComplexities().entrySet()),
+            new ArrayList<>(parallel.getFunctionComplexities().entrySet()), "Same functions in the same order");
+        assertEquals(sequential.getSummary(), parallel.getSummary());
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.complexity.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AssemblerDialectDetector
+ */
+class AssemblerDialectDetectorTest {
+
+    @Test
+    void detect_countsEachIndicatorOnce() {
+        AssemblerDialectDetector detector = new AssemblerDialectDetector(Integer.MAX_VALUE);
+
+        AssemblerDialectDetector.Scores scores = detector.detect("lda #1\nLDA #2\nsta $d020\nmov [rbp-8], eax");
+
+        assertEquals(2, scores.getScore6502());
+        assertEquals(1 + 2 * AssemblerDialectDetector.DIRECTIVE_WEIGHT, scores.getScoreX86(),
+            "MOV once, RBP and EAX as registers");
+    }
+
+    @Test
+    void detect_recognizesPrefixedDirectives() {
+        AssemblerDialectDetector detector = new AssemblerDialectDetector(Integer.MAX_VALUE);
+
+        assertEquals(3 * AssemblerDialectDetector.DIRECTIVE_WEIGHT,
+            detector.detect(".proc init\n.endproc\n!zone main").getScore6502());
+        assertEquals(0, detector.detect("PROCESSOR 65816").getScore6502(), "PROCESSOR needs 6502");
+        assertEquals(AssemblerDialectDetector.DIRECTIVE_WEIGHT, detector.detect("processor\t6502").getScore6502());
+    }
+
+    @Test
+    void detect_examinesOnlyThePrefix() {
+        String code = "lda #1\nrts\n" + "mov eax, ebx\n".repeat(10);
+
+        AssemblerDialectDetector.Scores scores = new AssemblerDialectDetector("lda #1\nrts\n".length()).detect(code);
+
+        assertEquals(2, scores.getScore6502());
+        assertEquals(0, scores.getScoreX86());
+    }
+
+    @Test
+    void detect_stopsOnceTheMarginIsDecisive() {
+        String code = "section .text\nglobal main\nmov eax, ebx\nmov ecx, edx\nlda #1\nldx #2\nldy #3";
+
+        AssemblerDialectDetector.Scores scores = new AssemblerDialectDetector(Integer.MAX_VALUE).detect(code);
+
+        assertEquals(0, scores.getScore6502(), "6502 instructions after the decisive point are not read");
+        assertTrue(scores.getScoreX86() >= AssemblerDialectDetector.DECISIVE_MARGIN);
+    }
+}
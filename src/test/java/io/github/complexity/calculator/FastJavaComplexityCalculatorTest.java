@@ -0,0 +1,72 @@
+package io.github.complexity.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FastJavaComplexityCalculator: on well-formed code it must report the same
+ * methods and complexities as JavaComplexityCalculator
+ */
+class FastJavaComplexityCalculatorTest {
+
+    private static void assertMatchesFullAnalysis(String source) throws IOException {
+        Map<String, Integer> full = new JavaComplexityCalculator().calculate(source, "Sample.java")
+            .getFunctionComplexities();
+        Map<String, Integer> fast = new FastJavaComplexityCalculator().calculate(source, "Sample.java")
+            .getFunctionComplexities();
+        assertEquals(full, fast);
+    }
+
+    @Test
+    void calculate_decisionPoints_matchFullAnalysis() throws IOException {
+        assertMatchesFullAnalysis(String.join("\n",
+            "class Sample {",
+            "    int run(int a, boolean b) {",
+            "        if (a > 0 && b) { a++; } else if (a < -3 || !b) { a--; }",
+            "        for (int i = 0; i < a; i++) { while (i > 2) { i--; } }",
+            "        do { a++; } while (a < 10);",
+            "        try { a /= 0; } catch (ArithmeticException | IllegalStateException e) { a = 0; }",
+            "        switch (a) { case 1: return 1; case 2: return 2; default: return b ? 3 : 4; }",
+            "    }",
+            "}"));
+    }
+
+    @Test
+    void calculate_nestedTypesAndLambdas_matchFullAnalysis() throws IOException {
+        assertMatchesFullAnalysis(String.join("\n",
+            "import java.util.*;",
+            "@SuppressWarnings(\"unchecked\")",
+            "public class Sample<T extends Comparable<? super T>> {",
+            "    private final Runnable field = () -> { if (true) { } };",
+            "    private int[] data = {1, 2};",
+            "    static { for (int i = 0; i < 2; i++) { } }",
+            "    Sample() { if (data.length > 0) { } }",
+            "    abstract static class Base { abstract int size(); }",
+            "    Object create(Map<String, List<int[]>> map, final int values[], String... names) {",
+            "        String text = \"if (a) { \\\" }\"; char brace = '{';",
+            "        list(map).forEach(entry -> { if (entry != null) { } });",
+            "        return new Base() {",
+            "            int size() { return map.isEmpty() ? 0 : map.size(); }",
+            "        };",
+            "    }",
+            "    List<?> list(Map<String, ?> map) { return new ArrayList<>(map.keySet()); }",
+            "    enum Op {",
+            "        PLUS { int apply(int a) { return a > 0 ? a : 0; } }, MINUS;",
+            "        int apply(int a) { return -a; }",
+            "    }",
+            "    @interface Marker { String[] names() default {}; }",
+            "}"));
+    }
+
+    @Test
+    void calculate_malformedCode_doesNotThrow() {
+        ComplexityResult result = new FastJavaComplexityCalculator().calculate(
+            "class Broken { void run(int a) { if (a > 0) { ", "Broken.java");
+
+        assertEquals(2, (int) result.getFunctionComplexities().get("runrun(int)"));
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.complexity.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IncrementalAnalysis: every update must match a full analysis of the edited source
+ */
+class IncrementalAnalysisTest {
+
+    private static final String JAVA_SOURCE = String.join("\n",
+        "public class Sample {",
+        "    private int count;",
+        "",
+        "    public int first(int a) {",
+        "        if (a > 0) {",
+        "            return a;",
+        "        }",
+        "        return 0;",
+        "    }",
+        "",
+        "    public void second(int[] values) {",
+        "        for (int value : values) {",
+        "            count += value;",
+        "        }",
+        "    }",
+        "}");
+
+    private static final String ASM_SOURCE = String.join("\n",
+        "first PROC",
+        "    cmp eax, 0",
+        "    je done",
+        "done:",
+        "    ret",
+        "first ENDP",
+        "",
+        "second PROC",
+        "    test eax, eax",
+        "    jnz skip",
+        "skip:",
+        "    ret",
+        "second ENDP");
+
+    private static final String MOS6502_SOURCE = String.join("\n",
+        "first:",
+        "    LDA $00",
+        "    BEQ done",
+        "done:",
+        "    RTS",
+        "",
+        "second:",
+        "    LDX #$00",
+        "    RTS");
+
+    /**
+     * Replaces oldCount lines at start (0-based) by the given lines.
+     */
+    private static String edit(String source, int start, int oldCount, String... newLines) {
+        List<String> lines = new ArrayList<>(Arrays.asList(source.split("\n", -1)));
+        lines.subList(start, start + oldCount).clear();
+        lines.addAll(start, Arrays.asList(newLines));
+        return String.join("\n", lines);
+    }
+
+    private static IncrementalAnalysis update(IncrementalComplexityCalculator calculator, String source,
+                                              int start, int oldCount, String... newLines) throws IOException {
+        IncrementalAnalysis analysis = IncrementalAnalysis.analyze(calculator, source, "Sample", new AnalysisContext());
+        String edited = edit(source, start, oldCount, newLines);
+        IncrementalAnalysis updated = analysis.update(edited,
+            List.of(new IncrementalAnalysis.LineChange(start, oldCount, start, newLines.length)), new AnalysisContext());
+
+        ComplexityResult full = calculator.calculate(edited, "Sample", new AnalysisContext());
+        assertEquals(full.getFunctionComplexities(), updated.getResult().getFunctionComplexities());
+        assertEquals(full.getTotalComplexity(), updated.getResult().getTotalComplexity());
+        return updated;
+    }
+
+    @Test
+    void java_editInsideMethod_reanalyzesOnlyThatMethod() throws IOException {
+        IncrementalAnalysis updated = update(new JavaComplexityCalculator(), JAVA_SOURCE, 5, 1,
+            "            return a > 10 && a < 20 ? a : -a;");
+
+        assertTrue(updated.isIncremental());
+        assertEquals(6, updated.getReanalyzedLines(), "Only the lines of first() should be analyzed again");
+        assertEquals(4, (int) updated.getResult().getFunctionComplexities().get("firstfirst(int)"));
+    }
+
+    @Test
+    void java_addedMethod_isReported() throws IOException {
+        IncrementalAnalysis updated = update(new JavaComplexityCalculator(), JAVA_SOURCE, 8, 1,
+            "    }",
+            "    public boolean third(boolean a, boolean b) {",
+            "        return a || b;",
+            "    }");
+
+        assertTrue(updated.isIncremental());
+        assertEquals(2, (int) updated.getResult().getFunctionComplexities().get("thirdthird(boolean, boolean)"));
+    }
+
+    @Test
+    void java_commentBetweenMethods_reusesAllMethods() throws IOException {
+        IncrementalAnalysis updated = update(new JavaComplexityCalculator(), JAVA_SOURCE, 9, 1,
+            "    // Adds all values (see first())", "");
+
+        assertTrue(updated.isIncremental());
+        assertEquals(2, updated.getReanalyzedLines());
+    }
+
+    @Test
+    void java_declarationBetweenMethods_fallsBackToFullAnalysis() throws IOException {
+        IncrementalAnalysis updated = update(new JavaComplexityCalculator(), JAVA_SOURCE, 9, 0,
+            "    private int total;");
+
+        assertFalse(updated.isIncremental());
+    }
+
+    @Test
+    void java_editChangingStructure_fallsBackToFullAnalysis() throws IOException {
+        IncrementalAnalysis updated = update(new JavaComplexityCalculator(), JAVA_SOURCE, 0, 1,
+            "public class Sample implements Runnable { public void run() { }");
+
+        assertFalse(updated.isIncremental());
+    }
+
+    @Test
+    void asm_editInsideProc_reanalyzesOnlyThatProc() throws IOException {
+        IncrementalAnalysis updated = update(new AssemblerComplexityCalculator(), ASM_SOURCE, 9, 0,
+            "    jz skip", "    loop second");
+
+        assertTrue(updated.isIncremental());
+        assertEquals(8, updated.getReanalyzedLines());
+        assertEquals(4, (int) updated.getResult().getFunctionComplexities().get("second"));
+    }
+
+    @Test
+    void asm_removedEndp_fallsBackToFullAnalysis() throws IOException {
+        IncrementalAnalysis updated = update(new AssemblerComplexityCalculator(), ASM_SOURCE, 5, 1);
+
+        assertFalse(updated.isIncremental());
+    }
+
+    @Test
+    void mos6502_editInsideSubroutine_reanalyzesOnlyThatSubroutine() throws IOException {
+        IncrementalAnalysis updated = update(new Mos6502ComplexityCalculator(), MOS6502_SOURCE, 7, 0,
+            "    BNE second");
+
+        assertTrue(updated.isIncremental());
+    }
+
+    @Test
+    void mos6502_removedRts_matchesFullAnalysis() throws IOException {
+        update(new Mos6502ComplexityCalculator(), MOS6502_SOURCE, 4, 1);
+    }
+
+    @Test
+    void update_inconsistentChanges_fallsBackToFullAnalysis() throws IOException {
+        JavaComplexityCalculator calculator = new JavaComplexityCalculator();
+        IncrementalAnalysis analysis = IncrementalAnalysis.analyze(calculator, JAVA_SOURCE, "Sample",
+            new AnalysisContext());
+        String edited = edit(JAVA_SOURCE, 5, 1, "            return -a;", "            // negative");
+
+        IncrementalAnalysis updated = analysis.update(edited,
+            List.of(new IncrementalAnalysis.LineChange(5, 1, 5, 1)), new AnalysisContext());
+
+        assertFalse(updated.isIncremental());
+        assertEquals(calculator.calculate(edited, "Sample", new AnalysisContext()).getFunctionComplexities(),
+            updated.getResult().getFunctionComplexities());
+    }
+
+    @Test
+    void parseUnifiedDiff_readsHunkHeaders() {
+        String diff = String.join("\n",
+            "--- a/Sample.java",
+            "+++ b/Sample.java",
+            "@@ -5,2 +5,3 @@ public class Sample {",
+            " context",
+            "@@ -20 +21,0 @@",
+            "@@ -30,0 +30,2 @@");
+
+        List<IncrementalAnalysis.LineChange> changes = IncrementalAnalysis.parseUnifiedDiff(diff);
+
+        assertEquals(3, changes.size());
+        assertEquals(4, changes.get(0).getOldStart());
+        assertEquals(2, changes.get(0).getOldCount());
+        assertEquals(3, changes.get(0).getNewCount());
+        assertEquals(19, changes.get(1).getOldStart());
+        assertEquals(1, changes.get(1).getOldCount());
+        assertEquals(21, changes.get(1).getNewStart());
+        assertEquals(30, changes.get(2).getOldStart(), "An insertion refers to the line it follows");
+        assertEquals(0, changes.get(2).getOldCount());
+    }
+
+    @Test
+    void parseUnifiedDiff_withoutHunks_throws() {
+        assertThrows(IllegalArgumentException.class, () -> IncrementalAnalysis.parseUnifiedDiff("no diff"));
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.complexity.calculator;
+
+import com.github.javaparser.ParserConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JavaComplexityCalculator
+ */
+class JavaComplexityCalculatorTest {
+
+    private static Map<String, Integer> calculate(String source) throws IOException {
+        return new JavaComplexityCalculator().calculate(source, "Sample.java", new AnalysisContext())
+            .getFunctionComplexities();
+    }
+
+    @Test
+    void calculate_arrowSwitchStatement_isParsedAtEveryLevel() throws IOException {
+        String source = String.join("\n",
+            "class Sample {",
+            "    void run(int a) {",
+            "        switch (a) { case 1 -> foo(); case 2 -> { bar(); } default -> baz(); }",
+            "    }",
+            "}");
+
+        for (ParserConfiguration.LanguageLevel level : new ParserConfiguration.LanguageLevel[] {
+                ParserConfiguration.LanguageLevel.POPULAR, ParserConfiguration.LanguageLevel.JAVA_17}) {
+            JavaComplexityCalculator calculator = new JavaComplexityCalculator(level);
+            Map<String, Integer> fromString = calculator.calculate(source, "Sample.java", new AnalysisContext())
+                .getFunctionComplexities();
+            Map<String, Integer> fromReader = calculator.calculate(new StringReader(source), "Sample.java",
+                new AnalysisContext()).getFunctionComplexities();
+
+            assertEquals(3, (int) fromString.get("runrun(int)"), level.toString());
+            assertEquals(fromString, fromReader, level.toString());
+        }
+    }
+
+    @Test
+    void calculate_switchExpression_needsJava17() throws IOException {
+        String source = String.join("\n",
+            "class Sample {",
+            "    int run(int a) {",
+            "        return switch (a) { case 1 -> 5; case 2, 3 -> 6; default -> 7; };",
+            "    }",
+            "}");
+        JavaComplexityCalculator java17 = new JavaComplexityCalculator(ParserConfiguration.LanguageLevel.JAVA_17);
+
+        Map<String, Integer> fromString = java17.calculate(source, "Sample.java", new AnalysisContext())
+            .getFunctionComplexities();
+        Map<String, Integer> fromReader = java17.calculate(new StringReader(source), "Sample.java",
+            new AnalysisContext()).getFunctionComplexities();
+
+        assertEquals(3, (int) fromString.get("runrun(int)"));
+        assertEquals(fromString, fromReader);
+        assertThrows(IOException.class, () -> calculate(source));
+    }
+
+    @Test
+    void calculate_countsDecisionPoints() throws IOException {
+        Map<String, Integer> complexities = calculate(String.join("\n",
+            "class Sample {",
+            "    int run(int a, boolean b) {",
+            "        if (a > 0 && b) { a++; }",
+            "        for (int i = 0; i < a; i++) { a--; }",
+            "        switch (a) { case 1: return 1; case 2: return 2; default: return b ? 3 : 4; }",
+            "    }",
+            "}"));
+
+        assertEquals(7, (int) complexities.get("runrun(int, boolean)"));
+    }
+
+    @Test
+    void calculate_nestedMethods_countTowardInnermostMethod() throws IOException {
+        Map<String, Integer> complexities = calculate(String.join("\n",
+            "class Sample {",
+            "    Runnable outer(int a) {",
+            "        if (a > 0) { a++; }",
+            "        return new Runnable() {",
+            "            public void run() {",
+            "                while (a > 0 || a < -5) { }",
+            "            }",
+            "        };",
+            "    }",
+            "    void local() {",
+            "        class Helper {",
+            "            int help(int b) { return b > 0 ? b : -b; }",
+            "        }",
+            "    }",
+            "}"));
+
+        assertEquals(2, (int) complexities.get("outerouter(int)"));
+        assertEquals(3, (int) complexities.get("runrun()"));
+        assertEquals(1, (int) complexities.get("locallocal()"));
+        assertEquals(2, (int) complexities.get("helphelp(int)"));
+    }
+
+    @Test
+    void calculate_fromReader_parsesThroughProvider() throws IOException {
+        String source = "class Sample {\n    int run(int a) { return a > 0 ? 1 : 0; }\n}";
+
+        Map<String, Integer> complexities = new JavaComplexityCalculator()
+            .calculate(new StringReader(source), "Sample.java", new AnalysisContext()).getFunctionComplexities();
+
+        assertEquals(calculate(source), complexities);
+        assertEquals(2, (int) complexities.get("runrun(int)"));
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.complexity.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LineChunkReader
+ */
+class LineChunkReaderTest {
+
+    @Test
+    void next_cutsOnlyAfterCompleteLineBreaks() throws IOException {
+        List<String> chunks = chunks("ab\r\ncd\r\nef\rgh", 4);
+
+        assertEquals("ab\r\ncd\r\nef\rgh", String.join("", chunks));
+        assertEquals(List.of("ab\r\n", "cd\r\n", "ef\r", "gh"), chunks,
+            "A carriage return at the end of the buffer waits for the next character");
+    }
+
+    @Test
+    void next_growsTheBufferForLongLines() throws IOException {
+        String longLine = "x".repeat(20) + "\n";
+        String longerLine = "y".repeat(40) + "\n";
+
+        assertEquals(List.of(longLine, longerLine), chunks(longLine + longerLine, 4));
+        assertEquals(List.of("z".repeat(9)), chunks("z".repeat(9), 4), "The input may end without a line break");
+    }
+
+    @Test
+    void calculate_fromReaderMatchesString() throws IOException {
+        StringBuilder x86 = new StringBuilder();
+        StringBuilder mos6502 = new StringBuilder();
+        for (int i = 0; x86.length() < 3 * LineChunkReader.DEFAULT_CHUNK_CHARS; i++) {
+            x86.append("f").append(i).append(" PROC\r\n  cmp eax, ").append(i)
+                .append("\r\n  jne skip ; forward\r\n  loop f\r\nf").append(i).append(" ENDP\r\n");
+            mos6502.append("sub").append(i).append(":\n  lda #").append(i % 256)
+                .append("\n  beq done\n  bne sub").append(i).append("\n  rts\n");
+        }
+
+        for (ComplexityCalculator calculator : List.of(new AssemblerComplexityCalculator(),
+                new Mos6502ComplexityCalculator())) {
+            String source = calculator instanceof AssemblerComplexityCalculator ? x86.toString() : mos6502.toString();
+            ComplexityResult fromString = calculator.calculate(source, "big.asm");
+            ComplexityResult fromReader = calculator.calculate(new StringReader(source), "big.asm",
+                new AnalysisContext());
+
+            assertEquals(fromString.getFunctionComplexities(), fromReader.getFunctionComplexities());
+        }
+    }
+
+    @Test
+    void next_splitsTextInMemoryAtLineEnds() throws IOException {
+        LineChunkReader reader = new LineChunkReader("ab\r\ncd\nef\rgh", 3);
+
+        List<String> chunks = new ArrayList<>();
+        for (AsmLineScanner chunk = reader.next(); chunk != null; chunk = reader.next()) {
+            chunks.add(chunk.rangeText());
+        }
+
+        assertEquals(List.of("ab\r\n", "cd\nef\r", "gh"), chunks, "Cut at the first line end after the chunk size");
+        assertNull(new LineChunkReader("", 3).next());
+    }
+
+    private static List<String> chunks(String text, int chunkChars) throws IOException {
+        LineChunkReader reader = new LineChunkReader(new StringReader(text), chunkChars);
+        List<String> chunks = new ArrayList<>();
+        for (AsmLineScanner chunk = reader.next(); chunk != null; chunk = reader.next()) {
+            chunks.add(chunk.rangeText());
+        }
+        return chunks;
+    }
+}
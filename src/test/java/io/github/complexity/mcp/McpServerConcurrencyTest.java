@@ -0,0 +1,409 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.github.complexity.calculator.AnalysisContext;
+import io.github.complexity.calculator.ComplexityCalculator;
+import io.github.complexity.calculator.ComplexityResult;
+import io.github.complexity.calculator.JavaComplexityCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for concurrent request dispatch in McpServer
+ */
+class McpServerConcurrencyTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Calculator that blocks until the given latch is released (or a timeout elapses).
+     */
+    private static class BlockingCalculator implements ComplexityCalculator {
+        private final CountDownLatch release;
+        volatile boolean releasedByOtherRequest;
+
+        BlockingCalculator(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public ComplexityResult calculate(String sourceCode, String fileName) {
+            try {
+                releasedByOtherRequest = release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ComplexityResult(fileName, "Slow", Map.of("slow", 1));
+        }
+
+        @Override
+        public String getLanguage() {
+            return "Slow";
+        }
+    }
+
+    /**
+     * Calculator that completes one function and then runs until its context asks it to stop.
+     */
+    private static class UntilStoppedCalculator implements ComplexityCalculator {
+        @Override
+        public ComplexityResult calculate(String sourceCode, String fileName) {
+            throw new UnsupportedOperationException("context required");
+        }
+
+        @Override
+        public ComplexityResult calculate(String sourceCode, String fileName, AnalysisContext context) {
+            Map<String, Integer> completed = Map.of("done", 1);
+            long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!context.shouldStop() && System.nanoTime() < giveUp) {
+                Thread.onSpinWait();
+            }
+            context.checkpoint(fileName, getLanguage(), completed);
+            return new ComplexityResult(fileName, getLanguage(), Map.of("finished", 1));
+        }
+
+        @Override
+        public String getLanguage() {
+            return "Endless";
+        }
+    }
+
+    /**
+     * Collects the written response lines and signals when a response with the given id appears.
+     */
+    private static class RecordingOutputStream extends OutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final List<JsonObject> responses = new ArrayList<>();
+        private final String signalId;
+        private final CountDownLatch signal;
+
+        RecordingOutputStream(String signalId, CountDownLatch signal) {
+            this.signalId = signalId;
+            this.signal = signal;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b != '\n') {
+                buffer.write(b);
+                return;
+            }
+            JsonObject response = JsonParser.parseString(
+                buffer.toString(StandardCharsets.UTF_8)).getAsJsonObject();
+            buffer.reset();
+            responses.add(response);
+            if (response.has("id") && signalId.equals(response.get("id").getAsString())) {
+                signal.countDown();
+            }
+        }
+
+        synchronized List<JsonObject> getResponses() {
+            return new ArrayList<>(responses);
+        }
+    }
+
+    private static String toolsCall(int id, String language, String sourceCode) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_complexity_code\",\"arguments\":{" +
+            "\"source_code\":\"" + sourceCode + "\",\"language\":\"" + language + "\"}}}";
+    }
+
+    @Test
+    void run_slowRequest_doesNotDelayFastRequest() {
+        CountDownLatch fastResponseWritten = new CountDownLatch(1);
+        BlockingCalculator slow = new BlockingCalculator(fastResponseWritten);
+        McpServer server = new McpServer(Map.of(
+            "slow", slow,
+            "java", new JavaComplexityCalculator()));
+
+        String input = toolsCall(1, "slow", "anything") + "\n" +
+            toolsCall(2, "java", "class A { void a() { if (true) {} } }") + "\n";
+        RecordingOutputStream out = new RecordingOutputStream("2", fastResponseWritten);
+
+        server.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonObject> responses = out.getResponses();
+        assertEquals(2, responses.size(), "Both requests should be answered");
+        assertEquals("2", responses.get(0).get("id").getAsString(), "Fast request should be answered first");
+        assertEquals("1", responses.get(1).get("id").getAsString(), "Slow request should be answered last");
+        assertTrue(slow.releasedByOtherRequest, "Slow request should still be running when the fast one completes");
+    }
+
+    @Test
+    void run_concurrentRequests_responsesAreNotInterleaved() {
+        StringBuilder input = new StringBuilder();
+        int requests = 50;
+        for (int i = 1; i <= requests; i++) {
+            input.append(toolsCall(i, "java", "class A" + i + " { void m() { while (x && y) {} } }")).append('\n');
+        }
+        RecordingOutputStream out = new RecordingOutputStream("none", new CountDownLatch(1));
+
+        new McpServer().run(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonObject> responses = out.getResponses();
+        assertEquals(requests, responses.size(), "Every request should produce exactly one well-formed line");
+        for (JsonObject response : responses) {
+            assertTrue(response.has("result"), "Response should be successful: " + response);
+        }
+    }
+
+    @Test
+    void run_batchRequest_returnsSingleArrayResponse() {
+        String batch = "[" +
+            toolsCall(1, "java", "class A { void a() { if (x) {} } }") + "," +
+            "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}," +
+            toolsCall(2, "asm", "start:\\n  JE done\\ndone:\\n  RET") + "," +
+            "42" +
+            "]\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length, "A batch should be answered with exactly one line");
+        var responses = JsonParser.parseString(lines[0]).getAsJsonArray();
+        assertEquals(3, responses.size(), "Notifications should not produce batch entries");
+        assertEquals(1, responses.get(0).getAsJsonObject().get("id").getAsInt());
+        assertEquals(2, responses.get(1).getAsJsonObject().get("id").getAsInt());
+        assertEquals(-32600, responses.get(2).getAsJsonObject()
+            .getAsJsonObject("error").get("code").getAsInt(), "Invalid elements should yield Invalid Request");
+    }
+
+    @Test
+    void run_batchOfNotifications_producesNoResponse() {
+        String batch = "[{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}]\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)), out);
+
+        assertEquals("", out.toString(StandardCharsets.UTF_8), "A batch of notifications should not be answered");
+    }
+
+    @Test
+    void run_cancelledRequest_isNotAnswered() {
+        McpServer server = new McpServer(Map.of("endless", new UntilStoppedCalculator()));
+        String input = toolsCall(1, "endless", "x") + "\n" +
+            "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/cancelled\",\"params\":{\"requestId\":1}}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        server.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        assertEquals("", out.toString(StandardCharsets.UTF_8), "Cancelled requests should not be answered");
+    }
+
+    @Test
+    void run_requestWithTimeout_returnsPartialResult() {
+        McpServer server = new McpServer(Map.of("endless", new UntilStoppedCalculator()));
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_complexity_code\",\"arguments\":{" +
+            "\"source_code\":\"x\",\"language\":\"endless\",\"timeout_ms\":50}}}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        server.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        JsonObject response = JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonObject();
+        String text = response.getAsJsonObject("result").getAsJsonArray("content")
+            .get(0).getAsJsonObject().get("text").getAsString();
+        assertTrue(text.contains("Partial Result"), "Timed out analysis should be marked as partial");
+        assertTrue(text.contains("done: 1"), "Completed functions should be listed");
+        assertFalse(text.contains("finished"), "Unfinished work should not be reported");
+    }
+
+    @Test
+    void run_progressToken_sendsPartialResultsBeforeResponse() throws IOException {
+        Files.writeString(tempDir.resolve("A.java"), "class A { void a() { if (x) {} } }");
+        Files.writeString(tempDir.resolve("B.java"), "class B { void b() { while (x && y) {} } }");
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_directory\",\"_meta\":{\"progressToken\":\"dir\"},\"arguments\":{" +
+            "\"directory_path\":" + new JsonPrimitive(tempDir.toString()) + ",\"partial_results\":true}}}\n";
+        RecordingOutputStream out = new RecordingOutputStream("none", new CountDownLatch(1));
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonObject> messages = out.getResponses();
+        JsonObject response = messages.get(messages.size() - 1);
+        assertEquals(1, response.get("id").getAsInt(), "The response should come last");
+        Map<String, Integer> functions = new HashMap<>();
+        for (JsonObject notification : messages.subList(0, messages.size() - 1)) {
+            assertEquals("notifications/progress", notification.get("method").getAsString());
+            JsonObject params = notification.getAsJsonObject("params");
+            assertEquals("dir", params.get("progressToken").getAsString());
+            if (params.has("_meta")) {
+                for (JsonElement batch : params.getAsJsonObject("_meta").getAsJsonArray("partialResults")) {
+                    batch.getAsJsonObject().getAsJsonObject("functions").entrySet()
+                        .forEach(function -> functions.put(function.getKey(), function.getValue().getAsInt()));
+                }
+            }
+        }
+        assertEquals(Map.of("aa()", 2, "bb()", 3), functions, "Every file should be listed before the response");
+    }
+
+    @Test
+    void run_jsonOutput_returnsStructuredContent() {
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_complexity_code\",\"arguments\":{\"language\":\"java\",\"output\":\"json\"," +
+            "\"source_code\":\"class A { void a() { if (x) {} } void b() { while (x && y) {} } void c() {} }\"}}}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        JsonObject content = JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonObject()
+            .getAsJsonObject("result").getAsJsonObject("structuredContent");
+        assertEquals("inline_code", content.get("file").getAsString());
+        assertEquals("Java", content.get("language").getAsString());
+        assertFalse(content.get("partial").getAsBoolean());
+        assertEquals(6, content.get("totalComplexity").getAsInt());
+        assertEquals(3, content.get("maxComplexity").getAsInt());
+        assertEquals("[{\"name\":\"bb()\",\"complexity\":3},{\"name\":\"aa()\",\"complexity\":2}," +
+            "{\"name\":\"cc()\",\"complexity\":1}]", content.get("functions").toString());
+    }
+
+    @Test
+    void run_toolsList_isTheSameForEveryRequest() {
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/list\"}\n" +
+            "[{\"jsonrpc\":\"2.0\",\"id\":\"two\",\"method\":\"tools/list\"}]\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        // The two responses are written in completion order
+        JsonObject first = null;
+        JsonObject second = null;
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonElement response = JsonParser.parseString(line);
+            if (response.isJsonArray()) {
+                second = response.getAsJsonArray().get(0).getAsJsonObject();
+            } else {
+                first = response.getAsJsonObject();
+            }
+        }
+        assertEquals(1, first.get("id").getAsInt());
+        assertEquals("two", second.get("id").getAsString());
+        assertEquals(first.get("result"), second.get("result"));
+        assertTrue(first.getAsJsonObject("result").getAsJsonArray("tools").size() > 0);
+    }
+
+    @Test
+    void run_malformedMessage_isAnsweredAndReadingContinues() {
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{\n" +
+            toolsCall(2, "java", "class A { void a() { if (x) {} } }") + "\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(-32700, JsonParser.parseString(lines[0]).getAsJsonObject()
+            .getAsJsonObject("error").get("code").getAsInt());
+        assertEquals(2, JsonParser.parseString(lines[1]).getAsJsonObject().get("id").getAsInt());
+    }
+
+    @Test
+    void run_numericToolName_isAnsweredAndReadingContinues() {
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{\"name\":5}}\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/list\"}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        Map<Integer, JsonObject> responses = new HashMap<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonObject response = JsonParser.parseString(line).getAsJsonObject();
+            responses.put(response.get("id").getAsInt(), response);
+        }
+        assertTrue(responses.get(1).has("error"));
+        assertTrue(responses.get(2).getAsJsonObject("result").getAsJsonArray("tools").size() > 0);
+    }
+
+    @Test
+    void run_malformedToolCallParams_areRejectedPerRequest() {
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_complexity_code\",\"arguments\":{\"timeout_ms\":\"abc\"}}}\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\",\"params\":[]}\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":{\"name\":\"tools/call\"}}\n" +
+            "[{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"tools/call\",\"params\":{\"name\":\"server_stats\"," +
+            "\"_meta\":{\"progressToken\":1},\"arguments\":{\"partial_results\":\"yes\"}}}]\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":5,\"method\":\"tools/list\"}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        Map<Integer, Integer> errorCodes = new HashMap<>();
+        boolean toolsListed = false;
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonElement parsed = JsonParser.parseString(line);
+            JsonObject response = parsed.isJsonArray() ? parsed.getAsJsonArray().get(0).getAsJsonObject() :
+                parsed.getAsJsonObject();
+            if (response.has("error")) {
+                errorCodes.put(response.get("id").getAsInt(), response.getAsJsonObject("error").get("code").getAsInt());
+            } else if (response.get("id").getAsInt() == 5) {
+                toolsListed = true;
+            }
+        }
+        assertEquals(Map.of(1, -32602, 2, -32602, 3, -32600, 4, -32602), errorCodes);
+        assertTrue(toolsListed, "The server should keep reading after malformed requests");
+    }
+
+    @Test
+    void run_nonStringToolMembers_areReportedByTheRequest() {
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":{\"tool\":\"analyze_directory\"}}}\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_complexity_code\",\"arguments\":{\"source_code\":[1],\"language\":\"java\"}}}\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_complexity\",\"arguments\":{\"file_path\":{}}}}\n" +
+            "{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"tools/list\"}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        Map<Integer, Boolean> failed = new HashMap<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonObject response = JsonParser.parseString(line).getAsJsonObject();
+            failed.put(response.get("id").getAsInt(), response.has("error"));
+        }
+        assertEquals(Map.of(1, true, 2, true, 3, true, 4, false), failed);
+    }
+
+    @Test
+    void run_fullQueue_rejectsWithServerBusy() {
+        CountDownLatch busyResponseWritten = new CountDownLatch(1);
+        BlockingCalculator slow = new BlockingCalculator(busyResponseWritten);
+        // One worker and one queue slot per lane: request 1 runs, request 2 waits, request 3 is rejected
+        McpServer server = new McpServer(Map.of("slow", slow), new RequestScheduler(1, 1, 1, 1));
+
+        String input = toolsCall(1, "slow", "a") + "\n" + toolsCall(2, "slow", "b") + "\n" +
+            toolsCall(3, "slow", "c") + "\n";
+        RecordingOutputStream out = new RecordingOutputStream("3", busyResponseWritten);
+
+        server.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonObject> responses = out.getResponses();
+        assertEquals(3, responses.size(), "Every request should be answered");
+        JsonObject rejected = responses.get(0);
+        assertEquals("3", rejected.get("id").getAsString(), "The rejection should be reported immediately");
+        assertEquals(-32001, rejected.getAsJsonObject("error").get("code").getAsInt());
+        assertTrue(responses.get(1).has("result"));
+        assertTrue(responses.get(2).has("result"));
+    }
+}
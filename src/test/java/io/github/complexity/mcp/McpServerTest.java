@@ -1,7 +1,18 @@
 package io.github.complexity.mcp;
 
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -10,6 +21,9 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class McpServerTest {
 
+    @TempDir
+    Path tempDir;
+
     /**
      * Helper method to access private detectAssemblerType method via reflection
      */
@@ -200,4 +214,29 @@ class McpServerTest {
         String result = callDetectAssemblerType(code);
         assertEquals("6502", result, "6502 branch instructions should be detected as 6502");
     }
+
+    @Test
+    void analyzeDirectory_smallTree_reportsSelectedFiles() throws IOException {
+        Files.createDirectories(tempDir.resolve("src"));
+        Files.createDirectories(tempDir.resolve("ignored"));
+        Files.writeString(tempDir.resolve("src/A.java"), "class A { void a() { if (x) {} } }");
+        Files.writeString(tempDir.resolve("src/B.java"), "class B { void b() { while (x && y) {} } }");
+        Files.writeString(tempDir.resolve("ignored/C.java"), "class C { void c() {} }");
+        Files.writeString(tempDir.resolve("notes.txt"), "not source");
+        Files.write(tempDir.resolve(".gitignore"), List.of("ignored/"));
+        String input = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{" +
+            "\"name\":\"analyze_directory\",\"arguments\":{\"directory_path\":" +
+            new JsonPrimitive(tempDir.toString()) + "}}}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new McpServer().run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        String text = JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonObject()
+            .getAsJsonObject("result").getAsJsonArray("content").get(0).getAsJsonObject().get("text").getAsString();
+        assertTrue(text.contains("Files Analyzed: 2"), text);
+        assertTrue(text.contains("Total Complexity: 5"), text);
+        assertTrue(text.contains("Max Complexity: 3 in bb() (src" + tempDir.getFileSystem().getSeparator() + "B.java)"),
+            text);
+        assertFalse(text.contains("C.java"), "Files ignored by .gitignore should not be analyzed");
+    }
 }
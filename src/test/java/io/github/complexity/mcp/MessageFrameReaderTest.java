@@ -0,0 +1,50 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MessageFrameReader
+ */
+class MessageFrameReaderTest {
+
+    @Test
+    void nextFrame_skipsBlankLinesAndUnparsedRests() throws IOException {
+        MessageFrameReader frames = new MessageFrameReader(
+            new StringReader("{\"a\":1}\r\n\n   \n{\"b\": [1, 2\n{\"c\":\"x\\ny\"}"), 1024);
+
+        List<String> messages = new ArrayList<>();
+        while (frames.nextFrame()) {
+            try {
+                messages.add(JsonParser.parseReader(frames).toString());
+            } catch (JsonParseException e) {
+                messages.add("error");
+            }
+        }
+
+        assertEquals(List.of("{\"a\":1}", "error", "{\"c\":\"x\\ny\"}"), messages);
+    }
+
+    @Test
+    void read_longerThanLimit_failsWithoutEndingTheInput() throws IOException {
+        String large = "{\"source_code\":\"" + "x".repeat(100_000) + "\"}";
+        MessageFrameReader frames = new MessageFrameReader(new StringReader(large + "\n{\"id\":2}\n"), 1000);
+
+        assertTrue(frames.nextFrame());
+        assertThrows(JsonParseException.class, () -> JsonParser.parseReader(frames));
+        assertTrue(frames.isTooLarge());
+
+        assertTrue(frames.nextFrame(), "The next message should still be read");
+        assertFalse(frames.isTooLarge());
+        assertEquals("{\"id\":2}", JsonParser.parseReader(frames).toString());
+        assertFalse(frames.nextFrame());
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.complexity.mcp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.github.complexity.calculator.ComplexityResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProgressReporter
+ */
+class ProgressReporterTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Test
+    void checkpoint_withPartialResults_listsOnlyNewFunctions() {
+        ProgressReporter reporter = new ProgressReporter(new JsonPrimitive("token"), true, new ResponseWriter(out), 0);
+        Map<String, Integer> completed = new LinkedHashMap<>();
+        completed.put("a", 1);
+        reporter.checkpoint("big.asm", "Assembler", completed);
+        completed.put("b", 3);
+        reporter.checkpoint("big.asm", "Assembler", completed);
+        completed.put("c", 2);
+        reporter.fileCompleted(new ComplexityResult("big.asm", "Assembler", completed));
+
+        List<JsonObject> notifications = notifications();
+        assertEquals(3, notifications.size());
+        assertEquals("{\"a\":1}", functions(notifications.get(0)));
+        assertEquals("{\"b\":3}", functions(notifications.get(1)));
+        assertEquals("{\"c\":2}", functions(notifications.get(2)), "The rest is listed when the file completes");
+        for (int i = 0; i < notifications.size(); i++) {
+            JsonObject params = notifications.get(i).getAsJsonObject("params");
+            assertEquals("notifications/progress", notifications.get(i).get("method").getAsString());
+            assertEquals("token", params.get("progressToken").getAsString());
+            assertEquals(i + 1, params.get("progress").getAsLong());
+        }
+    }
+
+    @Test
+    void checkpoint_withinInterval_isNotReported() {
+        ProgressReporter reporter = new ProgressReporter(new JsonPrimitive(7), false, new ResponseWriter(out), 60_000);
+
+        reporter.checkpoint("a.java", "Java", Map.of("a", 1));
+        reporter.fileCompleted(new ComplexityResult("a.java", "Java", Map.of("a", 1)));
+        reporter.flush();
+
+        assertEquals(List.of(), notifications(), "Without partial results there is nothing to flush");
+    }
+
+    @Test
+    void flush_sendsCompletedFilesCollectedWithinInterval() {
+        ProgressReporter reporter = new ProgressReporter(new JsonPrimitive(7), true, new ResponseWriter(out), 60_000);
+
+        reporter.fileCompleted(new ComplexityResult("a.java", "Java", Map.of("a", 1)));
+        reporter.fileCompleted(new ComplexityResult("b.java", "Java", Map.of("b", 2)));
+        reporter.flush();
+        reporter.flush();
+
+        List<JsonObject> notifications = notifications();
+        assertEquals(1, notifications.size(), "Both files should arrive in one notification");
+        JsonObject params = notifications.get(0).getAsJsonObject("params");
+        assertEquals(2, params.getAsJsonObject("_meta").getAsJsonArray("partialResults").size());
+        assertEquals("2 files analyzed", params.get("message").getAsString());
+    }
+
+    private List<JsonObject> notifications() {
+        List<JsonObject> notifications = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                notifications.add(JsonParser.parseString(line).getAsJsonObject());
+            }
+        }
+        return notifications;
+    }
+
+    private static String functions(JsonObject notification) {
+        return notification.getAsJsonObject("params").getAsJsonObject("_meta").getAsJsonArray("partialResults")
+            .get(0).getAsJsonObject().get("functions").toString();
+    }
+}
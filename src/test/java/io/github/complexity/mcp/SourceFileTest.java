@@ -0,0 +1,113 @@
+package io.github.complexity.mcp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SourceFile
+ */
+class SourceFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void read_detectsUtf8AndFallsBackToLatin1() throws IOException {
+        Path utf8 = write("utf8.asm", "gr\u00FC\u00DFe: ; ok\n".getBytes(StandardCharsets.UTF_8));
+        Path latin1 = write("latin1.asm", "gr\u00FC\u00DFe: ; ok\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        SourceFile fromUtf8 = SourceFile.read(utf8, null);
+        SourceFile fromLatin1 = SourceFile.read(latin1, null);
+
+        assertEquals(StandardCharsets.UTF_8, fromUtf8.getCharset());
+        assertEquals("gr\u00FC\u00DFe: ; ok\n", fromUtf8.getText());
+        assertEquals(StandardCharsets.ISO_8859_1, fromLatin1.getCharset());
+        assertEquals("gr\u00FC\u00DFe: ; ok\n", fromLatin1.getText());
+    }
+
+    @Test
+    void read_largeFile_validatesUtf8PastTheDecodeBuffer() throws IOException {
+        String valid = "gr\u00FC\u00DFe: ; ok\n".repeat(10_000);
+        byte[] utf8 = valid.getBytes(StandardCharsets.UTF_8);
+        byte[] invalid = (valid + "\u00FF").getBytes(StandardCharsets.ISO_8859_1);
+
+        SourceFile fromUtf8 = SourceFile.read(write("valid.asm", utf8), null);
+        SourceFile fromInvalid = SourceFile.read(write("invalid.asm", invalid), null);
+
+        assertEquals(StandardCharsets.UTF_8, fromUtf8.getCharset());
+        assertEquals(valid, fromUtf8.getText());
+        assertEquals(StandardCharsets.ISO_8859_1, fromInvalid.getCharset());
+        assertEquals(valid + "\u00FF", fromInvalid.getText());
+    }
+
+    @Test
+    void read_honorsByteOrderMarksAndExplicitCharsets() throws IOException {
+        byte[] text = "class \u00C4 {}".getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[text.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, withBom, 3, text.length);
+
+        assertEquals("class \u00C4 {}", SourceFile.read(write("bom.java", withBom), null).getText());
+        assertEquals("class \u00C4 {}", SourceFile.read(write("utf16.java",
+            "class \u00C4 {}".getBytes(StandardCharsets.UTF_16)), null).getText());
+
+        Charset cp1252 = Charset.forName("windows-1252");
+        SourceFile explicit = SourceFile.read(write("cp1252.java", "// \u20AC sign".getBytes(cp1252)), cp1252);
+        assertEquals("// \u20AC sign", explicit.getText());
+        assertEquals(cp1252, explicit.getCharset());
+    }
+
+    @Test
+    void read_keepsAsciiContentForAsciiCompatibleCharsets() throws IOException {
+        Path file = write("plain.asm", "main PROC\r\n  jne done\r\nmain ENDP\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals("main PROC\r\n  jne done\r\nmain ENDP\r\n", SourceFile.read(file, null).getText());
+        assertEquals(StandardCharsets.UTF_8, SourceFile.read(file, null).getCharset());
+        assertEquals("main PROC\r\n  jne done\r\nmain ENDP\r\n",
+            SourceFile.read(file, Charset.forName("windows-1252")).getText());
+        assertNotEquals("main PROC\r\n  jne done\r\nmain ENDP\r\n",
+            SourceFile.read(file, StandardCharsets.UTF_16LE).getText(), "UTF-16 is decoded, not taken as is");
+    }
+
+    @Test
+    void open_detectsCharsetFromThePrefix() throws IOException {
+        byte[] text = "gr\u00FC\u00DFe: ; ok\n".getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[text.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, withBom, 3, text.length);
+
+        assertEquals("gr\u00FC\u00DFe: ; ok\n", readAll(write("utf8.asm", text), null));
+        assertEquals("gr\u00FC\u00DFe: ; ok\n", readAll(write("bom.asm", withBom), null));
+        assertEquals("gr\u00FC\u00DFe: ; ok\n", readAll(write("latin1.asm",
+            "gr\u00FC\u00DFe: ; ok\n".getBytes(StandardCharsets.ISO_8859_1)), null));
+        assertEquals("gr\u00FC", SourceFile.readPrefix(write("prefix.asm", text), null, 3));
+    }
+
+    private static String readAll(Path path, Charset charset) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = SourceFile.open(path, charset)) {
+            char[] buffer = new char[4];
+            for (int read; (read = reader.read(buffer)) >= 0; ) {
+                text.append(buffer, 0, read);
+            }
+        }
+        return text.toString();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(tempDir.resolve(name), content);
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.complexity.workspace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DirectoryWalker
+ */
+class DirectoryWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void walk_includesAndExcludes_filterRelativeToRoot() throws IOException {
+        write("Main.java", "src/A.java", "src/util/B.java", "src/notes.txt", "test/ATest.java");
+
+        assertEquals(Set.of("Main.java", "src/A.java", "src/util/B.java"),
+            walk(new DirectoryWalker(List.of("**/*.java"), List.of("test/**"), false, path -> true)));
+        assertEquals(Set.of("src/A.java"),
+            walk(new DirectoryWalker(List.of("src/*.java"), List.of(), false, path -> true)));
+    }
+
+    @Test
+    void walk_excludedDirectoryGlob_prunesTheDirectory() throws IOException {
+        write("A.java", "build/Gen.java", "build/deep/Gen2.java");
+        Queue<Path> directories = new ConcurrentLinkedQueue<>();
+
+        new DirectoryWalker(List.of(), List.of("build/**"), false, path -> true).walk(tempDir,
+            new DirectoryWalker.FileVisitor() {
+                @Override
+                public void visit(Path file) {
+                }
+
+                @Override
+                public void visitDirectory(Path directory) {
+                    directories.add(directory);
+                }
+            });
+
+        assertEquals(List.of(tempDir), List.copyOf(directories), "build should not be walked at all");
+    }
+
+    @Test
+    void walk_gitignore_isHonouredPerDirectory() throws IOException {
+        write("A.java", "gen/G.java", "sub/B.java", "sub/Skip.java", "sub/Keep.java");
+        Files.write(tempDir.resolve(".gitignore"), List.of("gen/", "Skip*.java", "Keep.java"));
+        Files.write(tempDir.resolve("sub/.gitignore"), List.of("!Keep.java"));
+
+        assertEquals(Set.of("A.java", "sub/B.java", "sub/Keep.java"),
+            walk(new DirectoryWalker(List.of("**/*.java"), List.of(), true, path -> true)));
+        assertEquals(5, walk(new DirectoryWalker(List.of("**/*.java"), List.of(), false, path -> true)).size());
+    }
+
+    private void write(String... files) throws IOException {
+        for (String file : files) {
+            Path path = tempDir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, "class X {}");
+        }
+    }
+
+    private Set<String> walk(DirectoryWalker walker) throws IOException {
+        Queue<Path> visited = new ConcurrentLinkedQueue<>();
+        walker.walk(tempDir, visited::add);
+        Set<String> relative = new TreeSet<>();
+        for (Path file : visited) {
+            relative.add(tempDir.relativize(file).toString().replace('\\', '/'));
+        }
+        return relative;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.complexity.workspace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GitignoreRules
+ */
+class GitignoreRulesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isIgnored_negation_reincludesLaterMatches() {
+        GitignoreRules rules = rules("*.log", "!keep.log");
+
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("a/debug.log"), false));
+        assertEquals(Boolean.FALSE, rules.isIgnored(tempDir.resolve("a/keep.log"), false));
+        assertNull(rules.isIgnored(tempDir.resolve("Main.java"), false));
+    }
+
+    @Test
+    void isIgnored_trailingSlash_matchesDirectoriesOnly() {
+        GitignoreRules rules = rules("build/");
+
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("sub/build"), true));
+        assertNull(rules.isIgnored(tempDir.resolve("sub/build"), false));
+    }
+
+    @Test
+    void isIgnored_anchoredPattern_matchesOnlyBelowBase() {
+        GitignoreRules rules = rules("/gen", "src/*.tmp", "Cache.java");
+
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("gen"), true));
+        assertNull(rules.isIgnored(tempDir.resolve("sub/gen"), true), "A leading / anchors the pattern");
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("src/a.tmp"), false));
+        assertNull(rules.isIgnored(tempDir.resolve("src/deep/a.tmp"), false), "* does not cross directories");
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("x/y/Cache.java"), false),
+            "Patterns without / match the name at any depth");
+    }
+
+    @Test
+    void isIgnored_doubleStar_matchesAnyNumberOfDirectories() {
+        GitignoreRules rules = rules("**/out", "docs/**", "a/**/z.txt");
+
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("out"), true));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("x/y/out"), true));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("docs/a/b.md"), false));
+        assertNull(rules.isIgnored(tempDir.resolve("docs"), true), "docs/** matches the contents only");
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("a/z.txt"), false));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("a/b/c/z.txt"), false));
+    }
+
+    @Test
+    void isIgnored_bracesAndBrackets_followGitignoreSyntax() {
+        GitignoreRules rules = rules("*.{swp", "foo[", "{a,b}.txt", "[!x]y.java", "\\#hash");
+
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("x.{swp"), false));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("foo["), false));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("{a,b}.txt"), false), "Braces are literal");
+        assertNull(rules.isIgnored(tempDir.resolve("a.txt"), false));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("ay.java"), false));
+        assertNull(rules.isIgnored(tempDir.resolve("xy.java"), false));
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("#hash"), false));
+    }
+
+    @Test
+    void load_unusualPatterns_doesNotFail() throws IOException {
+        Files.write(tempDir.resolve(".gitignore"), List.of("*.{swp", "foo[", "[z-a]", "*.class"));
+
+        GitignoreRules rules = GitignoreRules.load(tempDir);
+
+        assertNotNull(rules);
+        assertEquals(Boolean.TRUE, rules.isIgnored(tempDir.resolve("A.class"), false),
+            "Patterns after an unusable one still apply");
+    }
+
+    private GitignoreRules rules(String... lines) {
+        return GitignoreRules.parse(tempDir, List.of(lines));
+    }
+}
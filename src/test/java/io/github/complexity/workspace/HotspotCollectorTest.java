@@ -0,0 +1,69 @@
+package io.github.complexity.workspace;
+
+import io.github.complexity.calculator.ComplexityResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HotspotCollector
+ */
+class HotspotCollectorTest {
+
+    private static ComplexityResult result(Path file, Map<String, Integer> complexities) {
+        return new ComplexityResult(file.toString(), "Java", complexities);
+    }
+
+    @Test
+    void offer_keepsOnlyTheMostComplexFunctions() {
+        HotspotCollector collector = new HotspotCollector(3, 1);
+        Path a = Paths.get("/src/A.java");
+        Path b = Paths.get("/src/B.java");
+
+        collector.offer(a, result(a, Map.of("a1", 4, "a2", 12, "a3", 1)));
+        collector.offer(b, result(b, Map.of("b1", 7, "b2", 2, "b3", 20)));
+
+        List<HotspotCollector.Hotspot> hotspots = collector.getHotspots();
+        assertEquals(3, hotspots.size());
+        assertEquals("b3", hotspots.get(0).getFunction());
+        assertEquals(b, hotspots.get(0).getFile());
+        assertEquals("a2", hotspots.get(1).getFunction());
+        assertEquals(7, hotspots.get(2).getComplexity());
+    }
+
+    @Test
+    void offer_belowMinComplexity_isIgnored() {
+        HotspotCollector collector = new HotspotCollector(10, 5);
+        Path a = Paths.get("/src/A.java");
+
+        collector.offer(a, result(a, Map.of("simple", 4, "complex", 5)));
+
+        assertEquals(1, collector.getHotspots().size());
+        assertEquals("complex", collector.getHotspots().get(0).getFunction());
+    }
+
+    @Test
+    void offer_concurrently_rankingIsIndependentOfOrder() {
+        HotspotCollector collector = new HotspotCollector(5, 1);
+
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            Path file = Paths.get("/src/F" + i + ".java");
+            collector.offer(file, result(file, Map.of("f", i % 100)));
+        });
+
+        List<HotspotCollector.Hotspot> hotspots = collector.getHotspots();
+        assertEquals(5, hotspots.size());
+        for (HotspotCollector.Hotspot hotspot : hotspots) {
+            assertEquals(99, hotspot.getComplexity());
+        }
+        // Equal complexities are ranked by path
+        assertEquals(Paths.get("/src/F199.java"), hotspots.get(0).getFile());
+        assertEquals(Paths.get("/src/F599.java"), hotspots.get(4).getFile());
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.complexity.workspace;
+
+import io.github.complexity.calculator.JavaComplexityCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WorkspaceIndex
+ */
+class WorkspaceIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static WorkspaceIndex createIndex(Path root) {
+        JavaComplexityCalculator calculator = new JavaComplexityCalculator();
+        DirectoryWalker walker = new DirectoryWalker(List.of(), List.of(), true,
+            path -> path.toString().endsWith(".java"));
+        return new WorkspaceIndex(root, walker,
+            file -> calculator.calculate(Files.readString(file, StandardCharsets.UTF_8), file.toString()), 50);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Index was not updated in time");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void start_indexesExistingFiles() throws IOException {
+        Path file = tempDir.resolve("A.java");
+        Files.writeString(file, "class A { void a() { if (x) {} if (y) {} } void b() {} }");
+        Files.writeString(tempDir.resolve("notes.txt"), "not source code");
+
+        try (WorkspaceIndex index = createIndex(tempDir)) {
+            index.start();
+
+            assertEquals(1, index.getFileCount());
+            assertEquals(2, index.getFunctionCount());
+            assertEquals(3, index.getFile(file).getMaxComplexity());
+            List<WorkspaceIndex.FunctionEntry> complex = index.getFunctionsAbove(2, 10);
+            assertEquals(1, complex.size());
+            assertEquals("aa()", complex.get(0).getFunction());
+        }
+    }
+
+    @Test
+    void fileChanges_updateIndex() throws IOException, InterruptedException {
+        Path file = tempDir.resolve("A.java");
+        Files.writeString(file, "class A { void a() {} }");
+
+        try (WorkspaceIndex index = createIndex(tempDir)) {
+            index.start();
+            assertTrue(index.getFunctionsAbove(2, 10).isEmpty());
+
+            Files.writeString(file, "class A { void a() { while (x) {} } }");
+            awaitCondition(() -> index.getFunctionsAbove(2, 10).size() == 1);
+            assertEquals(1, index.getFunctionCount(), "The old version should be replaced");
+
+            Path directory = Files.createDirectory(tempDir.resolve("sub"));
+            Files.writeString(directory.resolve("B.java"), "class B { void b() {} }");
+            awaitCondition(() -> index.getFileCount() == 2);
+
+            Files.delete(file);
+            awaitCondition(() -> index.getFileCount() == 1);
+            assertNull(index.getFile(file));
+            assertTrue(index.getFunctionsAbove(2, 10).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.complexity.calculator;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Skips a whole vector of characters per step while none of them is a delimiter
+ *
+ * Only created by {@link AsmDelimiters#of(String)}, which looks the class up by name once
+ * jdk.incubator.vector is known to be present. The source is copied into a fixed window as the scan
+ * moves forward, so memory stays constant however large the source is. The delimiter within a
+ * vector is located one character at a time, which is cheaper than converting the comparison mask
+ * on current JDKs.
+ */
+final class VectorAsmDelimiters implements AsmDelimiters {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int WINDOW_SIZE = 16384;
+
+    private final String source;
+    private final char[] window = new char[WINDOW_SIZE];
+    private int windowStart; // source index of window[0]
+    private int windowEnd; // exclusive
+
+    VectorAsmDelimiters(String source) {
+        this.source = source;
+    }
+
+    @Override
+    public int next(int from, boolean comments) {
+        int length = source.length();
+        short semicolon = comments ? (short) ';' : (short) '\n';
+        while (from < length) {
+            if (from < windowStart || from >= windowEnd) {
+                load(from);
+            }
+            int index = from - windowStart;
+            int limit = windowEnd - windowStart;
+            for (int bound = limit - SPECIES.length(); index <= bound; index += SPECIES.length()) {
+                ShortVector chars = ShortVector.fromCharArray(SPECIES, window, index);
+                if (chars.eq((short) '\n').or(chars.eq((short) '\r')).or(chars.eq(semicolon)).anyTrue()) {
+                    break;
+                }
+            }
+            for (; index < limit; index++) {
+                char c = window[index];
+                if (c == '\n' || c == '\r' || (comments && c == ';')) {
+                    return windowStart + index;
+                }
+            }
+            from = windowEnd;
+        }
+        return length;
+    }
+
+    private void load(int from) {
+        windowStart = from;
+        windowEnd = Math.min(source.length(), from + WINDOW_SIZE);
+        source.getChars(windowStart, windowEnd, window, 0);
+    }
+}